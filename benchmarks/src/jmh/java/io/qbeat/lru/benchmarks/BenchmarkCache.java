@@ -0,0 +1,16 @@
+package io.qbeat.lru.benchmarks;
+
+/**
+ * The operations the benchmarks measure, common to all the caches, so that the same benchmark runs on each of them.
+ * The caches without priorities ignore the priority.
+ */
+public interface BenchmarkCache extends AutoCloseable {
+
+    Integer get(Integer key);
+
+    void set(Integer key, Integer value, int priority);
+
+    @Override
+    default void close() {
+    }
+}
@@ -0,0 +1,208 @@
+package io.qbeat.lru.benchmarks;
+
+import io.qbeat.lru.CoarseLRUTime;
+import io.qbeat.lru.ConcurrentLRUCache;
+import io.qbeat.lru.ConcurrentLRUCacheWithPriorities;
+import io.qbeat.lru.LRUCache;
+import io.qbeat.lru.LRUCacheWithPriorities;
+import io.qbeat.lru.LRUCacheWithPrioritiesAndExpiryTimestamps;
+import io.qbeat.lru.ReadBufferedLRUCache;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The caches the benchmarks run on. The first ones do not support concurrency, and are only used by one thread;
+ * the locked ones are the same caches behind a single lock, to compare with the concurrent ones.
+ */
+public enum CacheType {
+    LRU {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return lru(capacity);
+        }
+    },
+    LRU_WITH_PRIORITIES {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return lruWithPriorities(new LRUCacheWithPriorities<>(capacity));
+        }
+    },
+    LRU_WITH_BOUNDED_PRIORITIES {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return lruWithPriorities(new LRUCacheWithPriorities<>(capacity, MAX_PRIORITY));
+        }
+    },
+    LRU_WITH_PRIORITIES_AND_EXPIRY {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return lruWithPrioritiesAndExpiry(capacity, false);
+        }
+    },
+    LRU_WITH_BOUNDED_PRIORITIES_AND_EXPIRY {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return lruWithPrioritiesAndExpiry(capacity, true);
+        }
+    },
+    LOCKED_LRU {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return locked(lru(capacity));
+        }
+    },
+    LOCKED_LRU_WITH_PRIORITIES {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return locked(lruWithPriorities(new LRUCacheWithPriorities<>(capacity)));
+        }
+    },
+    LOCKED_LRU_WITH_PRIORITIES_AND_EXPIRY {
+        @Override
+        BenchmarkCache create(int capacity) {
+            return locked(lruWithPrioritiesAndExpiry(capacity, false));
+        }
+    },
+    CONCURRENT_LRU {
+        @Override
+        BenchmarkCache create(int capacity) {
+            ConcurrentLRUCache<Integer, Integer> cache = new ConcurrentLRUCache<>(capacity);
+            return new BenchmarkCache() {
+                @Override
+                public Integer get(Integer key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void set(Integer key, Integer value, int priority) {
+                    cache.set(key, value);
+                }
+            };
+        }
+    },
+    READ_BUFFERED_LRU {
+        @Override
+        BenchmarkCache create(int capacity) {
+            ReadBufferedLRUCache<Integer, Integer> cache = new ReadBufferedLRUCache<>(capacity);
+            return new BenchmarkCache() {
+                @Override
+                public Integer get(Integer key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void set(Integer key, Integer value, int priority) {
+                    cache.set(key, value);
+                }
+            };
+        }
+    },
+    CONCURRENT_LRU_WITH_PRIORITIES {
+        @Override
+        BenchmarkCache create(int capacity) {
+            ConcurrentLRUCacheWithPriorities<Integer, Integer> cache = new ConcurrentLRUCacheWithPriorities<>(capacity);
+            return new BenchmarkCache() {
+                @Override
+                public Integer get(Integer key) {
+                    return cache.get(key);
+                }
+
+                @Override
+                public void set(Integer key, Integer value, int priority) {
+                    cache.set(key, value, priority);
+                }
+            };
+        }
+    };
+
+    // The priorities are drawn from [0, MAX_PRIORITY], which the bounded caches are created with
+    static final int MAX_PRIORITY = 15;
+
+    abstract BenchmarkCache create(int capacity);
+
+    private static BenchmarkCache lru(int capacity) {
+        LRUCache<Integer, Integer> cache = new LRUCache<>(capacity);
+        return new BenchmarkCache() {
+            @Override
+            public Integer get(Integer key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void set(Integer key, Integer value, int priority) {
+                cache.set(key, value);
+            }
+        };
+    }
+
+    private static BenchmarkCache lruWithPriorities(LRUCacheWithPriorities<Integer, Integer> cache) {
+        return new BenchmarkCache() {
+            @Override
+            public Integer get(Integer key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void set(Integer key, Integer value, int priority) {
+                cache.set(key, value, priority);
+            }
+        };
+    }
+
+    // With a coarse clock, as advised for hot read paths. Nothing expires while the benchmark runs.
+    private static BenchmarkCache lruWithPrioritiesAndExpiry(int capacity, boolean boundedPriorities) {
+        CoarseLRUTime lruTime = new CoarseLRUTime();
+        LRUCacheWithPrioritiesAndExpiryTimestamps<Integer, Integer> cache = boundedPriorities
+                ? new LRUCacheWithPrioritiesAndExpiryTimestamps<>(capacity, lruTime,
+                LRUCacheWithPrioritiesAndExpiryTimestamps.DEFAULT_TICK_RESOLUTION_MILLIS, MAX_PRIORITY)
+                : new LRUCacheWithPrioritiesAndExpiryTimestamps<>(capacity, lruTime);
+        long expiryTimestamp = lruTime.getCurrentTimeToEpochMillis() + TimeUnit.DAYS.toMillis(1);
+        return new BenchmarkCache() {
+            @Override
+            public Integer get(Integer key) {
+                return cache.get(key);
+            }
+
+            @Override
+            public void set(Integer key, Integer value, int priority) {
+                cache.set(key, value, priority, expiryTimestamp);
+            }
+
+            @Override
+            public void close() {
+                lruTime.close();
+            }
+        };
+    }
+
+    private static BenchmarkCache locked(BenchmarkCache cache) {
+        ReentrantLock lock = new ReentrantLock();
+        return new BenchmarkCache() {
+            @Override
+            public Integer get(Integer key) {
+                lock.lock();
+                try {
+                    return cache.get(key);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void set(Integer key, Integer value, int priority) {
+                lock.lock();
+                try {
+                    cache.set(key, value, priority);
+                } finally {
+                    lock.unlock();
+                }
+            }
+
+            @Override
+            public void close() {
+                cache.close();
+            }
+        };
+    }
+}
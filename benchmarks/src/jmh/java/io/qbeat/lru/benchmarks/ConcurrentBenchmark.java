@@ -0,0 +1,80 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operations of {@link GetBenchmark} and {@link SetBenchmark}, on several threads sharing one cache:
+ * the caches that do not support concurrency behind a single lock, and the concurrent ones.
+ * Run it with e.g. -t 8 for another number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentBenchmark {
+
+    @Param({"LOCKED_LRU", "LOCKED_LRU_WITH_PRIORITIES", "LOCKED_LRU_WITH_PRIORITIES_AND_EXPIRY",
+            "CONCURRENT_LRU", "READ_BUFFERED_LRU", "CONCURRENT_LRU_WITH_PRIORITIES"})
+    public CacheType cacheType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int capacity;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+    public KeyDistribution distribution;
+
+    private BenchmarkCache cache;
+    private Integer[] hits;
+    private Integer[] misses;
+    private int[] priorities;
+
+    @Setup
+    public void setUp() {
+        Random random = Workload.random();
+        Integer[] keys = Workload.boxedKeys(2 * capacity);
+        cache = cacheType.create(capacity);
+        Workload.fill(cache, keys, capacity);
+        hits = Workload.trace(keys, 0, capacity, distribution, random);
+        misses = Workload.trace(keys, capacity, capacity, distribution, random);
+        priorities = Workload.priorities(random);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public Integer getHit(TraceCursor cursor) {
+        return cache.get(hits[cursor.next()]);
+    }
+
+    @Benchmark
+    public Integer getMiss(TraceCursor cursor) {
+        return cache.get(misses[cursor.next()]);
+    }
+
+    @Benchmark
+    public void setUpdateWithPriorityChange(TraceCursor cursor) {
+        int next = cursor.next();
+        cache.set(hits[next], Workload.VALUE, priorities[next]);
+    }
+}
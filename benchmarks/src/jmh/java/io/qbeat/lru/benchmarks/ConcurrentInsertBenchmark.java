@@ -0,0 +1,64 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The operation of {@link InsertBenchmark}, on several threads sharing one cache. The threads set the keys in turn
+ * from different starting points, so a set is an insert, unless another thread has just set the same key.
+ * Run it with e.g. -t 8 for another number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class ConcurrentInsertBenchmark {
+
+    @Param({"LOCKED_LRU", "LOCKED_LRU_WITH_PRIORITIES", "LOCKED_LRU_WITH_PRIORITIES_AND_EXPIRY",
+            "CONCURRENT_LRU", "READ_BUFFERED_LRU", "CONCURRENT_LRU_WITH_PRIORITIES"})
+    public CacheType cacheType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int capacity;
+
+    private BenchmarkCache cache;
+    private Integer[] inserts;
+    private int insertMask;
+
+    @Setup
+    public void setUp() {
+        int keySpace = Integer.highestOneBit(2 * capacity - 1) << 1;
+        Integer[] keys = Workload.boxedKeys(capacity + keySpace);
+        cache = cacheType.create(capacity);
+        Workload.fill(cache, keys, capacity);
+        inserts = new Integer[keySpace];
+        System.arraycopy(keys, capacity, inserts, 0, keySpace);
+        insertMask = keySpace - 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public void setInsertWithEviction(TraceCursor cursor) {
+        cache.set(inserts[cursor.next(insertMask)], Workload.VALUE, 0);
+    }
+}
@@ -0,0 +1,72 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The get of the caches, on a single thread, when the key is in the cache and when it is not.
+ * The cache is filled up to its capacity, and the keys are drawn from the keys in it for a hit,
+ * and from as many keys that are not in it for a miss.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class GetBenchmark {
+
+    @Param({"LRU", "LRU_WITH_PRIORITIES", "LRU_WITH_BOUNDED_PRIORITIES",
+            "LRU_WITH_PRIORITIES_AND_EXPIRY", "LRU_WITH_BOUNDED_PRIORITIES_AND_EXPIRY"})
+    public CacheType cacheType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int capacity;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+    public KeyDistribution distribution;
+
+    private BenchmarkCache cache;
+    private Integer[] hits;
+    private Integer[] misses;
+
+    @Setup
+    public void setUp() {
+        Random random = Workload.random();
+        Integer[] keys = Workload.boxedKeys(2 * capacity);
+        cache = cacheType.create(capacity);
+        Workload.fill(cache, keys, capacity);
+        hits = Workload.trace(keys, 0, capacity, distribution, random);
+        misses = Workload.trace(keys, capacity, capacity, distribution, random);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public Integer getHit(TraceCursor cursor) {
+        return cache.get(hits[cursor.next()]);
+    }
+
+    @Benchmark
+    public Integer getMiss(TraceCursor cursor) {
+        return cache.get(misses[cursor.next()]);
+    }
+}
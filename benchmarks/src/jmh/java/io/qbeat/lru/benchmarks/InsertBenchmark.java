@@ -0,0 +1,65 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set of the caches, on a single thread, of a key that is not in the cache, once its capacity is reached,
+ * so that every set drops an element. The keys are set in turn from a key space of at least twice the capacity,
+ * all with the same priority, so each key has been dropped by the time it is set again. There is no key distribution:
+ * any key drawn twice within the capacity would be an update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class InsertBenchmark {
+
+    @Param({"LRU", "LRU_WITH_PRIORITIES", "LRU_WITH_BOUNDED_PRIORITIES",
+            "LRU_WITH_PRIORITIES_AND_EXPIRY", "LRU_WITH_BOUNDED_PRIORITIES_AND_EXPIRY"})
+    public CacheType cacheType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int capacity;
+
+    private BenchmarkCache cache;
+    private Integer[] inserts;
+    private int insertMask;
+
+    @Setup
+    public void setUp() {
+        int keySpace = Integer.highestOneBit(2 * capacity - 1) << 1;
+        Integer[] keys = Workload.boxedKeys(capacity + keySpace);
+        cache = cacheType.create(capacity);
+        Workload.fill(cache, keys, capacity);
+        inserts = new Integer[keySpace];
+        System.arraycopy(keys, capacity, inserts, 0, keySpace);
+        insertMask = keySpace - 1;
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public void setInsertWithEviction(TraceCursor cursor) {
+        cache.set(inserts[cursor.next(insertMask)], Workload.VALUE, 0);
+    }
+}
@@ -0,0 +1,71 @@
+package io.qbeat.lru.benchmarks;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * How the keys of a benchmark are drawn from its key space, [0, keySpace).
+ */
+public enum KeyDistribution {
+    // Every key is as likely as any other
+    UNIFORM {
+        @Override
+        int[] sample(int keySpace, int length, Random random) {
+            int[] indices = new int[length];
+            for (int i = 0; i < length; i++) {
+                indices[i] = random.nextInt(keySpace);
+            }
+            return indices;
+        }
+    },
+    // A few hot keys get most of the requests, with the skew of the YCSB workloads. The hot keys are spread over
+    // the key space, so that they are not the ones inserted last.
+    ZIPFIAN {
+        @Override
+        int[] sample(int keySpace, int length, Random random) {
+            double[] cumulativeProbabilities = new double[keySpace];
+            double sum = 0;
+            for (int rank = 0; rank < keySpace; rank++) {
+                sum += 1 / Math.pow(rank + 1, ZIPFIAN_EXPONENT);
+                cumulativeProbabilities[rank] = sum;
+            }
+            int[] keyOfRank = shuffledIdentity(keySpace, random);
+            int[] indices = new int[length];
+            for (int i = 0; i < length; i++) {
+                int rank = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble() * sum);
+                indices[i] = keyOfRank[rank < 0 ? Math.min(-rank - 1, keySpace - 1) : rank];
+            }
+            return indices;
+        }
+    },
+    // Every key in turn, the worst case of a Least Recently Used policy once the key space exceeds the capacity
+    SCAN {
+        @Override
+        int[] sample(int keySpace, int length, Random random) {
+            int[] indices = new int[length];
+            int start = random.nextInt(keySpace);
+            for (int i = 0; i < length; i++) {
+                indices[i] = (start + i) % keySpace;
+            }
+            return indices;
+        }
+    };
+
+    static final double ZIPFIAN_EXPONENT = 0.99;
+
+    abstract int[] sample(int keySpace, int length, Random random);
+
+    private static int[] shuffledIdentity(int length, Random random) {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = i;
+        }
+        for (int i = length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int value = values[i];
+            values[i] = values[j];
+            values[j] = value;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,68 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The set of the caches, on a single thread, of a key that is in the cache, with a priority drawn at random,
+ * so that the element mostly moves to another priority. The cache is filled up to its capacity, and the keys are
+ * drawn from the keys in it. The LRUCache ignores the priority, so it only moves the element to the top.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class SetBenchmark {
+
+    @Param({"LRU", "LRU_WITH_PRIORITIES", "LRU_WITH_BOUNDED_PRIORITIES",
+            "LRU_WITH_PRIORITIES_AND_EXPIRY", "LRU_WITH_BOUNDED_PRIORITIES_AND_EXPIRY"})
+    public CacheType cacheType;
+
+    @Param({"1000", "100000", "1000000"})
+    public int capacity;
+
+    @Param({"UNIFORM", "ZIPFIAN", "SCAN"})
+    public KeyDistribution distribution;
+
+    private BenchmarkCache cache;
+    private Integer[] updates;
+    private int[] priorities;
+
+    @Setup
+    public void setUp() {
+        Random random = Workload.random();
+        Integer[] keys = Workload.boxedKeys(capacity);
+        cache = cacheType.create(capacity);
+        Workload.fill(cache, keys, capacity);
+        updates = Workload.trace(keys, 0, capacity, distribution, random);
+        priorities = Workload.priorities(random);
+    }
+
+    @TearDown
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Benchmark
+    public void setUpdateWithPriorityChange(TraceCursor cursor) {
+        int next = cursor.next();
+        cache.set(updates[next], Workload.VALUE, priorities[next]);
+    }
+}
@@ -0,0 +1,34 @@
+package io.qbeat.lru.benchmarks;
+
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The position of a thread in the traces of a benchmark. The threads start at different positions,
+ * spread evenly, so that they do not all ask for the same keys at the same time.
+ */
+@State(Scope.Thread)
+public class TraceCursor {
+    private static final AtomicInteger threads = new AtomicInteger();
+    // The golden ratio of 2^32, so that the starts of any number of threads are spread over the trace
+    private static final int SPREAD = 0x9E3779B9;
+
+    private int position;
+
+    @Setup
+    public void setUp() {
+        position = threads.getAndIncrement() * SPREAD;
+    }
+
+    int next() {
+        return next(Workload.TRACE_MASK);
+    }
+
+    // For a trace whose length is a power of two, mask + 1
+    int next(int mask) {
+        return position++ & mask;
+    }
+}
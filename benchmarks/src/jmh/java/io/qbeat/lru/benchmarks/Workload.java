@@ -0,0 +1,57 @@
+package io.qbeat.lru.benchmarks;
+
+import java.util.Random;
+
+/**
+ * The keys, key traces and priorities of the benchmarks, built before they run, so that they measure the caches only:
+ * the keys are boxed once, and each operation reads the next element of a precomputed trace.
+ */
+final class Workload {
+    // A power of two, so that a cursor wraps around with a mask
+    static final int TRACE_LENGTH = 1 << 20;
+    static final int TRACE_MASK = TRACE_LENGTH - 1;
+    static final Integer VALUE = 42;
+
+    // Fixed, so that every run draws the same keys
+    private static final long SEED = 0x5DEECE66DL;
+
+    private Workload() {
+    }
+
+    static Random random() {
+        return new Random(SEED);
+    }
+
+    static Integer[] boxedKeys(int count) {
+        Integer[] keys = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            keys[i] = i;
+        }
+        return keys;
+    }
+
+    // Draws the keys of the trace from keys[offset, offset + keySpace)
+    static Integer[] trace(Integer[] keys, int offset, int keySpace, KeyDistribution distribution, Random random) {
+        int[] indices = distribution.sample(keySpace, TRACE_LENGTH, random);
+        Integer[] trace = new Integer[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            trace[i] = keys[offset + indices[i]];
+        }
+        return trace;
+    }
+
+    static int[] priorities(Random random) {
+        int[] priorities = new int[TRACE_LENGTH];
+        for (int i = 0; i < TRACE_LENGTH; i++) {
+            priorities[i] = random.nextInt(CacheType.MAX_PRIORITY + 1);
+        }
+        return priorities;
+    }
+
+    // Sets keys[0, count) with the same priority, so that the oldest one is the Least Recently Used
+    static void fill(BenchmarkCache cache, Integer[] keys, int count) {
+        for (int i = 0; i < count; i++) {
+            cache.set(keys[i], VALUE, 0);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.ArcPolicy;
+import io.qbeat.lru.CacheStats;
+import io.qbeat.lru.LRUCache;
+import io.qbeat.lru.LRUCacheWithPriorities;
+import io.qbeat.lru.LRUCacheWithPrioritiesAndExpiryTimestamps;
+import io.qbeat.lru.SegmentedLruPolicy;
+import io.qbeat.lru.StatsCounter;
+import io.qbeat.lru.StripedStatsCounter;
+import io.qbeat.lru.TwoQueuePolicy;
+
+/**
+ * The caches a trace can be replayed through. The traces have no priorities, so each key is given one of the
+ * priorities of the simulation, from a hash of the key, and keeps it for the whole trace.
+ */
+public enum Policy {
+    LRU {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            return simulatedCache(new LRUCache<>(capacity));
+        }
+    },
+    SEGMENTED_LRU {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            return simulatedCache(new LRUCache<>(capacity, new SegmentedLruPolicy<>(capacity)));
+        }
+    },
+    TWO_QUEUE {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            return simulatedCache(new LRUCache<>(capacity, new TwoQueuePolicy<>(capacity)));
+        }
+    },
+    ARC {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            return simulatedCache(new LRUCache<>(capacity, new ArcPolicy<>(capacity)));
+        }
+    },
+    LRU_WITH_PRIORITIES {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            LRUCacheWithPriorities<Object, Object> cache = new LRUCacheWithPriorities<>(capacity, settings.getPriorities() - 1);
+            StatsCounter statsCounter = new StripedStatsCounter();
+            cache.setStatsCounter(statsCounter);
+            return new SimulatedCache() {
+                @Override
+                public boolean access(Object key) {
+                    if (cache.get(key) != null) {
+                        return true;
+                    }
+                    cache.set(key, PRESENT, settings.priorityOf(key));
+                    return false;
+                }
+
+                @Override
+                public CacheStats stats() {
+                    return statsCounter.snapshot();
+                }
+            };
+        }
+    },
+    LRU_WITH_PRIORITIES_AND_EXPIRY {
+        @Override
+        SimulatedCache create(int capacity, SimulationSettings settings) {
+            SimulatedTime time = new SimulatedTime();
+            LRUCacheWithPrioritiesAndExpiryTimestamps<Object, Object> cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(
+                    capacity, time, LRUCacheWithPrioritiesAndExpiryTimestamps.DEFAULT_TICK_RESOLUTION_MILLIS, settings.getPriorities() - 1);
+            StatsCounter statsCounter = new StripedStatsCounter();
+            cache.setStatsCounter(statsCounter);
+            return new SimulatedCache() {
+                @Override
+                public boolean access(Object key) {
+                    time.advance();
+                    if (cache.get(key) != null) {
+                        return true;
+                    }
+                    long expiryTimestamp = time.getCurrentTimeToEpochMillis() + settings.getTimeToLive();
+                    cache.set(key, PRESENT, settings.priorityOf(key), expiryTimestamp);
+                    return false;
+                }
+
+                @Override
+                public CacheStats stats() {
+                    return statsCounter.snapshot();
+                }
+            };
+        }
+    };
+
+    // The value of every key, since only the keys matter
+    private static final Object PRESENT = Boolean.TRUE;
+
+    abstract SimulatedCache create(int capacity, SimulationSettings settings);
+
+    // The priorities and the time to live do not apply to an LRUCache, whatever its eviction policy
+    private static SimulatedCache simulatedCache(LRUCache<Object, Object> cache) {
+        StatsCounter statsCounter = new StripedStatsCounter();
+        cache.setStatsCounter(statsCounter);
+        return new SimulatedCache() {
+            @Override
+            public boolean access(Object key) {
+                if (cache.get(key) != null) {
+                    return true;
+                }
+                cache.set(key, PRESENT);
+                return false;
+            }
+
+            @Override
+            public CacheStats stats() {
+                return statsCounter.snapshot();
+            }
+        };
+    }
+}
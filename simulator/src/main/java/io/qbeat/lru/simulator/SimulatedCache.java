@@ -0,0 +1,14 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.CacheStats;
+
+/**
+ * A cache the trace is replayed through: each access is a get, followed by a set of the key on a miss.
+ */
+interface SimulatedCache {
+
+    // Returns true on a hit
+    boolean access(Object key);
+
+    CacheStats stats();
+}
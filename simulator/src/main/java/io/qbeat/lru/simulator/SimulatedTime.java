@@ -0,0 +1,17 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.LRUTime;
+
+// The time of a simulation, where each access takes one millisecond, so that a time to live is a number of accesses
+class SimulatedTime extends LRUTime {
+    private long currentTimeInEpochMillis;
+
+    @Override
+    public long getCurrentTimeToEpochMillis() {
+        return currentTimeInEpochMillis;
+    }
+
+    void advance() {
+        currentTimeInEpochMillis++;
+    }
+}
@@ -0,0 +1,64 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.CacheStats;
+import io.qbeat.lru.RemovalCause;
+
+/**
+ * What a policy with a capacity did with a trace.
+ */
+public class SimulationResult {
+    private final Policy policy;
+    private final int capacity;
+    private final CacheStats stats;
+    private final long elapsedNanos;
+
+    SimulationResult(Policy policy, int capacity, CacheStats stats, long elapsedNanos) {
+        this.policy = policy;
+        this.capacity = capacity;
+        this.stats = stats;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    // The hits, misses and evictions by cause
+    public CacheStats getStats() {
+        return stats;
+    }
+
+    public long getAccessCount() {
+        return stats.requestCount();
+    }
+
+    public double getHitRatio() {
+        return stats.hitRate();
+    }
+
+    // The time spent in the cache, without reading the trace
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public double getAccessesPerSecond() {
+        return elapsedNanos == 0 ? 0 : getAccessCount() * 1e9 / elapsedNanos;
+    }
+
+    static String header() {
+        return String.format("%-30s %12s %15s %9s %12s %15s %12s %14s", "Policy", "Capacity", "Accesses", "Hit ratio",
+                "Expired", "Lowest prio.", "LRU", "Accesses/s");
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%-30s %12d %15d %8.2f%% %12d %15d %12d %14.0f", policy, capacity, getAccessCount(),
+                100 * getHitRatio(), stats.evictionCount(RemovalCause.EXPIRED),
+                stats.evictionCount(RemovalCause.LOWEST_PRIORITY), stats.evictionCount(RemovalCause.LEAST_RECENTLY_USED),
+                getAccessesPerSecond());
+    }
+}
@@ -0,0 +1,47 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.BitmapPriorityBuckets;
+
+/**
+ * What the caches with priorities and expiry timestamps are given, since the traces only have keys.
+ */
+public class SimulationSettings {
+    // Elements that never expire
+    public static final long NO_TIME_TO_LIVE = Long.MAX_VALUE / 4;
+
+    private final int priorities;
+    private final long timeToLive;
+
+    /**
+     * @param priorities The number of priorities, from 0 to priorities - 1, the keys are spread over. 1 gives all the
+     *                   keys the same priority, so the caches with priorities behave like the LRUCache.
+     * @param timeToLive The number of accesses after which an element set on a miss expires
+     */
+    public SimulationSettings(int priorities, long timeToLive) {
+        if (priorities < 1 || priorities > BitmapPriorityBuckets.MAX_PRIORITY + 1) {
+            throw new IllegalArgumentException("The number of priorities should be between 1 and " + (BitmapPriorityBuckets.MAX_PRIORITY + 1) + ", but got " + priorities);
+        }
+        if (timeToLive < 1) {
+            throw new IllegalArgumentException("The time to live should be at least 1 access, but got " + timeToLive);
+        }
+        this.priorities = priorities;
+        this.timeToLive = timeToLive;
+    }
+
+    public SimulationSettings() {
+        this(1, NO_TIME_TO_LIVE);
+    }
+
+    public int getPriorities() {
+        return priorities;
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    // The same for every access of the key. The hash is mixed, so that similar keys get different priorities.
+    int priorityOf(Object key) {
+        return Math.floorMod(key.hashCode() * 0x9E3779B9, priorities);
+    }
+}
@@ -0,0 +1,142 @@
+package io.qbeat.lru.simulator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Replays a trace through several policies, each with several capacities, and reports the hit ratio, the evictions
+ * and the throughput of each one.
+ * The trace is read once, whatever the number of caches: its accesses are read in chunks of a fixed size, and each
+ * chunk is replayed through every cache in turn, so the memory taken is that of the caches and of one chunk,
+ * whatever the length of the trace. Timing a whole chunk at a time keeps the cost of reading the clock out of the
+ * throughput.
+ */
+public class Simulator {
+    static final int CHUNK_SIZE = 4096;
+
+    private static final String USAGE = "Usage: Simulator <trace> [--format KEY_PER_LINE|ARC|LIRS|WIKIPEDIA]"
+            + " [--capacities 1000,10000,...] [--policies LRU,LRU_WITH_PRIORITIES,...] [--priorities n] [--ttl accesses]";
+
+    private final Trace trace;
+    private final List<Policy> policies;
+    private final List<Integer> capacities;
+    private final SimulationSettings settings;
+
+    public Simulator(Trace trace, List<Policy> policies, List<Integer> capacities, SimulationSettings settings) {
+        if (policies.isEmpty() || capacities.isEmpty()) {
+            throw new IllegalArgumentException("At least one policy and one capacity are needed");
+        }
+        this.trace = trace;
+        this.policies = policies;
+        this.capacities = capacities;
+        this.settings = settings;
+    }
+
+    /**
+     * @return One result per policy and capacity, for each policy in turn, in the order they were given
+     */
+    public List<SimulationResult> run() throws IOException {
+        final SimulatedCache[] caches = new SimulatedCache[policies.size() * capacities.size()];
+        final long[] elapsedNanos = new long[caches.length];
+        for (int p = 0; p < policies.size(); p++) {
+            for (int c = 0; c < capacities.size(); c++) {
+                caches[p * capacities.size() + c] = policies.get(p).create(capacities.get(c), settings);
+            }
+        }
+
+        final Object[] chunk = new Object[CHUNK_SIZE];
+        final int[] chunkSize = new int[1];
+        trace.forEachAccess(key -> {
+            chunk[chunkSize[0]++] = key;
+            if (chunkSize[0] == CHUNK_SIZE) {
+                replay(chunk, CHUNK_SIZE, caches, elapsedNanos);
+                chunkSize[0] = 0;
+            }
+        });
+        replay(chunk, chunkSize[0], caches, elapsedNanos);
+
+        List<SimulationResult> results = new ArrayList<>(caches.length);
+        for (int p = 0; p < policies.size(); p++) {
+            for (int c = 0; c < capacities.size(); c++) {
+                int i = p * capacities.size() + c;
+                results.add(new SimulationResult(policies.get(p), capacities.get(c), caches[i].stats(), elapsedNanos[i]));
+            }
+        }
+        return results;
+    }
+
+    private static void replay(Object[] chunk, int size, SimulatedCache[] caches, long[] elapsedNanos) {
+        for (int i = 0; i < caches.length; i++) {
+            final SimulatedCache cache = caches[i];
+            final long start = System.nanoTime();
+            for (int j = 0; j < size; j++) {
+                cache.access(chunk[j]);
+            }
+            elapsedNanos[i] += System.nanoTime() - start;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || args.length % 2 == 0) {
+            exitWithUsage("");
+        }
+        Path path = Paths.get(args[0]);
+        TraceFormat format = TraceFormat.KEY_PER_LINE;
+        List<Integer> capacities = Arrays.asList(1_000, 10_000, 100_000);
+        List<Policy> policies = Arrays.asList(Policy.values());
+        int priorities = 1;
+        long timeToLive = SimulationSettings.NO_TIME_TO_LIVE;
+        try {
+            for (int i = 1; i < args.length; i += 2) {
+                String value = args[i + 1];
+                switch (args[i]) {
+                    case "--format":
+                        format = TraceFormat.valueOf(value);
+                        break;
+                    case "--capacities":
+                        capacities = new ArrayList<>();
+                        for (String capacity : value.split(",")) {
+                            capacities.add(Integer.parseInt(capacity.trim()));
+                        }
+                        break;
+                    case "--policies":
+                        policies = new ArrayList<>();
+                        for (String policy : value.split(",")) {
+                            policies.add(Policy.valueOf(policy.trim()));
+                        }
+                        break;
+                    case "--priorities":
+                        priorities = Integer.parseInt(value);
+                        break;
+                    case "--ttl":
+                        timeToLive = Long.parseLong(value);
+                        break;
+                    default:
+                        exitWithUsage("Unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            exitWithUsage(e.getMessage());
+        }
+
+        Trace trace = new Trace(path, format);
+        Simulator simulator = new Simulator(trace, policies, capacities, new SimulationSettings(priorities, timeToLive));
+        System.out.println("Trace: " + trace);
+        System.out.println(SimulationResult.header());
+        for (SimulationResult result : simulator.run()) {
+            System.out.println(result);
+        }
+    }
+
+    private static void exitWithUsage(String message) {
+        if (!message.isEmpty()) {
+            System.err.println(message);
+        }
+        System.err.println(USAGE);
+        System.exit(1);
+    }
+}
@@ -0,0 +1,61 @@
+package io.qbeat.lru.simulator;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A trace file, read one line at a time, so that it takes the same memory whatever its length.
+ * Files compressed with gzip are recognised by their first bytes, and decompressed as they are read.
+ */
+public class Trace {
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int GZIP_MAGIC = 0x8b1f;
+
+    private final Path path;
+    private final TraceFormat format;
+
+    public Trace(Path path, TraceFormat format) {
+        this.path = path;
+        this.format = format;
+    }
+
+    /**
+     * Passes every access of the trace to the consumer, in order.
+     * Throws an IllegalArgumentException, with the number of the line, if a line is not in the format of the trace.
+     */
+    public void forEachAccess(Consumer<Object> accesses) throws IOException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(open(), StandardCharsets.UTF_8), BUFFER_SIZE)) {
+            long lineNumber = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                try {
+                    format.parse(line, accesses);
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Line " + lineNumber + " of " + path + " is not in the " + format + " format: " + line, e);
+                }
+            }
+        }
+    }
+
+    private InputStream open() throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), BUFFER_SIZE);
+        in.mark(2);
+        int magic = in.read() | (in.read() << 8);
+        in.reset();
+        return magic == GZIP_MAGIC ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+    }
+
+    @Override
+    public String toString() {
+        return path + " (" + format + ")";
+    }
+}
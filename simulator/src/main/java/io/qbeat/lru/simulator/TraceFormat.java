@@ -0,0 +1,66 @@
+package io.qbeat.lru.simulator;
+
+import java.util.function.Consumer;
+
+/**
+ * The formats of the traces the simulator reads, one line at a time. A line can be one access, several, or none.
+ */
+public enum TraceFormat {
+    // One key per line, of any kind
+    KEY_PER_LINE {
+        @Override
+        void parse(String line, Consumer<Object> accesses) {
+            String key = line.trim();
+            if (!key.isEmpty()) {
+                accesses.accept(key);
+            }
+        }
+    },
+    // The traces of the ARC paper (Megiddo & Modha): "startingBlock numberOfBlocks ignored requestNumber",
+    // for an access to each block of the range
+    ARC {
+        @Override
+        void parse(String line, Consumer<Object> accesses) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields[0].isEmpty()) {
+                return;
+            }
+            long startingBlock = Long.parseLong(fields[0]);
+            int numberOfBlocks = Integer.parseInt(fields[1]);
+            for (int i = 0; i < numberOfBlocks; i++) {
+                accesses.accept(startingBlock + i);
+            }
+        }
+    },
+    // The traces of the LIRS paper (Jiang & Zhang): a block number per line, where "*" separates the parts of a trace
+    LIRS {
+        @Override
+        void parse(String line, Consumer<Object> accesses) {
+            String block = line.trim();
+            if (!block.isEmpty() && !block.equals("*")) {
+                accesses.accept(Long.parseLong(block));
+            }
+        }
+    },
+    // The Wikipedia traces of WikiBench: "counter timestamp url saveFlag", where the key is the url without its host.
+    // Saves are not reads, so they are skipped.
+    WIKIPEDIA {
+        @Override
+        void parse(String line, Consumer<Object> accesses) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length < 3 || (fields.length > 3 && fields[3].equals("save"))) {
+                return;
+            }
+            String url = fields[2];
+            int scheme = url.indexOf("://");
+            int path = scheme < 0 ? 0 : url.indexOf('/', scheme + 3);
+            accesses.accept(path < 0 ? "/" : url.substring(path));
+        }
+    };
+
+    /**
+     * Passes the accesses of a line of the trace to the consumer, in order.
+     * Throws a RuntimeException, e.g. a NumberFormatException, if the line is not in this format.
+     */
+    abstract void parse(String line, Consumer<Object> accesses);
+}
@@ -0,0 +1,67 @@
+package io.qbeat.lru.simulator;
+
+import io.qbeat.lru.RemovalCause;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SimulatorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReportHitRatioAndEvictionsOfEachPolicyAndCapacity() throws IOException {
+        // A loop over 3 keys: always a miss with 2 elements, and only the first 3 accesses miss with 3
+        Path path = trace(3, 3 * Simulator.CHUNK_SIZE + 1);
+        List<SimulationResult> results = new Simulator(new Trace(path, TraceFormat.LIRS),
+                Arrays.asList(Policy.LRU, Policy.LRU_WITH_PRIORITIES, Policy.LRU_WITH_PRIORITIES_AND_EXPIRY),
+                Arrays.asList(2, 3), new SimulationSettings()).run();
+
+        assertEquals(6, results.size());
+        for (SimulationResult result : results) {
+            assertEquals(3 * Simulator.CHUNK_SIZE + 1, result.getAccessCount());
+            if (result.getCapacity() == 2) {
+                assertEquals(0, result.getStats().hitCount());
+                assertEquals(result.getAccessCount() - 2, result.getStats().evictionCount(RemovalCause.LEAST_RECENTLY_USED));
+            } else {
+                assertEquals(3, result.getStats().missCount());
+                assertEquals(0, result.getStats().evictionCount());
+            }
+        }
+        assertEquals(Policy.LRU, results.get(0).getPolicy());
+        assertEquals(3, results.get(1).getCapacity());
+    }
+
+    @Test
+    public void shouldExpireElementsAfterTheirTimeToLiveInAccesses() throws IOException {
+        // Each key comes back 3 accesses later, after a time to live of 2
+        Path path = trace(3, 30);
+        SimulationResult result = new Simulator(new Trace(path, TraceFormat.LIRS),
+                Collections.singletonList(Policy.LRU_WITH_PRIORITIES_AND_EXPIRY), Collections.singletonList(10),
+                new SimulationSettings(4, 2)).run().get(0);
+
+        assertEquals(0, result.getStats().hitCount());
+        assertEquals(27, result.getStats().evictionCount(RemovalCause.EXPIRED));
+    }
+
+    private Path trace(int keys, int accesses) throws IOException {
+        Path path = directory.resolve("trace.txt");
+        try (BufferedWriter writer = Files.newBufferedWriter(path)) {
+            for (int i = 0; i < accesses; i++) {
+                writer.write(Integer.toString(i % keys));
+                writer.newLine();
+            }
+        }
+        return path;
+    }
+}
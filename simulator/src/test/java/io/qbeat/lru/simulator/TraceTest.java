@@ -0,0 +1,70 @@
+package io.qbeat.lru.simulator;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TraceTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldReadOneKeyPerLineAndSkipEmptyLines() throws IOException {
+        assertEquals(Arrays.asList("A", "B", "A"), accessesOf(TraceFormat.KEY_PER_LINE, "A\n\n B \nA\n"));
+    }
+
+    @Test
+    public void shouldReadEveryBlockOfArcRanges() throws IOException {
+        assertEquals(Arrays.asList(10L, 11L, 12L, 5L), accessesOf(TraceFormat.ARC, "10 3 0 1\n5 1 0 2\n"));
+    }
+
+    @Test
+    public void shouldReadLirsBlocksAndSkipSeparators() throws IOException {
+        assertEquals(Arrays.asList(7L, 8L, 7L), accessesOf(TraceFormat.LIRS, "7\n8\n*\n7\n"));
+    }
+
+    @Test
+    public void shouldReadWikipediaPathsAndSkipSaves() throws IOException {
+        String trace = "1 1190146243.324 http://en.wikipedia.org/wiki/Main_Page -\n"
+                + "2 1190146243.326 http://en.wikipedia.org/wiki/Cache save\n"
+                + "3 1190146243.327 http://upload.wikimedia.org/wikipedia/en/a.png -\n";
+        assertEquals(Arrays.asList("/wiki/Main_Page", "/wikipedia/en/a.png"), accessesOf(TraceFormat.WIKIPEDIA, trace));
+    }
+
+    @Test
+    public void shouldDecompressGzipTraces() throws IOException {
+        Path path = directory.resolve("trace.gz");
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path))) {
+            out.write("1\n2\n1\n".getBytes(StandardCharsets.UTF_8));
+        }
+        List<Object> accesses = new ArrayList<>();
+        new Trace(path, TraceFormat.LIRS).forEachAccess(accesses::add);
+        assertEquals(Arrays.asList(1L, 2L, 1L), accesses);
+    }
+
+    @Test
+    public void shouldTellWhichLineIsNotInTheFormat() throws IOException {
+        IllegalArgumentException failure = assertThrows(IllegalArgumentException.class, () -> accessesOf(TraceFormat.LIRS, "1\nA\n"));
+        assertTrue(failure.getMessage().startsWith("Line 2 of "));
+    }
+
+    private List<Object> accessesOf(TraceFormat format, String trace) throws IOException {
+        Path path = directory.resolve("trace.txt");
+        Files.write(path, trace.getBytes(StandardCharsets.UTF_8));
+        List<Object> accesses = new ArrayList<>();
+        new Trace(path, format).forEachAccess(accesses::add);
+        return accesses;
+    }
+}
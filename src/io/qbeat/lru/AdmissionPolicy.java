@@ -0,0 +1,22 @@
+package io.qbeat.lru;
+
+/**
+ * Decides if a new key is worth a place in a full cache, at the expense of the element the cache would drop for it.
+ * The caches tell the policy about every key they are asked for, with record, so that it can keep track of them.
+ * By default the caches admit every key, see {@link #admitAll()}, and {@link TinyLfuAdmissionPolicy} only admits
+ * the keys that are used more often than the element they would replace.
+ */
+public interface AdmissionPolicy<K> {
+
+    // Called for every key a cache is asked to get or set
+    void record(K key);
+
+    // Called when the cache is full and the candidate is not in it. The victim is the element that would be dropped.
+    boolean admit(K candidate, K victim);
+
+    // Admits every key, and records nothing. Its calls are empty, so the JIT compiler removes them from the caches.
+    @SuppressWarnings("unchecked")
+    static <K> AdmissionPolicy<K> admitAll() {
+        return (AdmissionPolicy<K>) AdmitAllPolicy.INSTANCE;
+    }
+}
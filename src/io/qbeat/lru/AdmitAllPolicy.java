@@ -0,0 +1,17 @@
+package io.qbeat.lru;
+
+final class AdmitAllPolicy implements AdmissionPolicy<Object> {
+    static final AdmitAllPolicy INSTANCE = new AdmitAllPolicy();
+
+    private AdmitAllPolicy() {
+    }
+
+    @Override
+    public void record(Object key) {
+    }
+
+    @Override
+    public boolean admit(Object candidate, Object victim) {
+        return true;
+    }
+}
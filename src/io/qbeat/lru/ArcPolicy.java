@@ -0,0 +1,156 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * Adaptive Replacement Cache (Megiddo & Modha): the elements used once since they came in are kept in a list, T1,
+ * and the elements used more than once in another, T2, both in LRU order. The keys dropped from each list are
+ * remembered, without their values, in a ghost list, B1 for T1 and B2 for T2, and together the four lists hold up to
+ * twice the capacity. The target size of T1 adapts to the workload: a key that comes back while in B1 grows it, since
+ * T1 would have kept it if it was larger, and a key that comes back while in B2 shrinks it. Keys that come back from
+ * either ghost list go to T2. The list that is above its target loses its Least Recently Used element.
+ */
+public class ArcPolicy<K, V> implements EvictionPolicy<K, V> {
+    private final int capacity;
+    private final DoubleLinkedList<Element<K, V>> recent = new DoubleLinkedList<>();
+    private final DoubleLinkedList<Element<K, V>> frequent = new DoubleLinkedList<>();
+    private final GhostList<K> recentGhosts = new GhostList<>();
+    private final GhostList<K> frequentGhosts = new GhostList<>();
+    // The target size of T1, between 0 and the capacity
+    private int recentTarget = 0;
+
+    /**
+     * @param capacity The capacity of the cache
+     */
+    public ArcPolicy(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public DoubleLinkedListNode<Element<K, V>> insert(Element<K, V> element, boolean afterEviction) {
+        K key = element.getKey();
+        if (recentGhosts.contains(key) || frequentGhosts.contains(key)) {
+            if (!afterEviction) {
+                recentTarget = adaptedTarget(key);
+            }
+            recentGhosts.remove(key);
+            frequentGhosts.remove(key);
+            return frequent.putNodeFirst(new ArcNode<>(element, true));
+        }
+        if (!afterEviction) {
+            // There is room in the cache, but the ghost lists may still have to make room
+            if (recent.size() + recentGhosts.size() >= capacity && !recentGhosts.isEmpty()) {
+                recentGhosts.removeLast();
+            } else if (totalSize() >= 2 * capacity && !frequentGhosts.isEmpty()) {
+                frequentGhosts.removeLast();
+            }
+        }
+        return recent.putNodeFirst(new ArcNode<>(element, false));
+    }
+
+    @Override
+    public void recordAccess(DoubleLinkedListNode<Element<K, V>> node) {
+        ArcNode<K, V> arcNode = (ArcNode<K, V>) node;
+        if (arcNode.isFrequent) {
+            frequent.moveToTheTop(node);
+            return;
+        }
+        recent.remove(node);
+        arcNode.isFrequent = true;
+        frequent.putNodeFirst(node);
+    }
+
+    @Override
+    public void remove(DoubleLinkedListNode<Element<K, V>> node) {
+        if (((ArcNode<K, V>) node).isFrequent) {
+            frequent.remove(node);
+        } else {
+            recent.remove(node);
+        }
+    }
+
+    @Override
+    public Element<K, V> victim(K candidate) {
+        if (isNew(candidate) && recent.size() + recentGhosts.size() >= capacity && recent.size() == capacity) {
+            return recent.peekLast();
+        }
+        return replacesFromRecent(candidate, adaptedTarget(candidate)) ? recent.peekLast() : frequent.peekLast();
+    }
+
+    @Override
+    public Element<K, V> evict(K candidate, boolean firstEviction) {
+        // A heavy candidate can take several evictions, but only comes back from a ghost list once
+        if (isNew(candidate)) {
+            if (recent.size() + recentGhosts.size() >= capacity) {
+                if (recent.size() == capacity) {
+                    // T1 and B1 hold the whole capacity with T1 alone: its element is dropped without a ghost
+                    return recent.removeLast();
+                }
+                recentGhosts.removeLast();
+            } else if (totalSize() >= 2 * capacity) {
+                frequentGhosts.removeLast();
+            }
+        } else if (firstEviction) {
+            recentTarget = adaptedTarget(candidate);
+        }
+
+        if (replacesFromRecent(candidate, recentTarget)) {
+            Element<K, V> element = recent.removeLast();
+            recentGhosts.addFirst(element.getKey());
+            return element;
+        }
+        Element<K, V> element = frequent.removeLast();
+        frequentGhosts.addFirst(element.getKey());
+        return element;
+    }
+
+    private boolean isNew(K key) {
+        return !recentGhosts.contains(key) && !frequentGhosts.contains(key);
+    }
+
+    // The target of T1 once the candidate has come back, if it is in a ghost list
+    private int adaptedTarget(K candidate) {
+        if (recentGhosts.contains(candidate)) {
+            return Math.min(capacity, recentTarget + Math.max(frequentGhosts.size() / recentGhosts.size(), 1));
+        }
+        if (frequentGhosts.contains(candidate)) {
+            return Math.max(0, recentTarget - Math.max(recentGhosts.size() / frequentGhosts.size(), 1));
+        }
+        return recentTarget;
+    }
+
+    private boolean replacesFromRecent(K candidate, int target) {
+        if (recent.isEmpty()) {
+            return false;
+        }
+        return frequent.isEmpty()
+                || recent.size() > target
+                || (recent.size() == target && frequentGhosts.contains(candidate));
+    }
+
+    private int totalSize() {
+        return recent.size() + frequent.size() + recentGhosts.size() + frequentGhosts.size();
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super Element<K, V>> action) {
+        recent.forEachFromLast(action);
+        frequent.forEachFromLast(action);
+    }
+
+    @Override
+    public String toString() {
+        final String newLine = System.getProperty("line.separator");
+        return "T1: " + recent + newLine + "T2: " + frequent + newLine
+                + "B1: " + recentGhosts + newLine + "B2: " + frequentGhosts;
+    }
+
+    private static final class ArcNode<K, V> extends DoubleLinkedListNode<Element<K, V>> {
+        private boolean isFrequent;
+
+        private ArcNode(Element<K, V> element, boolean isFrequent) {
+            super(element);
+            this.isFrequent = isFrequent;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.qbeat.lru;
+
+import java.util.function.Function;
+
+public class ArrayLRUCache<K, V> {
+
+    /**
+     * An implementation of the Last Recently Used (LRU) Cache, with the same contract as {@link LRUCache},
+     * but backed by arrays indexed by slot instead of a HashMap and a DoubleLinkedList of nodes.
+     * An entry costs two references and four ints, and neither Set nor Get allocates anything once the cache is full,
+     * which makes it a better fit for caches with millions of entries.
+     * Both Set and Get methods require a constant time
+     * Does not support concurrency, priorities or expiry date.
+     *
+     * @param capacity The capacity the Cache should have
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayLRUCache(int capacity) {
+        SlotHashIndex.checkCapacity(capacity);
+        this.keys = (K[]) new Object[capacity];
+        this.values = (V[]) new Object[capacity];
+        this.orderedCache = new IndexedDoubleLinkedList(capacity);
+        this.index = new SlotHashIndex(capacity) {
+            @Override
+            int hashOfSlot(int slot) {
+                return hash(keys[slot]);
+            }
+        };
+    }
+
+    private final K[] keys;
+    private final V[] values;
+    // The ordering of our list. Slots are moved or dropped in constant time, exactly like nodes in a DoubleLinkedList
+    private final IndexedDoubleLinkedList orderedCache;
+    // We need this, in order to be able to find an element in our cache in constant O(1) time
+    private final SlotHashIndex index;
+
+    // Time complexity: O(1)
+    public V get(K key) {
+        int slot = findSlot(key);
+        if (slot == IndexedDoubleLinkedList.NONE) {
+            return null;
+        }
+
+        orderedCache.moveToTheTop(slot);
+        return values[slot];
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it.
+     * A null value is returned, but not cached. If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1), plus the load
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = loader.apply(key);
+            if (value != null) {
+                set(key, value);
+            }
+        }
+        return value;
+    }
+
+    // Time complexity: O(1)
+    public void set(K key, V value) {
+        int slot = findSlot(key);
+        if (slot != IndexedDoubleLinkedList.NONE) {
+            values[slot] = value;
+            orderedCache.moveToTheTop(slot);
+            return;
+        }
+
+        if (orderedCache.isFull()) {
+            // Drop element to make capacity
+            removeLast();
+        }
+        insertToTheTop(key, value);
+    }
+
+    public int size() {
+        return orderedCache.size();
+    }
+
+    private int findSlot(K key) {
+        int hash = hash(key);
+        for (int bucket = index.firstBucket(hash); ; bucket = index.nextBucket(bucket)) {
+            int slot = index.slotAt(bucket);
+            if (slot == IndexedDoubleLinkedList.NONE || keys[slot].equals(key)) {
+                return slot;
+            }
+        }
+    }
+
+    private void removeLast() {
+        int slot = orderedCache.removeLast();
+        index.remove(slot);
+        // Let go of the key and the value, so that they can be garbage collected
+        keys[slot] = null;
+        values[slot] = null;
+        orderedCache.free(slot);
+    }
+
+    private void insertToTheTop(K key, V value) {
+        int slot = orderedCache.allocate();
+        keys[slot] = key;
+        values[slot] = value;
+        index.add(slot);
+        orderedCache.putFirst(slot);
+    }
+
+    private static int hash(Object key) {
+        // Spread the bits, since many hashCode implementations only vary in the low bits
+        int h = key.hashCode() * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        if (orderedCache.isEmpty()) {
+            return "List is empty";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Elements: ");
+        for (int slot = orderedCache.getHead(); slot != IndexedDoubleLinkedList.NONE; slot = orderedCache.getNext(slot)) {
+            sb.append("{").append(keys[slot]).append(",").append(values[slot]).append("}");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,148 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class AsyncLRUCache<K, V> {
+
+    private final LRUCacheWithPrioritiesAndExpiryTimestamps<K, CompletableFuture<V>> cache;
+    private final Executor executor;
+    // Only held for the operations on the cache, never while loading
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * A thread-safe cache on top of a {@link LRUCacheWithPrioritiesAndExpiryTimestamps}, that holds the futures of the
+     * values instead of the values, so that a get never blocks: on a miss, the future is put in the cache right away,
+     * and the value is loaded on the executor.
+     * A load in flight takes a slot like any other element, with the priority and expiry timestamp it was asked with,
+     * and every get of its key until it completes gets the same future, so each key is loaded once.
+     * A load in flight can be dropped by the usual policies; it still completes the future its callers hold, but it
+     * is not put back in the cache. A future that completes exceptionally, or with null, is removed from the cache,
+     * unless it has been replaced in the meantime, so that the next get loads the value again.
+     * Both Set and Get methods require the time of the cache below, plus a lock that is never held while loading.
+     *
+     * @param capacity The capacity the Cache should have
+     * @param executor The executor the loads run on
+     */
+    public AsyncLRUCache(int capacity, LRUTime lruTime, Executor executor) {
+        this.cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(capacity, lruTime);
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a cache that loads on virtual threads, when the runtime has them (Java 21 or later),
+     * and on a shared pool of daemon threads otherwise.
+     */
+    public AsyncLRUCache(int capacity, LRUTime lruTime) {
+        this(capacity, lruTime, DefaultLoaderExecutor.INSTANCE);
+    }
+
+    /**
+     * Gets the future of the value of the key. If the key is not in the cache, or has expired, the value is loaded on
+     * the executor, and its future is set with the given priority and expiry timestamp before this returns.
+     * Time complexity: O(logn)
+     */
+    public CompletableFuture<V> get(K key, int priority, long expiryTimestamp, Function<? super K, ? extends V> loader) {
+        CompletableFuture<V> future;
+        lock.lock();
+        try {
+            future = cache.get(key);
+            if (future != null) {
+                return future;
+            }
+            future = new CompletableFuture<>();
+            cache.set(key, future, priority, expiryTimestamp);
+        } finally {
+            lock.unlock();
+        }
+
+        removeWhenFailedOrEmpty(key, future);
+        final CompletableFuture<V> load = future;
+        try {
+            executor.execute(() -> {
+                try {
+                    load.complete(loader.apply(key));
+                } catch (Throwable t) {
+                    load.completeExceptionally(t);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor rejected the load
+            load.completeExceptionally(e);
+        }
+        return load;
+    }
+
+    // Time complexity: O(1)
+    public CompletableFuture<V> getIfPresent(K key) {
+        lock.lock();
+        try {
+            return cache.get(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Time complexity: O(logn)
+    public void set(K key, V value, int priority, long expiryTimestamp) {
+        set(key, CompletableFuture.completedFuture(value), priority, expiryTimestamp);
+    }
+
+    // Time complexity: O(logn)
+    public void set(K key, CompletableFuture<V> future, int priority, long expiryTimestamp) {
+        lock.lock();
+        try {
+            cache.set(key, future, priority, expiryTimestamp);
+        } finally {
+            lock.unlock();
+        }
+        removeWhenFailedOrEmpty(key, future);
+    }
+
+    // Removes the key, whether its value has been loaded or not. Its load, if any, still completes its future.
+    public CompletableFuture<V> remove(K key) {
+        lock.lock();
+        try {
+            return cache.remove(key);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeWhenFailedOrEmpty(K key, CompletableFuture<V> future) {
+        future.whenComplete((value, failure) -> {
+            if (failure != null || value == null) {
+                lock.lock();
+                try {
+                    // Only if it is still this future: the key might have been dropped and loaded again since
+                    if (cache.peek(key) == future) {
+                        cache.remove(key);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        });
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return cache.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
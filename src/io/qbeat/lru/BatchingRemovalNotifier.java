@@ -0,0 +1,74 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Queues the removals, and delivers them to the listener on the executor, one batch at a time so that they are
+ * delivered in order. A single task is submitted for all the removals queued until it runs, up to
+ * {@link #MAX_BATCH_SIZE}, after which the task submits itself again, so that it does not hold a thread of a shared
+ * executor for too long. If the executor rejects a task, the removals queued are dropped, so that the queue does not
+ * grow without bound while the executor is shut down or saturated, and the next removal submits a task again.
+ */
+final class BatchingRemovalNotifier<K, V> implements RemovalNotifier<K, V> {
+    static final int MAX_BATCH_SIZE = 1024;
+
+    private final RemovalListener<? super K, ? super V> listener;
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<Removal<K, V>> removals = new ConcurrentLinkedQueue<>();
+    // Whether a delivery is submitted or running
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+
+    BatchingRemovalNotifier(RemovalListener<? super K, ? super V> listener, Executor executor) {
+        this.listener = listener;
+        this.executor = executor;
+    }
+
+    @Override
+    public void enqueue(K key, V value, RemovalCause cause) {
+        removals.add(new Removal<>(key, value, cause));
+        scheduleDelivery();
+    }
+
+    private void scheduleDelivery() {
+        if (!scheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            executor.execute(this::deliver);
+        } catch (RejectedExecutionException e) {
+            removals.clear();
+            scheduled.set(false);
+        }
+    }
+
+    private void deliver() {
+        Removal<K, V> removal;
+        for (int delivered = 0; delivered < MAX_BATCH_SIZE && (removal = removals.poll()) != null; delivered++) {
+            try {
+                listener.onRemoval(removal.key, removal.value, removal.cause);
+            } catch (RuntimeException e) {
+                // The listener's failure is its own, and does not stop the next removals
+            }
+        }
+        scheduled.set(false);
+        // The removals left over by the batch size, or queued while the flag was still set
+        if (!removals.isEmpty()) {
+            scheduleDelivery();
+        }
+    }
+
+    private static final class Removal<K, V> {
+        private final K key;
+        private final V value;
+        private final RemovalCause cause;
+
+        private Removal(K key, V value, RemovalCause cause) {
+            this.key = key;
+            this.value = value;
+            this.cause = cause;
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package io.qbeat.lru;
+
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * {@link PriorityBuckets} for priorities from 0 up to a bound, kept in an array indexed by priority.
+ * The non-empty priorities are tracked in a two-level bitmap: one bit per priority, and one bit per word of those,
+ * so the lowest priority is found with two {@link Long#numberOfTrailingZeros} calls, and the highest one with two
+ * {@link Long#numberOfLeadingZeros} calls.
+ * Every operation takes constant time O(1). The lists of the priorities are created on first use, and kept when
+ * they become empty, so moving elements between priorities does not allocate them again.
+ */
+public class BitmapPriorityBuckets<E> implements PriorityBuckets<E> {
+    public static final int MAX_PRIORITY = 64 * 64 - 1;
+
+    private final DoubleLinkedList<E>[] lists;
+    // Bit (p & 63) of word (p >>> 6) is set if priority p is not empty
+    private final long[] nonEmptyPriorities;
+    // Bit w is set if word w of nonEmptyPriorities is not zero
+    private long nonEmptyWords = 0;
+
+    /**
+     * @param maxPriority The highest priority allowed, at most {@link #MAX_PRIORITY}. The lowest one is 0.
+     */
+    @SuppressWarnings("unchecked")
+    public BitmapPriorityBuckets(int maxPriority) {
+        if (maxPriority < 0 || maxPriority > MAX_PRIORITY) {
+            throw new IllegalArgumentException("The max priority should be between 0 and " + MAX_PRIORITY + ", but got " + maxPriority);
+        }
+        this.lists = (DoubleLinkedList<E>[]) new DoubleLinkedList<?>[maxPriority + 1];
+        this.nonEmptyPriorities = new long[(maxPriority >>> 6) + 1];
+    }
+
+    public int maxPriority() {
+        return lists.length - 1;
+    }
+
+    @Override
+    public void checkPriority(int priority) {
+        if (priority < 0 || priority >= lists.length) {
+            throw new IllegalArgumentException("The priority should be between 0 and " + maxPriority() + ", but got " + priority);
+        }
+    }
+
+    @Override
+    public DoubleLinkedListNode<E> insertToTheTop(int priority, E element) {
+        DoubleLinkedListNode<E> node = new DoubleLinkedListNode<>(element);
+        insertNodeToTheTop(priority, node);
+        return node;
+    }
+
+    @Override
+    public void insertNodeToTheTop(int priority, DoubleLinkedListNode<E> node) {
+        DoubleLinkedList<E> list = listFor(priority);
+        if (list.isEmpty()) {
+            markNonEmpty(priority);
+        }
+        list.putNodeFirst(node);
+    }
+
+    @Override
+    public void delete(int priority, DoubleLinkedListNode<E> node) {
+        DoubleLinkedList<E> list = lists[priority];
+        list.remove(node);
+        if (list.isEmpty()) {
+            markEmpty(priority);
+        }
+    }
+
+    @Override
+    public void moveToTop(int currentPriority, int updatedPriority, DoubleLinkedListNode<E> node) {
+        if (currentPriority == updatedPriority) {
+            lists[currentPriority].moveToTheTop(node);
+            return;
+        }
+        checkPriority(updatedPriority);
+        delete(currentPriority, node);
+        insertNodeToTheTop(updatedPriority, node);
+    }
+
+    @Override
+    public void moveToTopForPriority(int priority, DoubleLinkedListNode<E> node) {
+        lists[priority].moveToTheTop(node);
+    }
+
+    @Override
+    public E deleteLastElementOfLowestPriority() {
+        int priority = lowestPriority();
+        DoubleLinkedList<E> list = lists[priority];
+        E element = list.removeLast();
+        if (list.isEmpty()) {
+            markEmpty(priority);
+        }
+        return element;
+    }
+
+    @Override
+    public E peekLastElementOfLowestPriority() {
+        return lists[lowestPriority()].peekLast();
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super E> action) {
+        for (DoubleLinkedList<E> list : lists) {
+            if (list != null) {
+                list.forEachFromLast(action);
+            }
+        }
+    }
+
+    @Override
+    public int lowestPriority() {
+        if (nonEmptyWords == 0) {
+            throw new NoSuchElementException();
+        }
+        int word = Long.numberOfTrailingZeros(nonEmptyWords);
+        return (word << 6) + Long.numberOfTrailingZeros(nonEmptyPriorities[word]);
+    }
+
+    @Override
+    public int highestPriority() {
+        if (nonEmptyWords == 0) {
+            throw new NoSuchElementException();
+        }
+        int word = 63 - Long.numberOfLeadingZeros(nonEmptyWords);
+        return (word << 6) + 63 - Long.numberOfLeadingZeros(nonEmptyPriorities[word]);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return nonEmptyWords == 0;
+    }
+
+    private DoubleLinkedList<E> listFor(int priority) {
+        checkPriority(priority);
+        DoubleLinkedList<E> list = lists[priority];
+        if (list == null) {
+            list = new DoubleLinkedList<>();
+            lists[priority] = list;
+        }
+        return list;
+    }
+
+    private void markNonEmpty(int priority) {
+        int word = priority >>> 6;
+        nonEmptyPriorities[word] |= 1L << priority;
+        nonEmptyWords |= 1L << word;
+    }
+
+    private void markEmpty(int priority) {
+        int word = priority >>> 6;
+        nonEmptyPriorities[word] &= ~(1L << priority);
+        if (nonEmptyPriorities[word] == 0) {
+            nonEmptyWords &= ~(1L << word);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isEmpty()) {
+            return "Cache is empty";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int priority = 0; priority < lists.length; priority++) {
+            if (lists[priority] != null && !lists[priority].isEmpty()) {
+                sb.append("Priority ").append(priority).append(": ");
+                sb.append(lists[priority].toString());
+                sb.append(System.getProperty("line.separator"));
+            }
+        }
+
+        return sb.toString();
+    }
+}
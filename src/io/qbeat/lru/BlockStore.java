@@ -0,0 +1,182 @@
+package io.qbeat.lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// Fixed-size blocks of bytes, in direct buffers or in the regions of a memory-mapped file, each region up to 2GB.
+// A value takes as many blocks as it needs, wherever they are free, linked through the first bytes of each block, and
+// the free blocks are linked the same way, so freeing a value leaves no fragmentation behind, and nothing of the
+// blocks is kept on the heap. The blocks that have never been used are not touched until they are needed.
+final class BlockStore implements Closeable {
+    static final int NONE = -1;
+
+    // Each block starts with the index of the next block of its value, or of the next free block
+    private static final int NEXT_OFFSET = 0;
+    private static final int DATA_OFFSET = Integer.BYTES;
+
+    private final int blockSize;
+    private final int dataBytesPerBlock;
+    private final int blockCount;
+    private final int blocksPerRegion;
+    private final FileChannel channel;
+    private final Path file;
+    private ByteBuffer[] regions;
+
+    private int firstFreeBlock = NONE;
+    private int firstUnusedBlock = 0;
+    private int freeBlockCount;
+
+    private BlockStore(int blockSize, int blockCount, ByteBuffer[] regions, FileChannel channel, Path file) {
+        this.blockSize = blockSize;
+        this.dataBytesPerBlock = blockSize - DATA_OFFSET;
+        this.blockCount = blockCount;
+        this.blocksPerRegion = blocksPerRegion(blockSize);
+        this.regions = regions;
+        this.channel = channel;
+        this.file = file;
+        this.freeBlockCount = blockCount;
+    }
+
+    // Blocks in direct buffers, freed by the garbage collector once the store is closed
+    static BlockStore offHeap(long bytes, int blockSize) {
+        final int blockCount = blockCount(bytes, blockSize);
+        final ByteBuffer[] regions = new ByteBuffer[regionCount(blockCount, blockSize)];
+        for (int region = 0; region < regions.length; region++) {
+            regions[region] = ByteBuffer.allocateDirect(regionBytes(region, blockCount, blockSize));
+        }
+        return new BlockStore(blockSize, blockCount, regions, null, null);
+    }
+
+    // Blocks in a file, that is truncated first, and deleted once the store is closed
+    static BlockStore mapped(Path file, long bytes, int blockSize) throws IOException {
+        final int blockCount = blockCount(bytes, blockSize);
+        final ByteBuffer[] regions = new ByteBuffer[regionCount(blockCount, blockSize)];
+        final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            for (int region = 0; region < regions.length; region++) {
+                final long start = (long) region * blocksPerRegion(blockSize) * blockSize;
+                regions[region] = channel.map(FileChannel.MapMode.READ_WRITE, start, regionBytes(region, blockCount, blockSize));
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new BlockStore(blockSize, blockCount, regions, channel, file);
+    }
+
+    int blockCount() {
+        return blockCount;
+    }
+
+    int freeBlockCount() {
+        return freeBlockCount;
+    }
+
+    int blocksFor(int length) {
+        return (length + dataBytesPerBlock - 1) / dataBytesPerBlock;
+    }
+
+    // Returns the first block of the bytes, or NONE if they are empty. They must fit in the free blocks.
+    int write(byte[] bytes) {
+        int firstBlock = NONE;
+        int previousBlock = NONE;
+        for (int offset = 0; offset < bytes.length; offset += dataBytesPerBlock) {
+            final int block = allocate();
+            regionOf(block).put(offsetOf(block) + DATA_OFFSET, bytes, offset, Math.min(dataBytesPerBlock, bytes.length - offset));
+            setNext(block, NONE);
+            if (previousBlock == NONE) {
+                firstBlock = block;
+            } else {
+                setNext(previousBlock, block);
+            }
+            previousBlock = block;
+        }
+        return firstBlock;
+    }
+
+    byte[] read(int firstBlock, int length) {
+        final byte[] bytes = new byte[length];
+        int block = firstBlock;
+        for (int offset = 0; offset < length; offset += dataBytesPerBlock) {
+            regionOf(block).get(offsetOf(block) + DATA_OFFSET, bytes, offset, Math.min(dataBytesPerBlock, length - offset));
+            block = nextOf(block);
+        }
+        return bytes;
+    }
+
+    void free(int firstBlock) {
+        int block = firstBlock;
+        while (block != NONE) {
+            final int nextBlock = nextOf(block);
+            setNext(block, firstFreeBlock);
+            firstFreeBlock = block;
+            freeBlockCount++;
+            block = nextBlock;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        regions = null;
+        if (channel != null) {
+            channel.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private int allocate() {
+        freeBlockCount--;
+        if (firstFreeBlock == NONE) {
+            return firstUnusedBlock++;
+        }
+        final int block = firstFreeBlock;
+        firstFreeBlock = nextOf(block);
+        return block;
+    }
+
+    private ByteBuffer regionOf(int block) {
+        return regions[block / blocksPerRegion];
+    }
+
+    private int offsetOf(int block) {
+        return (block % blocksPerRegion) * blockSize;
+    }
+
+    private int nextOf(int block) {
+        return regionOf(block).getInt(offsetOf(block) + NEXT_OFFSET);
+    }
+
+    private void setNext(int block, int nextBlock) {
+        regionOf(block).putInt(offsetOf(block) + NEXT_OFFSET, nextBlock);
+    }
+
+    private static int blockCount(long bytes, int blockSize) {
+        if (blockSize <= DATA_OFFSET) {
+            throw new IllegalArgumentException("The block size should be more than " + DATA_OFFSET + " bytes, but got " + blockSize);
+        }
+        final long blockCount = bytes / blockSize;
+        if (blockCount < 1 || blockCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Cannot split " + bytes + " bytes in blocks of " + blockSize + " bytes");
+        }
+        return (int) blockCount;
+    }
+
+    private static int blocksPerRegion(int blockSize) {
+        return Integer.MAX_VALUE / blockSize;
+    }
+
+    private static int regionCount(int blockCount, int blockSize) {
+        return (int) (((long) blockCount + blocksPerRegion(blockSize) - 1) / blocksPerRegion(blockSize));
+    }
+
+    private static int regionBytes(int region, int blockCount, int blockSize) {
+        final long blocksLeft = blockCount - (long) region * blocksPerRegion(blockSize);
+        return (int) Math.min(blocksPerRegion(blockSize), blocksLeft) * blockSize;
+    }
+}
@@ -0,0 +1,203 @@
+package io.qbeat.lru;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * The elements of a cache, in the order the cache would drop them in: the lowest priority first, and the Least
+ * Recently Used element of each priority first, with their priorities and expiry timestamps, where those apply.
+ * A snapshot only holds the keys and the values of the cache, so taking one takes linear time O(n), without copying
+ * them. It is written to a file with {@link #writeTo}, read back with {@link #readFrom}, e.g. after a restart, and set
+ * into a cache with its restore method, which rebuilds the same eviction order.
+ * The values are encoded when the snapshot is written, so a value changed in the meantime is written as it is then.
+ */
+public final class CacheSnapshot<K, V> {
+    // "LRUS"
+    private static final int MAGIC = 0x4C525553;
+    private static final int VERSION = 1;
+    private static final int HAS_PRIORITIES = 1;
+    private static final int HAS_EXPIRY_TIMESTAMPS = 2;
+    // Magic, version, flags and number of elements
+    private static final int HEADER_BYTES = Integer.BYTES + Integer.BYTES + 1 + Integer.BYTES;
+    // The length of a null key or value
+    private static final int NULL_LENGTH = -1;
+
+    private final boolean hasPriorities;
+    private final boolean hasExpiryTimestamps;
+    private final Object[] keys;
+    private final Object[] values;
+    private final int[] priorities;
+    private final long[] expiryTimestamps;
+    private int size = 0;
+
+    CacheSnapshot(int maxSize, boolean hasPriorities, boolean hasExpiryTimestamps) {
+        this.hasPriorities = hasPriorities;
+        this.hasExpiryTimestamps = hasExpiryTimestamps;
+        this.keys = new Object[maxSize];
+        this.values = new Object[maxSize];
+        this.priorities = hasPriorities ? new int[maxSize] : null;
+        this.expiryTimestamps = hasExpiryTimestamps ? new long[maxSize] : null;
+    }
+
+    // The priority and the expiry timestamp are ignored if the snapshot does not have them
+    void add(K key, V value, int priority, long expiryTimestamp) {
+        keys[size] = key;
+        values[size] = value;
+        if (hasPriorities) {
+            priorities[size] = priority;
+        }
+        if (hasExpiryTimestamps) {
+            expiryTimestamps[size] = expiryTimestamp;
+        }
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean hasPriorities() {
+        return hasPriorities;
+    }
+
+    public boolean hasExpiryTimestamps() {
+        return hasExpiryTimestamps;
+    }
+
+    @SuppressWarnings("unchecked")
+    K keyAt(int index) {
+        return (K) keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    V valueAt(int index) {
+        return (V) values[index];
+    }
+
+    int priorityAt(int index) {
+        return priorities[index];
+    }
+
+    long expiryTimestampAt(int index) {
+        return expiryTimestamps[index];
+    }
+
+    /**
+     * Writes the snapshot to the file, through a memory-mapped FileChannel. The snapshot is written to a temporary
+     * file next to it first, and moved in place once complete, so the file is never left half written.
+     * Nothing is read from the cache, so a cache that is shared between threads only has to be locked while the
+     * snapshot is taken, not while it is written.
+     */
+    public void writeTo(Path path, Codec<? super K> keyCodec, Codec<? super V> valueCodec) throws IOException {
+        writeTo(path, keyCodec, valueCodec, MappedOutput.DEFAULT_REGION_SIZE);
+    }
+
+    void writeTo(Path path, Codec<? super K> keyCodec, Codec<? super V> valueCodec, int regionSize) throws IOException {
+        final byte[][] encodedKeys = new byte[size][];
+        final byte[][] encodedValues = new byte[size][];
+        final int fixedBytesPerElement = (hasPriorities ? Integer.BYTES : 0) + (hasExpiryTimestamps ? Long.BYTES : 0)
+                + Integer.BYTES + Integer.BYTES;
+        long length = HEADER_BYTES + (long) size * fixedBytesPerElement;
+        for (int i = 0; i < size; i++) {
+            encodedKeys[i] = keys[i] == null ? null : keyCodec.encode(keyAt(i));
+            encodedValues[i] = values[i] == null ? null : valueCodec.encode(valueAt(i));
+            length += lengthOf(encodedKeys[i]) + lengthOf(encodedValues[i]);
+        }
+
+        final Path temporaryPath = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedOutput output = new MappedOutput(channel, length, regionSize);
+            output.putInt(MAGIC);
+            output.putInt(VERSION);
+            output.putByte((byte) ((hasPriorities ? HAS_PRIORITIES : 0) | (hasExpiryTimestamps ? HAS_EXPIRY_TIMESTAMPS : 0)));
+            output.putInt(size);
+            for (int i = 0; i < size; i++) {
+                if (hasPriorities) {
+                    output.putInt(priorities[i]);
+                }
+                if (hasExpiryTimestamps) {
+                    output.putLong(expiryTimestamps[i]);
+                }
+                putBytes(output, encodedKeys[i]);
+                putBytes(output, encodedValues[i]);
+            }
+            output.force();
+        }
+        Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a snapshot written by {@link #writeTo}, through a memory-mapped FileChannel.
+     *
+     * @throws IOException If the file cannot be read, or is not a complete snapshot
+     */
+    public static <K, V> CacheSnapshot<K, V> readFrom(Path path, Codec<K> keyCodec, Codec<V> valueCodec) throws IOException {
+        return readFrom(path, keyCodec, valueCodec, MappedOutput.DEFAULT_REGION_SIZE);
+    }
+
+    static <K, V> CacheSnapshot<K, V> readFrom(Path path, Codec<K> keyCodec, Codec<V> valueCodec, int regionSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a cache snapshot: " + path);
+            }
+            MappedInput input = new MappedInput(channel, regionSize);
+            if (input.getInt() != MAGIC) {
+                throw new IOException("Not a cache snapshot: " + path);
+            }
+            final int version = input.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported version " + version + " of cache snapshot: " + path);
+            }
+            final byte flags = input.getByte();
+            final int size = input.getInt();
+            if (size < 0) {
+                throw new IOException("Corrupt cache snapshot: " + path);
+            }
+            final boolean hasPriorities = (flags & HAS_PRIORITIES) != 0;
+            final boolean hasExpiryTimestamps = (flags & HAS_EXPIRY_TIMESTAMPS) != 0;
+            // Each element takes at least the lengths of its key and value, so the size cannot exceed what is left
+            if (size > input.remaining() / (Integer.BYTES + Integer.BYTES)) {
+                throw new IOException("Corrupt cache snapshot: " + path);
+            }
+            CacheSnapshot<K, V> snapshot = new CacheSnapshot<>(size, hasPriorities, hasExpiryTimestamps);
+            for (int i = 0; i < size; i++) {
+                final int priority = hasPriorities ? input.getInt() : 0;
+                final long expiryTimestamp = hasExpiryTimestamps ? input.getLong() : 0;
+                final byte[] key = getBytes(input, path);
+                final byte[] value = getBytes(input, path);
+                snapshot.add(key == null ? null : keyCodec.decode(key), value == null ? null : valueCodec.decode(value),
+                        priority, expiryTimestamp);
+            }
+            return snapshot;
+        }
+    }
+
+    private static int lengthOf(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putBytes(MappedOutput output, byte[] bytes) throws IOException {
+        if (bytes == null) {
+            output.putInt(NULL_LENGTH);
+            return;
+        }
+        output.putInt(bytes.length);
+        output.put(bytes);
+    }
+
+    private static byte[] getBytes(MappedInput input, Path path) throws IOException {
+        final int length = input.getInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0) {
+            throw new IOException("Corrupt cache snapshot: " + path);
+        }
+        return input.get(length);
+    }
+}
@@ -0,0 +1,102 @@
+package io.qbeat.lru;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An immutable snapshot of the counts of a {@link StatsCounter}.
+ */
+public final class CacheStats {
+    private final long hitCount;
+    private final long missCount;
+    private final long[] evictionCounts;
+    private final Map<Integer, Long> elementsPerPriority;
+    private final long loadSuccessCount;
+    private final long loadFailureCount;
+    private final long totalLoadTimeNanos;
+
+    /**
+     * @param evictionCounts      The number of elements dropped for each {@link RemovalCause}, indexed by its ordinal
+     * @param elementsPerPriority The number of elements of each priority that has any
+     */
+    public CacheStats(long hitCount, long missCount, long[] evictionCounts, Map<Integer, Long> elementsPerPriority,
+                      long loadSuccessCount, long loadFailureCount, long totalLoadTimeNanos) {
+        if (evictionCounts.length != RemovalCause.values().length) {
+            throw new IllegalArgumentException("Expected one eviction count per removal cause, but got " + evictionCounts.length);
+        }
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCounts = evictionCounts.clone();
+        this.elementsPerPriority = Collections.unmodifiableMap(new TreeMap<>(elementsPerPriority));
+        this.loadSuccessCount = loadSuccessCount;
+        this.loadFailureCount = loadFailureCount;
+        this.totalLoadTimeNanos = totalLoadTimeNanos;
+    }
+
+    public long hitCount() {
+        return hitCount;
+    }
+
+    public long missCount() {
+        return missCount;
+    }
+
+    public long requestCount() {
+        return hitCount + missCount;
+    }
+
+    // 1 when nothing has been requested yet
+    public double hitRate() {
+        long requestCount = requestCount();
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    public long evictionCount(RemovalCause cause) {
+        return evictionCounts[cause.ordinal()];
+    }
+
+    public long evictionCount() {
+        long evictionCount = 0;
+        for (long count : evictionCounts) {
+            evictionCount += count;
+        }
+        return evictionCount;
+    }
+
+    // Sorted by priority. Only the caches with priorities count their elements.
+    public Map<Integer, Long> elementsPerPriority() {
+        return elementsPerPriority;
+    }
+
+    public long loadSuccessCount() {
+        return loadSuccessCount;
+    }
+
+    public long loadFailureCount() {
+        return loadFailureCount;
+    }
+
+    public long totalLoadTimeNanos() {
+        return totalLoadTimeNanos;
+    }
+
+    // 0 when nothing has been loaded yet
+    public double averageLoadPenaltyNanos() {
+        long loadCount = loadSuccessCount + loadFailureCount;
+        return loadCount == 0 ? 0.0 : (double) totalLoadTimeNanos / loadCount;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("Hits: ").append(hitCount).append(", Misses: ").append(missCount);
+        for (RemovalCause cause : RemovalCause.values()) {
+            sb.append(", Evictions ").append(cause).append(": ").append(evictionCount(cause));
+        }
+        sb.append(", Elements per priority: ").append(elementsPerPriority);
+        sb.append(", Loads: ").append(loadSuccessCount).append(", Failed loads: ").append(loadFailureCount);
+        sb.append(", Load time: ").append(totalLoadTimeNanos).append("ns");
+        return sb.toString();
+    }
+}
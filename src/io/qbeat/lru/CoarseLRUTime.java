@@ -0,0 +1,64 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A clock that reads the system time once per tick on a daemon thread, and caches it in a volatile field,
+ * so that reading it costs a single volatile load instead of a call to the system clock.
+ * The time returned lags behind the real one by up to one tick, plus the scheduling delay of the thread.
+ * One instance can be shared by any number of caches. Closing it stops the thread and freezes the time.
+ */
+public class CoarseLRUTime extends LRUTime implements AutoCloseable {
+    public static final long DEFAULT_PRECISION_MILLIS = 1;
+
+    private final LRUTime source;
+    private final long precisionMillis;
+    private final ScheduledExecutorService executor;
+    private volatile long currentTimeInEpochMillis;
+
+    /**
+     * @param precisionMillis The time between two reads of the system time, e.g. 1ms or 10ms
+     */
+    public CoarseLRUTime(long precisionMillis) {
+        this(new LRUTime(), precisionMillis);
+    }
+
+    public CoarseLRUTime() {
+        this(DEFAULT_PRECISION_MILLIS);
+    }
+
+    CoarseLRUTime(LRUTime source, long precisionMillis) {
+        if (precisionMillis < 1) {
+            throw new IllegalArgumentException("The precision should be at least 1ms, but got " + precisionMillis);
+        }
+        this.source = source;
+        this.precisionMillis = precisionMillis;
+        this.currentTimeInEpochMillis = source.getCurrentTimeToEpochMillis();
+        this.executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lru-coarse-time");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleAtFixedRate(this::tick, precisionMillis, precisionMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public long getCurrentTimeToEpochMillis() {
+        return currentTimeInEpochMillis;
+    }
+
+    public long getPrecisionMillis() {
+        return precisionMillis;
+    }
+
+    void tick() {
+        currentTimeInEpochMillis = source.getCurrentTimeToEpochMillis();
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,28 @@
+package io.qbeat.lru;
+
+/**
+ * Turns the keys or the values of a cache into bytes and back, so that a {@link CacheSnapshot} can be written to a
+ * file. The bytes of a value are decoded into an equal value, in another process as well.
+ * See {@link #strings()}, {@link #integers()} and {@link #longs()} for the common types.
+ */
+public interface Codec<T> {
+
+    byte[] encode(T value);
+
+    T decode(byte[] bytes);
+
+    // UTF-8
+    static Codec<String> strings() {
+        return Codecs.STRINGS;
+    }
+
+    // 4 bytes, big-endian
+    static Codec<Integer> integers() {
+        return Codecs.INTEGERS;
+    }
+
+    // 8 bytes, big-endian
+    static Codec<Long> longs() {
+        return Codecs.LONGS;
+    }
+}
@@ -0,0 +1,221 @@
+package io.qbeat.lru;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class ConcurrentLRUCache<K, V> {
+
+    static class Segment<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final LRUCache<K, V> cache;
+
+        Segment(int capacity) {
+            this.cache = new LRUCache<>(capacity);
+        }
+    }
+
+    private final int capacity;
+    private final Segment<K, V>[] segments;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+
+    /**
+     * A thread-safe Last Recently Used (LRU) Cache.
+     * Keys are partitioned by their hash into segments, each one being an {@link LRUCache} with its own lock,
+     * so threads that work on different segments never wait for each other.
+     * The capacity is split evenly across the segments, and each segment drops its own Least Recently Used item,
+     * which means that the order of eviction is LRU per segment, and only approximately LRU for the whole cache.
+     * Both Set and Get methods require a constant time
+     * Does not support priorities or expiry date.
+     *
+     * @param capacity     The capacity the Cache should have
+     * @param segmentCount The number of independently locked segments. It is capped to the capacity.
+     */
+    @SuppressWarnings("unchecked")
+    public ConcurrentLRUCache(int capacity, int segmentCount) {
+        if (segmentCount < 1) {
+            throw new IllegalArgumentException("There should be at least one segment, but got " + segmentCount);
+        }
+        this.capacity = capacity;
+        int segmentsToCreate = Math.max(1, Math.min(segmentCount, capacity));
+        this.segments = (Segment<K, V>[]) new Segment<?, ?>[segmentsToCreate];
+        for (int i = 0; i < segmentsToCreate; i++) {
+            // The first (capacity % segments) segments take one more element, so that the capacities add up
+            int segmentCapacity = capacity / segmentsToCreate + (i < capacity % segmentsToCreate ? 1 : 0);
+            segments[i] = new Segment<>(segmentCapacity);
+        }
+    }
+
+    /**
+     * Creates a cache with four segments per available processor, which keeps contention low on read-heavy workloads.
+     *
+     * @param capacity The capacity the Cache should have
+     */
+    public ConcurrentLRUCache(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors() * 4);
+    }
+
+    // Time complexity: O(1)
+    public V get(K key) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            return segment.cache.get(key);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    // Time complexity: O(1)
+    public void set(K key, V value) {
+        Segment<K, V> segment = segmentFor(key);
+        segment.lock.lock();
+        try {
+            segment.cache.set(key, value);
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it.
+     * When several threads miss on the same key at the same time, only one of them calls the loader, and the others
+     * wait for its result. A null value is returned, but not cached. If the loader throws, nothing is cached, and the
+     * exception is thrown to all the threads waiting for that load.
+     * Time complexity: O(1) on a hit, plus the load on a miss
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        return loads.load(key, k -> {
+            // Another thread might have loaded it, just before this load started
+            V loadedValue = get(k);
+            if (loadedValue == null) {
+                loadedValue = loader.apply(k);
+                if (loadedValue != null) {
+                    set(k, loadedValue);
+                }
+            }
+            return loadedValue;
+        });
+    }
+
+    /**
+     * Gets the elements of the given keys that are in the cache, locking each segment only once for the whole batch.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    @SuppressWarnings("unchecked")
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        List<K>[] keysPerSegment = (List<K>[]) new List<?>[segments.length];
+        for (K key : keys) {
+            int index = segmentIndexFor(key);
+            if (keysPerSegment[index] == null) {
+                keysPerSegment[index] = new ArrayList<>();
+            }
+            keysPerSegment[index].add(key);
+        }
+
+        Map<K, V> values = new HashMap<>();
+        for (int i = 0; i < segments.length; i++) {
+            if (keysPerSegment[i] == null) {
+                continue;
+            }
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                values.putAll(segment.cache.getAll(keysPerSegment[i]));
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets all the given elements, locking each segment only once for the whole batch.
+     * Within a segment, the elements are set in the iteration order of the map, see {@link LRUCache#setAll}.
+     * Time complexity: O(k), for k elements
+     */
+    @SuppressWarnings("unchecked")
+    public void setAll(Map<? extends K, ? extends V> values) {
+        Map<K, V>[] valuesPerSegment = (Map<K, V>[]) new Map<?, ?>[segments.length];
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            int index = segmentIndexFor(entry.getKey());
+            if (valuesPerSegment[index] == null) {
+                valuesPerSegment[index] = new LinkedHashMap<>();
+            }
+            valuesPerSegment[index].put(entry.getKey(), entry.getValue());
+        }
+
+        for (int i = 0; i < segments.length; i++) {
+            if (valuesPerSegment[i] == null) {
+                continue;
+            }
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                segment.cache.setAll(valuesPerSegment[i]);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+    }
+
+    // Time complexity: O(number of segments). The result is only a snapshot, if other threads are modifying the cache.
+    public int size() {
+        int size = 0;
+        for (Segment<K, V> segment : segments) {
+            segment.lock.lock();
+            try {
+                size += segment.cache.size();
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    Segment<K, V> segmentFor(K key) {
+        return segments[segmentIndexFor(key)];
+    }
+
+    private int segmentIndexFor(K key) {
+        // Spread the bits, since many hashCode implementations only vary in the low bits
+        int h = key.hashCode() * 0x9E3779B9;
+        h ^= h >>> 16;
+        return (h & Integer.MAX_VALUE) % segments.length;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        final String newLine = System.getProperty("line.separator");
+        for (int i = 0; i < segments.length; i++) {
+            Segment<K, V> segment = segments[i];
+            segment.lock.lock();
+            try {
+                sb.append("Segment ").append(i).append(": ").append(segment.cache.toString()).append(newLine);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package io.qbeat.lru;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class ConcurrentLRUCacheWithPriorities<K, V> {
+
+    // The list of the elements that have one priority, together with the lock that guards it
+    static class PriorityBucket<K, V> {
+        final ReentrantLock lock = new ReentrantLock();
+        final DoubleLinkedList<ElementWithPriority<K, V>> cache = new DoubleLinkedList<>();
+        // Set, while holding the lock, when the empty bucket is removed from the priorities map
+        boolean retired = false;
+    }
+
+    private final int capacity;
+
+    /**
+     * A thread-safe Last Recently Used (LRU) Cache with priorities, with the same contract as {@link LRUCacheWithPriorities}.
+     * Each priority has its own list and its own lock, and the priorities are indexed by a concurrent skip list,
+     * so a get only locks the list of the priority of the element, and an eviction only locks the list of the
+     * lowest priority. Changing the priority of an element locks both lists, always in ascending order of priority.
+     * Get has timeComplexity O(1)
+     * Set has timeComplexity O(logn)
+     * Does not support expiry date.
+     *
+     * @param capacity The capacity the Cache should have
+     */
+    public ConcurrentLRUCacheWithPriorities(int capacity) {
+        this.capacity = capacity;
+    }
+
+    // We need this, in order to be able to find an element in our cache in constant O(1) time
+    // A node is replaced whenever its element moves to another priority, so (key -> node) also tells if a node is current
+    private final ConcurrentHashMap<K, DoubleLinkedListNode<ElementWithPriority<K, V>>> hashmapWithNodes = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListMap<Integer, PriorityBucket<K, V>> prioritiesMap = new ConcurrentSkipListMap<>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+
+    // Time complexity: O(1)
+    public V get(K key) {
+        while (true) {
+            DoubleLinkedListNode<ElementWithPriority<K, V>> node = hashmapWithNodes.get(key);
+            if (node == null) {
+                return null;
+            }
+
+            // The priority is read without the lock, and checked again once we hold it
+            int priority = node.getElement().getPriority();
+            PriorityBucket<K, V> bucket = prioritiesMap.get(priority);
+            if (bucket == null) {
+                // The element has moved to another priority in the meantime
+                continue;
+            }
+            bucket.lock.lock();
+            try {
+                if (isCurrent(key, node, priority)) {
+                    bucket.cache.moveToTheTop(node);
+                    return node.getElement().getValue();
+                }
+            } finally {
+                bucket.lock.unlock();
+            }
+        }
+    }
+
+    // Time complexity: O(logn)
+    public void set(K key, V value, int priority) {
+        while (true) {
+            DoubleLinkedListNode<ElementWithPriority<K, V>> node = hashmapWithNodes.get(key);
+            boolean done = node != null ? update(key, node, value, priority) : insert(key, value, priority);
+            if (done) {
+                return;
+            }
+            // Another thread has inserted, moved or removed the element in the meantime. Try again.
+        }
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it with the given priority.
+     * When several threads miss on the same key at the same time, only one of them calls the loader, and the others
+     * wait for its result. A null value is returned, but not cached. If the loader throws, nothing is cached, and the
+     * exception is thrown to all the threads waiting for that load.
+     * Time complexity: O(1) on a hit, O(logn) plus the load on a miss
+     */
+    public V get(K key, int priority, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        return loads.load(key, k -> {
+            // Another thread might have loaded it, just before this load started
+            V loadedValue = get(k);
+            if (loadedValue == null) {
+                loadedValue = loader.apply(k);
+                if (loadedValue != null) {
+                    set(k, loadedValue, priority);
+                }
+            }
+            return loadedValue;
+        });
+    }
+
+    /**
+     * Gets the elements of the given keys that are in the cache, as if get was called for each key in order.
+     * The elements are spread over the lists of their priorities, so each one is still locked per element.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>();
+        for (K key : keys) {
+            V value = get(key);
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Sets all the given elements with the same priority, as if set was called for each one in order.
+     * The batch is not atomic: other threads may see some of the elements set before the others.
+     * Time complexity: O(k logn), for k elements
+     */
+    public void setAll(Map<? extends K, ? extends V> values, int priority) {
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            set(entry.getKey(), entry.getValue(), priority);
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    private boolean isCurrent(K key, DoubleLinkedListNode<ElementWithPriority<K, V>> node, int priority) {
+        return hashmapWithNodes.get(key) == node && node.getElement().getPriority() == priority;
+    }
+
+    private boolean update(K key, DoubleLinkedListNode<ElementWithPriority<K, V>> node, V value, int updatedPriority) {
+        int existingPriority = node.getElement().getPriority();
+        if (existingPriority == updatedPriority) {
+            PriorityBucket<K, V> bucket = prioritiesMap.get(existingPriority);
+            if (bucket == null) {
+                return false;
+            }
+            bucket.lock.lock();
+            try {
+                if (!isCurrent(key, node, existingPriority)) {
+                    return false;
+                }
+                node.getElement().update(value, updatedPriority);
+                bucket.cache.moveToTheTop(node);
+                return true;
+            } finally {
+                bucket.lock.unlock();
+            }
+        }
+
+        PriorityBucket<K, V> existingBucket = prioritiesMap.get(existingPriority);
+        if (existingBucket == null) {
+            return false;
+        }
+        PriorityBucket<K, V> updatedBucket = bucketFor(updatedPriority);
+        // Always lock the lower priority first, so that two threads moving elements in opposite directions cannot deadlock
+        PriorityBucket<K, V> first = existingPriority < updatedPriority ? existingBucket : updatedBucket;
+        PriorityBucket<K, V> second = first == existingBucket ? updatedBucket : existingBucket;
+        first.lock.lock();
+        second.lock.lock();
+        try {
+            if (updatedBucket.retired || !isCurrent(key, node, existingPriority)) {
+                return false;
+            }
+            existingBucket.cache.remove(node);
+            node.getElement().update(value, updatedPriority);
+            DoubleLinkedListNode<ElementWithPriority<K, V>> updatedNode = updatedBucket.cache.putFirst(node.getElement());
+            hashmapWithNodes.put(key, updatedNode);
+            retireIfEmpty(existingPriority, existingBucket);
+            return true;
+        } finally {
+            second.lock.unlock();
+            first.lock.unlock();
+        }
+    }
+
+    private boolean insert(K key, V value, int priority) {
+        if (size.incrementAndGet() > capacity) {
+            // Drop element to make capacity. If another thread inserts the same key before us, the room made here
+            // is simply left unused. If there is nothing to drop yet, since the elements counted are all still being
+            // inserted by other threads, the room is made once ours is inserted.
+            removeLast();
+        }
+
+        PriorityBucket<K, V> bucket = bucketFor(priority);
+        boolean inserted = false;
+        bucket.lock.lock();
+        try {
+            if (!bucket.retired) {
+                DoubleLinkedListNode<ElementWithPriority<K, V>> node = bucket.cache.putFirst(new ElementWithPriority<>(key, value, priority));
+                inserted = hashmapWithNodes.putIfAbsent(key, node) == null;
+                if (!inserted) {
+                    bucket.cache.remove(node);
+                    retireIfEmpty(priority, bucket);
+                }
+            }
+        } finally {
+            bucket.lock.unlock();
+        }
+        if (!inserted) {
+            size.decrementAndGet();
+            return false;
+        }
+        // Our element is in the cache by now, so there is always something to drop, if the room is still missing
+        while (size.get() > capacity) {
+            if (!removeLast()) {
+                break;
+            }
+        }
+        return true;
+    }
+
+    // Returns false if there was nothing to drop: every element counted is still being inserted, or has just been removed
+    private boolean removeLast() {
+        // Normally only the first (lowest) priority is locked. Later ones are only looked at, if the first one has been
+        // emptied by another thread, or has just been created and its first element is not inserted yet.
+        for (Map.Entry<Integer, PriorityBucket<K, V>> entry : prioritiesMap.entrySet()) {
+            PriorityBucket<K, V> bucket = entry.getValue();
+            bucket.lock.lock();
+            try {
+                if (bucket.retired || bucket.cache.isEmpty()) {
+                    continue;
+                }
+                ElementWithPriority<K, V> elementWithPriority = bucket.cache.removeLast();
+                hashmapWithNodes.remove(elementWithPriority.getKey());
+                retireIfEmpty(entry.getKey(), bucket);
+                size.decrementAndGet();
+                return true;
+            } finally {
+                bucket.lock.unlock();
+            }
+        }
+        return false;
+    }
+
+    private PriorityBucket<K, V> bucketFor(int priority) {
+        return prioritiesMap.computeIfAbsent(priority, p -> new PriorityBucket<>());
+    }
+
+    // Must be called while holding the lock of the bucket, and only once hashmapWithNodes no longer points to any of its
+    // former nodes. Otherwise, another thread could find a node that is still current, but whose bucket has been replaced.
+    private void retireIfEmpty(int priority, PriorityBucket<K, V> bucket) {
+        if (bucket.cache.isEmpty()) {
+            bucket.retired = true;
+            prioritiesMap.remove(priority, bucket);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (prioritiesMap.isEmpty()) {
+            return "Cache is empty";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer, PriorityBucket<K, V>> entry : prioritiesMap.entrySet()) {
+            PriorityBucket<K, V> bucket = entry.getValue();
+            bucket.lock.lock();
+            try {
+                sb.append("Priority ").append(entry.getKey()).append(": ");
+                sb.append(bucket.cache.toString());
+                sb.append(System.getProperty("line.separator"));
+            } finally {
+                bucket.lock.unlock();
+            }
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,29 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The executor that the caches load values on, unless they are given one: virtual threads, when the runtime has them
+ * (Java 21 or later), and a shared pool of daemon threads otherwise. It is created on first use.
+ * Virtual threads are looked up by reflection, so that the caches still run on Java 17.
+ */
+final class DefaultLoaderExecutor {
+    static final Executor INSTANCE = create();
+
+    private DefaultLoaderExecutor() {
+    }
+
+    private static Executor create() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, "lru-loader");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package io.qbeat.lru;
+
+final class DisabledMutationJournal implements MutationJournal<Object, Object> {
+    static final DisabledMutationJournal INSTANCE = new DisabledMutationJournal();
+
+    private DisabledMutationJournal() {
+    }
+
+    @Override
+    public void recordSet(Object key, Object value, int priority, long expiryTimestamp) {
+    }
+
+    @Override
+    public void recordRemoval(Object key) {
+    }
+}
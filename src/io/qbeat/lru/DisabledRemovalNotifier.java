@@ -0,0 +1,12 @@
+package io.qbeat.lru;
+
+final class DisabledRemovalNotifier implements RemovalNotifier<Object, Object> {
+    static final DisabledRemovalNotifier INSTANCE = new DisabledRemovalNotifier();
+
+    private DisabledRemovalNotifier() {
+    }
+
+    @Override
+    public void enqueue(Object key, Object value, RemovalCause cause) {
+    }
+}
@@ -0,0 +1,48 @@
+package io.qbeat.lru;
+
+final class DisabledStatsCounter implements StatsCounter {
+    static final DisabledStatsCounter INSTANCE = new DisabledStatsCounter();
+
+    private static final CacheStats EMPTY = new StripedStatsCounter().snapshot();
+
+    private DisabledStatsCounter() {
+    }
+
+    @Override
+    public void recordHits(int count) {
+    }
+
+    @Override
+    public void recordMisses(int count) {
+    }
+
+    @Override
+    public void recordEviction(RemovalCause cause) {
+    }
+
+    @Override
+    public void recordInsertion(int priority) {
+    }
+
+    @Override
+    public void recordRemoval(int priority) {
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTimeNanos) {
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTimeNanos) {
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        return EMPTY;
+    }
+
+    @Override
+    public String toString() {
+        return "Stats are disabled";
+    }
+}
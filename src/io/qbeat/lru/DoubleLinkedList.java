@@ -1,12 +1,20 @@
 package io.qbeat.lru;
 
+import java.util.function.Consumer;
+
 public class DoubleLinkedList<T> {
     private int size = 0;
     private DoubleLinkedListNode<T> head = null;
     private DoubleLinkedListNode<T> tail = null;
 
     DoubleLinkedListNode<T> putFirst(T value) {
-        DoubleLinkedListNode<T> node = new DoubleLinkedListNode<>(value);
+        return putNodeFirst(new DoubleLinkedListNode<>(value));
+    }
+
+    // Puts a node that is not in any list on the top, so that nodes can be moved between lists without allocating
+    DoubleLinkedListNode<T> putNodeFirst(DoubleLinkedListNode<T> node) {
+        node.setPrevious(null);
+        node.setNext(null);
         if (head == null) {
             head = node;
             tail = node;
@@ -46,6 +54,10 @@ public class DoubleLinkedList<T> {
         return size == 0;
     }
 
+    int size() {
+        return size;
+    }
+
     public T remove(DoubleLinkedListNode<T> node) {
         if (size == 1) {
             head = null;
@@ -79,6 +91,23 @@ public class DoubleLinkedList<T> {
         return remove(tail);
     }
 
+    // The list must not be empty
+    T peekLast() {
+        return tail.getElement();
+    }
+
+    // Null if the list is empty
+    DoubleLinkedListNode<T> lastNode() {
+        return tail;
+    }
+
+    // From the Least Recently Used element to the most recently used one
+    void forEachFromLast(Consumer<? super T> action) {
+        for (DoubleLinkedListNode<T> node = tail; node != null; node = node.getPrevious()) {
+            action.accept(node.getElement());
+        }
+    }
+
     @Override
     public String toString() {
         if (head == null) {
@@ -11,6 +11,11 @@ public class DoubleLinkedListNode<T> {
         this.element = element;
     }
 
+    // For elements that are their own node. They have to override getElement() to return themselves.
+    DoubleLinkedListNode() {
+        this.element = null;
+    }
+
     public T getElement() {
         return element;
     }
@@ -1,26 +1,36 @@
 package io.qbeat.lru;
 
-public class Element {
-    private final String key;
-    private int value;
+public class Element<K, V> {
+    private final K key;
+    private V value;
+    // Taken by the weigher of the cache when the element is set
+    private int weight = 1;
 
-    Element(String key, int value) {
+    Element(K key, V value) {
         this.key = key;
         this.value = value;
     }
 
-    public String getKey() {
+    public K getKey() {
         return key;
     }
 
-    public int getValue() {
+    public V getValue() {
         return value;
     }
 
-    public void updateValue(int value) {
+    public void updateValue(V value) {
         this.value = value;
     }
 
+    int getWeight() {
+        return weight;
+    }
+
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     @Override
     public String toString() {
         return "{" + key + "," + value + "}";
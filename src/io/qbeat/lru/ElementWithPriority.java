@@ -1,26 +1,28 @@
 package io.qbeat.lru;
 
-public class ElementWithPriority {
-    private final String key;
-    private int value;
+public class ElementWithPriority<K, V> {
+    private final K key;
+    private V value;
 
     private int priority;
+    // Taken by the weigher of the cache when the element is set
+    private int weight = 1;
 
-    ElementWithPriority(String key, int value, int priority) {
+    ElementWithPriority(K key, V value, int priority) {
         this.key = key;
         this.value = value;
         this.priority = priority;
     }
 
-    public String getKey() {
+    public K getKey() {
         return key;
     }
 
-    public int getValue() {
+    public V getValue() {
         return value;
     }
 
-    public void update(int value, int priority) {
+    public void update(V value, int priority) {
         this.value = value;
         this.priority = priority;
     }
@@ -29,6 +31,14 @@ public class ElementWithPriority {
         return priority;
     }
 
+    int getWeight() {
+        return weight;
+    }
+
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     @Override
     public String toString() {
         return "{" + key + ", " + value + ", " + priority + '}';
@@ -1,28 +1,40 @@
 package io.qbeat.lru;
 
-public class ElementWithPriorityAndExpiryTimestamp {
-    private final String key;
-    private int value;
+// The element is its own node in the list of its priority, and carries its own links in the timing wheel as well
+public class ElementWithPriorityAndExpiryTimestamp<K, V> extends DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp<K, V>>
+        implements TimingWheel.Node {
+    private final K key;
+    private V value;
     private int priority;
     private long expiryTimestamp; // Time since Unix epoch till this expires
+    // Taken by the weigher of the cache when the element is set
+    private int weight = 1;
+    // The links of the bucket of the timing wheel this element is scheduled in
+    private TimingWheel.Node previousInWheel;
+    private TimingWheel.Node nextInWheel;
 
-    ElementWithPriorityAndExpiryTimestamp(String key, int value, int priority, long timestamp) {
+    ElementWithPriorityAndExpiryTimestamp(K key, V value, int priority, long timestamp) {
         this.key = key;
         this.value = value;
         this.priority = priority;
         this.expiryTimestamp = timestamp;
     }
 
-    public void update(int value, int priority, long timestamp){
+    public void update(V value, int priority, long timestamp){
         this.value = value;
         this.priority = priority;
         this.expiryTimestamp = timestamp;
     }
-    public String getKey() {
+    @Override
+    public ElementWithPriorityAndExpiryTimestamp<K, V> getElement() {
+        return this;
+    }
+
+    public K getKey() {
         return key;
     }
 
-    public int getValue() {
+    public V getValue() {
         return value;
     }
 
@@ -30,10 +42,39 @@ public class ElementWithPriorityAndExpiryTimestamp {
         return priority;
     }
 
+    @Override
     public long getExpiryTimestamp() {
         return expiryTimestamp;
     }
 
+    @Override
+    public TimingWheel.Node getPreviousInWheel() {
+        return previousInWheel;
+    }
+
+    @Override
+    public void setPreviousInWheel(TimingWheel.Node node) {
+        this.previousInWheel = node;
+    }
+
+    @Override
+    public TimingWheel.Node getNextInWheel() {
+        return nextInWheel;
+    }
+
+    @Override
+    public void setNextInWheel(TimingWheel.Node node) {
+        this.nextInWheel = node;
+    }
+
+    int getWeight() {
+        return weight;
+    }
+
+    void setWeight(int weight) {
+        this.weight = weight;
+    }
+
     @Override
     public String toString() {
         return "{" + key + ", " + value + ", " + priority + "," + expiryTimestamp + '}';
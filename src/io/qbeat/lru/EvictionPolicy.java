@@ -0,0 +1,34 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * Decides which element an {@link LRUCache} drops when it is full. The policy keeps the elements of the cache in its
+ * own lists, and the cache keeps the node of each element, so that every call takes constant time O(1).
+ * A policy is created with the capacity of the cache, and used by a single cache.
+ * See {@link LruPolicy} (the default), {@link SegmentedLruPolicy}, {@link TwoQueuePolicy} and {@link ArcPolicy}.
+ */
+public interface EvictionPolicy<K, V> {
+
+    // Adds an element that is not in the cache, once there is room for it, and returns its node. afterEviction tells
+    // if evict was called for it first, so that the policy does not adapt to the same element twice.
+    DoubleLinkedListNode<Element<K, V>> insert(Element<K, V> element, boolean afterEviction);
+
+    // Called when the element of the node is read, or its value is updated
+    void recordAccess(DoubleLinkedListNode<Element<K, V>> node);
+
+    // Removes the element of the node, without remembering it as dropped
+    void remove(DoubleLinkedListNode<Element<K, V>> node);
+
+    // The element evict would drop for the candidate, left in place. The cache must be full.
+    Element<K, V> victim(K candidate);
+
+    // Called when the cache is full, before the candidate is inserted: removes the element to drop, and returns it.
+    // A heavy candidate can take several evictions, and firstEviction tells the first one apart. The candidate is
+    // null when the cache shrinks, e.g. to a lower maximum weight, without inserting anything.
+    Element<K, V> evict(K candidate, boolean firstEviction);
+
+    // The elements, roughly in the order they would be dropped in, so that inserting them in that order into a new
+    // policy keeps the elements used most recently for last
+    void forEachFromLast(Consumer<? super Element<K, V>> action);
+}
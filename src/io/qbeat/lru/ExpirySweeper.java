@@ -0,0 +1,89 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Periodically removes the expired elements of a {@link LRUCacheWithPrioritiesAndExpiryTimestamps}, so that they
+ * do not stay in memory until the capacity is reached.
+ * The cache does not support concurrency, so the callers have to guard it with a lock, and give the same lock to the
+ * sweeper. The sweeper never waits for that lock: if the cache is in use, it tries again on the next run.
+ * It removes the elements in slices of a bounded size, and releases the lock between the slices, so that callers
+ * never wait for a whole burst of expirations to be cleaned up.
+ */
+public class ExpirySweeper implements AutoCloseable {
+    public static final int DEFAULT_SLICE_SIZE = 64;
+
+    private final LRUCacheWithPrioritiesAndExpiryTimestamps<?, ?> cache;
+    private final Lock lock;
+    private final int sliceSize;
+    private final ScheduledExecutorService executor;
+    private final boolean ownsExecutor;
+    private final ScheduledFuture<?> task;
+
+    /**
+     * @param cache     The cache to sweep
+     * @param lock      The lock every caller holds while using the cache
+     * @param executor  The executor to run the sweeps on. It can be shared with other sweepers, and is not shut down on close.
+     * @param period    The time between two sweeps
+     * @param unit      The unit of the period
+     * @param sliceSize The number of elements removed each time the lock is held
+     */
+    public ExpirySweeper(LRUCacheWithPrioritiesAndExpiryTimestamps<?, ?> cache, Lock lock, ScheduledExecutorService executor,
+                         long period, TimeUnit unit, int sliceSize) {
+        this(cache, lock, executor, false, period, unit, sliceSize);
+    }
+
+    /**
+     * Sweeps the cache on a daemon thread of its own, that is stopped on close.
+     */
+    public ExpirySweeper(LRUCacheWithPrioritiesAndExpiryTimestamps<?, ?> cache, Lock lock, long period, TimeUnit unit) {
+        this(cache, lock, Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lru-expiry-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        }), true, period, unit, DEFAULT_SLICE_SIZE);
+    }
+
+    private ExpirySweeper(LRUCacheWithPrioritiesAndExpiryTimestamps<?, ?> cache, Lock lock, ScheduledExecutorService executor,
+                          boolean ownsExecutor, long period, TimeUnit unit, int sliceSize) {
+        if (sliceSize < 1) {
+            throw new IllegalArgumentException("The slice size should be at least 1, but got " + sliceSize);
+        }
+        this.cache = cache;
+        this.lock = lock;
+        this.sliceSize = sliceSize;
+        this.executor = executor;
+        this.ownsExecutor = ownsExecutor;
+        this.task = executor.scheduleWithFixedDelay(this::sweep, period, period, unit);
+    }
+
+    // Returns the number of elements removed
+    int sweep() {
+        int removed = 0;
+        while (lock.tryLock()) {
+            int removedInSlice;
+            try {
+                removedInSlice = cache.cleanUp(sliceSize);
+            } finally {
+                lock.unlock();
+            }
+            removed += removedInSlice;
+            if (removedInSlice < sliceSize) {
+                break;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public void close() {
+        task.cancel(false);
+        if (ownsExecutor) {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,561 @@
+package io.qbeat.lru;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * A {@link MutationJournal} that appends its records to a log in a directory, so that a cache can be recovered after
+ * a crash with {@link #recover()}: the latest snapshot written with {@link #checkpoint}, if any, and every change
+ * recorded after it, replayed in order.
+ * The log is split in segment files of about segmentBytes each. Every start of the journal begins a new segment, and
+ * a segment is read up to its first incomplete or corrupt record, which is where a crash stopped it.
+ * The records are gathered in memory and written in batches; when they are forced to the disk depends on the
+ * {@link FsyncPolicy}. Once enough segments have been filled since the latest snapshot, they are compacted in the
+ * background into one, with the latest record of each key only, in the order those were recorded.
+ * A failure to write or sync the log is final: every record after it throws an {@link UncheckedIOException}, so that
+ * the cache is not changed without its record.
+ */
+public class FileMutationJournal<K, V> implements MutationJournal<K, V>, Closeable {
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+    public static final long DEFAULT_BATCH_INTERVAL_MILLIS = 100;
+    public static final int DEFAULT_SEGMENTS_BEFORE_COMPACTION = 4;
+
+    private static final byte SET = 1;
+    private static final byte REMOVAL = 2;
+    // The length and the CRC32 of the payload of each record
+    private static final int RECORD_HEADER_BYTES = Integer.BYTES + Integer.BYTES;
+    // The length of a null value
+    private static final int NULL_LENGTH = -1;
+    // The records gathered in memory are written once they take this many bytes, if they are not synced before
+    private static final int WRITE_THRESHOLD_BYTES = 64 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".snapshot";
+
+    private final Path directory;
+    private final Codec<K> keyCodec;
+    private final Codec<V> valueCodec;
+    private final FsyncPolicy fsyncPolicy;
+    private final long segmentBytes;
+    private final int segmentsBeforeCompaction;
+    // Syncs the batches, and compacts the segments
+    private final ScheduledExecutorService background;
+
+    // Guards the records gathered in memory. Only held to add or take them, never while writing.
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private ByteArrayOutputStream pendingRecords = new ByteArrayOutputStream();
+    private long appendedRecords = 0;
+
+    // Guards the active segment, so that the batches are written in the order they were taken in
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private FileChannel activeSegment;
+    private volatile long activeSegmentId;
+    private long activeSegmentBytes = 0;
+    private volatile long syncedRecords = 0;
+
+    // Guards the files other than the active segment, so that compacting, checkpointing and recovering do not overlap
+    private final ReentrantLock filesLock = new ReentrantLock();
+
+    private volatile IOException failure;
+    private volatile boolean closed = false;
+
+    /**
+     * A journal with segments of {@link #DEFAULT_SEGMENT_BYTES}, synced every {@link #DEFAULT_BATCH_INTERVAL_MILLIS}
+     * with {@link FsyncPolicy#BATCHED}, and compacted every {@link #DEFAULT_SEGMENTS_BEFORE_COMPACTION} segments.
+     */
+    public FileMutationJournal(Path directory, Codec<K> keyCodec, Codec<V> valueCodec, FsyncPolicy fsyncPolicy) throws IOException {
+        this(directory, keyCodec, valueCodec, fsyncPolicy, DEFAULT_SEGMENT_BYTES, DEFAULT_BATCH_INTERVAL_MILLIS,
+                DEFAULT_SEGMENTS_BEFORE_COMPACTION);
+    }
+
+    /**
+     * @param directory                 The directory of the log and the snapshots, created if it does not exist.
+     *                                  It is used by a single journal at a time.
+     * @param keyCodec                  Encodes the keys of the records, and of the snapshots
+     * @param valueCodec                Encodes the values of the records, and of the snapshots
+     * @param segmentBytes              The size a segment is closed at, and the next one started
+     * @param batchIntervalMillis       How often the records are synced with {@link FsyncPolicy#BATCHED}
+     * @param segmentsBeforeCompaction  The number of closed segments since the latest snapshot that are compacted
+     *                                  into one, at least 2
+     */
+    public FileMutationJournal(Path directory, Codec<K> keyCodec, Codec<V> valueCodec, FsyncPolicy fsyncPolicy,
+                               long segmentBytes, long batchIntervalMillis, int segmentsBeforeCompaction) throws IOException {
+        if (segmentBytes <= 0 || batchIntervalMillis <= 0) {
+            throw new IllegalArgumentException("The segment size and the batch interval should be positive, but got "
+                    + segmentBytes + " and " + batchIntervalMillis);
+        }
+        if (segmentsBeforeCompaction < 2) {
+            throw new IllegalArgumentException("The segments before compaction should be at least 2, but got " + segmentsBeforeCompaction);
+        }
+        this.directory = directory;
+        this.keyCodec = keyCodec;
+        this.valueCodec = valueCodec;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentBytes = segmentBytes;
+        this.segmentsBeforeCompaction = segmentsBeforeCompaction;
+
+        Files.createDirectories(directory);
+        long lastId = -1;
+        for (long id : fileIds(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            lastId = Math.max(lastId, id);
+        }
+        for (long id : fileIds(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            lastId = Math.max(lastId, id);
+        }
+        openSegment(lastId + 1);
+
+        this.background = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "lru-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (fsyncPolicy == FsyncPolicy.BATCHED) {
+            background.scheduleWithFixedDelay(this::syncInBackground, batchIntervalMillis, batchIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public void recordSet(K key, V value, int priority, long expiryTimestamp) {
+        final byte[] encodedKey = keyCodec.encode(key);
+        final byte[] encodedValue = value == null ? null : valueCodec.encode(value);
+        final int valueLength = encodedValue == null ? 0 : encodedValue.length;
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + 1 + Integer.BYTES + Long.BYTES
+                + Integer.BYTES + encodedKey.length + Integer.BYTES + valueLength);
+        record.position(RECORD_HEADER_BYTES);
+        record.put(SET).putInt(priority).putLong(expiryTimestamp);
+        record.putInt(encodedKey.length).put(encodedKey);
+        record.putInt(encodedValue == null ? NULL_LENGTH : valueLength);
+        if (encodedValue != null) {
+            record.put(encodedValue);
+        }
+        append(record);
+    }
+
+    @Override
+    public void recordRemoval(K key) {
+        final byte[] encodedKey = keyCodec.encode(key);
+        final ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_BYTES + 1 + Integer.BYTES + encodedKey.length);
+        record.position(RECORD_HEADER_BYTES);
+        record.put(REMOVAL).putInt(encodedKey.length).put(encodedKey);
+        append(record);
+    }
+
+    /**
+     * Writes the records gathered so far, and forces them to the disk, whatever the fsync policy.
+     */
+    public void sync() throws IOException {
+        checkUsable();
+        write(true);
+    }
+
+    /**
+     * Writes the snapshot, and deletes the segments and the snapshot it replaces. The snapshot has to be taken from
+     * the cache right before, by the thread that changes it, so that no change is recorded in between.
+     */
+    public void checkpoint(CacheSnapshot<? extends K, ? extends V> snapshot) throws IOException {
+        checkUsable();
+        final long snapshotId;
+        writeLock.lock();
+        try {
+            // The records before the snapshot go to the segments it replaces, and the ones after it to the next one
+            write(false);
+            roll();
+            snapshotId = activeSegmentId;
+        } finally {
+            writeLock.unlock();
+        }
+
+        filesLock.lock();
+        try {
+            snapshot.writeTo(snapshotPath(snapshotId), keyCodec, valueCodec);
+            for (long id : fileIds(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+                if (id < snapshotId) {
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+            for (long id : fileIds(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+                if (id < snapshotId) {
+                    Files.deleteIfExists(snapshotPath(id));
+                }
+            }
+        } finally {
+            filesLock.unlock();
+        }
+    }
+
+    /**
+     * Reads the latest snapshot, if any, and replays the segments written after it, up to the start of this journal.
+     * It is meant to be called once, before the journal records anything, and its result set into an empty cache
+     * with its restore method, which skips the elements that have expired in the meantime.
+     * The elements come back in the order they were last set in, since the reads are not recorded.
+     * The snapshot has priorities and expiry timestamps: those of the caches without them are
+     * {@link #NO_PRIORITY} and {@link #NO_EXPIRY_TIMESTAMP}.
+     */
+    public CacheSnapshot<K, V> recover() throws IOException {
+        filesLock.lock();
+        try {
+            final Map<K, RecoveredElement<V>> elements = new LinkedHashMap<>();
+            final long snapshotId = latestSnapshotId();
+            if (snapshotId >= 0) {
+                final CacheSnapshot<K, V> snapshot = CacheSnapshot.readFrom(snapshotPath(snapshotId), keyCodec, valueCodec);
+                for (int i = 0; i < snapshot.size(); i++) {
+                    elements.put(snapshot.keyAt(i), new RecoveredElement<>(snapshot.valueAt(i),
+                            snapshot.hasPriorities() ? snapshot.priorityAt(i) : NO_PRIORITY,
+                            snapshot.hasExpiryTimestamps() ? snapshot.expiryTimestampAt(i) : NO_EXPIRY_TIMESTAMP));
+                }
+            }
+            for (long id : closedSegmentIdsFrom(snapshotId)) {
+                readSegment(segmentPath(id), record -> {
+                    final K key = keyCodec.decode(record.key);
+                    // Removed first, so that an element set again goes to the end, as the most recently set
+                    elements.remove(key);
+                    if (record.type == SET) {
+                        elements.put(key, new RecoveredElement<>(record.value == null ? null : valueCodec.decode(record.value),
+                                record.priority, record.expiryTimestamp));
+                    }
+                });
+            }
+
+            final CacheSnapshot<K, V> recovered = new CacheSnapshot<>(elements.size(), true, true);
+            for (Map.Entry<K, RecoveredElement<V>> entry : elements.entrySet()) {
+                final RecoveredElement<V> element = entry.getValue();
+                recovered.add(entry.getKey(), element.value, element.priority, element.expiryTimestamp);
+            }
+            return recovered;
+        } finally {
+            filesLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the records gathered so far, forces them to the disk unless the fsync policy is
+     * {@link FsyncPolicy#NONE}, and waits for a compaction in progress, if any.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            if (failure == null) {
+                write(fsyncPolicy != FsyncPolicy.NONE);
+            }
+        } finally {
+            closed = true;
+            background.shutdown();
+            try {
+                background.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            writeLock.lock();
+            try {
+                activeSegment.close();
+            } finally {
+                writeLock.unlock();
+            }
+        }
+    }
+
+    // Compacts the closed segments since the latest snapshot into one, if there are at least two
+    void compact() throws IOException {
+        filesLock.lock();
+        try {
+            final long snapshotId = latestSnapshotId();
+            final List<Long> ids = closedSegmentIdsFrom(snapshotId);
+            if (ids.size() < 2) {
+                return;
+            }
+            final Map<ByteBuffer, SegmentRecord> latestRecords = new LinkedHashMap<>();
+            for (long id : ids) {
+                readSegment(segmentPath(id), record -> {
+                    final ByteBuffer key = ByteBuffer.wrap(record.key);
+                    latestRecords.remove(key);
+                    latestRecords.put(key, record);
+                });
+            }
+
+            // Takes the id of the last segment, so that it is still read after any segment left by a crash below
+            final long compactedId = ids.get(ids.size() - 1);
+            final Path temporaryPath = directory.resolve(segmentPath(compactedId).getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                // The removals are kept, since the segments it replaces are only deleted after the move: if a crash
+                // leaves them behind, the removals still override their sets
+                for (SegmentRecord record : latestRecords.values()) {
+                    final ByteBuffer buffer = ByteBuffer.wrap(record.bytes);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+                channel.force(false);
+            }
+            Files.move(temporaryPath, segmentPath(compactedId), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            for (long id : ids) {
+                if (id != compactedId) {
+                    Files.deleteIfExists(segmentPath(id));
+                }
+            }
+        } finally {
+            filesLock.unlock();
+        }
+    }
+
+    private void append(ByteBuffer record) {
+        checkUsable();
+        final byte[] bytes = record.array();
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, RECORD_HEADER_BYTES, bytes.length - RECORD_HEADER_BYTES);
+        record.putInt(0, bytes.length - RECORD_HEADER_BYTES);
+        record.putInt(Integer.BYTES, (int) crc.getValue());
+
+        final long recordNumber;
+        final boolean writeNow;
+        appendLock.lock();
+        try {
+            pendingRecords.write(bytes, 0, bytes.length);
+            recordNumber = ++appendedRecords;
+            writeNow = pendingRecords.size() >= WRITE_THRESHOLD_BYTES;
+        } finally {
+            appendLock.unlock();
+        }
+
+        try {
+            if (fsyncPolicy == FsyncPolicy.EVERY_WRITE) {
+                syncUpTo(recordNumber);
+            } else if (writeNow) {
+                write(false);
+            }
+        } catch (IOException e) {
+            failure = e;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void syncUpTo(long recordNumber) throws IOException {
+        if (syncedRecords >= recordNumber) {
+            return;
+        }
+        writeLock.lock();
+        try {
+            // The threads that waited for the lock find their records synced by the one that held it
+            if (syncedRecords < recordNumber) {
+                write(true);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // Writes the records gathered so far to the active segment, and starts the next one if it is full
+    private void write(boolean sync) throws IOException {
+        writeLock.lock();
+        try {
+            final byte[] records;
+            final long recordCount;
+            appendLock.lock();
+            try {
+                records = pendingRecords.toByteArray();
+                pendingRecords = new ByteArrayOutputStream();
+                recordCount = appendedRecords;
+            } finally {
+                appendLock.unlock();
+            }
+
+            final ByteBuffer buffer = ByteBuffer.wrap(records);
+            while (buffer.hasRemaining()) {
+                activeSegment.write(buffer);
+            }
+            activeSegmentBytes += records.length;
+            if (sync && syncedRecords < recordCount) {
+                activeSegment.force(false);
+                syncedRecords = recordCount;
+            }
+            if (activeSegmentBytes >= segmentBytes) {
+                roll();
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // The write lock must be held
+    private void roll() throws IOException {
+        activeSegment.force(false);
+        activeSegment.close();
+        openSegment(activeSegmentId + 1);
+        if (!closed && closedSegmentIdsFrom(latestSnapshotId()).size() >= segmentsBeforeCompaction) {
+            background.execute(this::compactInBackground);
+        }
+    }
+
+    private void openSegment(long id) throws IOException {
+        activeSegment = FileChannel.open(segmentPath(id), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        activeSegmentId = id;
+        activeSegmentBytes = 0;
+    }
+
+    private void syncInBackground() {
+        try {
+            if (failure == null && !closed) {
+                write(true);
+            }
+        } catch (IOException e) {
+            failure = e;
+        }
+    }
+
+    private void compactInBackground() {
+        try {
+            compact();
+        } catch (IOException e) {
+            // The segments are left as they were, and compacted again after the next one is closed
+        }
+    }
+
+    private void checkUsable() {
+        if (closed) {
+            throw new IllegalStateException("The journal is closed");
+        }
+        if (failure != null) {
+            throw new UncheckedIOException("The journal has failed to write its log", failure);
+        }
+    }
+
+    // Reads the records of the segment up to its first incomplete or corrupt one, if any
+    private static void readSegment(Path path, Consumer<SegmentRecord> action) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final MappedInput input = new MappedInput(channel, MappedOutput.DEFAULT_REGION_SIZE);
+            while (input.remaining() >= RECORD_HEADER_BYTES) {
+                final int length = input.getInt();
+                final int checksum = input.getInt();
+                if (length <= 0 || length > input.remaining()) {
+                    return;
+                }
+                final byte[] payload = input.get(length);
+                final CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    return;
+                }
+                action.accept(SegmentRecord.parse(length, checksum, payload));
+            }
+        }
+    }
+
+    // The closed segments with an id from the given one, in order
+    private List<Long> closedSegmentIdsFrom(long firstId) throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        for (long id : fileIds(SEGMENT_PREFIX, SEGMENT_SUFFIX)) {
+            if (id >= firstId && id < activeSegmentId) {
+                ids.add(id);
+            }
+        }
+        Collections.sort(ids);
+        return ids;
+    }
+
+    // -1 if there is no snapshot
+    private long latestSnapshotId() throws IOException {
+        long latest = -1;
+        for (long id : fileIds(SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX)) {
+            latest = Math.max(latest, id);
+        }
+        return latest;
+    }
+
+    private List<Long> fileIds(String prefix, String suffix) throws IOException {
+        final List<Long> ids = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, prefix + "*" + suffix)) {
+            for (Path file : files) {
+                final String name = file.getFileName().toString();
+                try {
+                    ids.add(Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // Not a file of the journal
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Path segmentPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    private Path snapshotPath(long id) {
+        return directory.resolve(String.format("%s%016d%s", SNAPSHOT_PREFIX, id, SNAPSHOT_SUFFIX));
+    }
+
+    private static final class SegmentRecord {
+        private final byte type;
+        private final int priority;
+        private final long expiryTimestamp;
+        private final byte[] key;
+        private final byte[] value;
+        // The whole record, header included, to copy it as it is when compacting
+        private final byte[] bytes;
+
+        private SegmentRecord(byte type, int priority, long expiryTimestamp, byte[] key, byte[] value, byte[] bytes) {
+            this.type = type;
+            this.priority = priority;
+            this.expiryTimestamp = expiryTimestamp;
+            this.key = key;
+            this.value = value;
+            this.bytes = bytes;
+        }
+
+        private static SegmentRecord parse(int length, int checksum, byte[] payload) {
+            final ByteBuffer buffer = ByteBuffer.wrap(payload);
+            final byte type = buffer.get();
+            final int priority = type == SET ? buffer.getInt() : NO_PRIORITY;
+            final long expiryTimestamp = type == SET ? buffer.getLong() : NO_EXPIRY_TIMESTAMP;
+            final byte[] key = new byte[buffer.getInt()];
+            buffer.get(key);
+            byte[] value = null;
+            if (type == SET) {
+                final int valueLength = buffer.getInt();
+                if (valueLength != NULL_LENGTH) {
+                    value = new byte[valueLength];
+                    buffer.get(value);
+                }
+            }
+            final byte[] bytes = ByteBuffer.allocate(RECORD_HEADER_BYTES + length)
+                    .putInt(length).putInt(checksum).put(payload).array();
+            return new SegmentRecord(type, priority, expiryTimestamp, key, value, bytes);
+        }
+    }
+
+    private static final class RecoveredElement<V> {
+        private final V value;
+        private final int priority;
+        private final long expiryTimestamp;
+
+        private RecoveredElement(V value, int priority, long expiryTimestamp) {
+            this.value = value;
+            this.priority = priority;
+            this.expiryTimestamp = expiryTimestamp;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package io.qbeat.lru;
+
+/**
+ * A count-min sketch that estimates how often each key has been seen recently, in a fixed amount of memory.
+ * Each key has 4 counters of 4 bits, in 4 different longs of the table, and its frequency is the lowest of them:
+ * collisions can only make a frequency higher than the real one, and are unlikely to hit all 4 counters.
+ * The counters stop at 15, since telling a hot key from a cold one does not need more. Once 10 times as many
+ * increments as the table has longs have been counted, every counter is halved, so that the keys that are no longer
+ * used are forgotten over time (aging).
+ * Increment and frequency take constant time O(1). Does not support concurrency.
+ */
+public class FrequencySketch {
+    private static final long[] SEEDS = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L, 0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+    // Keeps the 3 lowest bits of each counter, once shifted right by one
+    private static final long RESET_MASK = 0x7777777777777777L;
+    // The lowest bit of each counter
+    private static final long ONE_MASK = 0x1111111111111111L;
+    static final int MAX_FREQUENCY = 15;
+
+    private final long[] table;
+    private final int tableMask;
+    private final int sampleSize;
+    private int size = 0;
+
+    /**
+     * @param expectedKeys The number of keys to tell apart, e.g. the capacity of the cache. The table has one long
+     *                     (16 counters) per key, rounded up to a power of two.
+     */
+    public FrequencySketch(int expectedKeys) {
+        if (expectedKeys < 1) {
+            throw new IllegalArgumentException("The number of expected keys should be at least 1, but got " + expectedKeys);
+        }
+        int length = expectedKeys <= 8 ? 8 : Integer.highestOneBit(Math.min(expectedKeys, 1 << 30) - 1) << 1;
+        this.table = new long[length];
+        this.tableMask = length - 1;
+        this.sampleSize = 10 * length;
+    }
+
+    // Time complexity: O(1)
+    public int frequency(Object key) {
+        final int hash = spread(key.hashCode());
+        // Which of the 16 counters of each long the key uses
+        final int start = (hash & 3) << 2;
+        int frequency = MAX_FREQUENCY;
+        for (int i = 0; i < 4; i++) {
+            int offset = (start + i) << 2;
+            int count = (int) ((table[indexOf(hash, i)] >>> offset) & 0xfL);
+            frequency = Math.min(frequency, count);
+        }
+        return frequency;
+    }
+
+    // Time complexity: O(1), or O(table length) once every sample size increments, to age the counters
+    public void increment(Object key) {
+        final int hash = spread(key.hashCode());
+        final int start = (hash & 3) << 2;
+        boolean added = false;
+        for (int i = 0; i < 4; i++) {
+            added |= incrementAt(indexOf(hash, i), start + i);
+        }
+        if (added && ++size == sampleSize) {
+            reset();
+        }
+    }
+
+    private boolean incrementAt(int index, int counter) {
+        final int offset = counter << 2;
+        final long mask = 0xfL << offset;
+        if ((table[index] & mask) != mask) {
+            table[index] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    // Halves every counter, and the number of increments counted, less the halves lost to rounding
+    private void reset() {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        size = (size >>> 1) - (odd >>> 2);
+    }
+
+    private int indexOf(int hash, int i) {
+        long index = (hash + SEEDS[i]) * SEEDS[i];
+        index += index >>> 32;
+        return ((int) index) & tableMask;
+    }
+
+    // Mixes the bits of a hash code, since many hash codes, e.g. those of small Integers, differ in a few bits only
+    private static int spread(int hash) {
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        hash = ((hash >>> 16) ^ hash) * 0x45d9f3b;
+        return (hash >>> 16) ^ hash;
+    }
+}
@@ -0,0 +1,15 @@
+package io.qbeat.lru;
+
+/**
+ * When a {@link FileMutationJournal} forces its records to the disk, trading the latency of the changes of the cache
+ * for the records that a crash of the machine can lose.
+ */
+public enum FsyncPolicy {
+    // Each change returns once its record is on the disk. The changes made by several threads at once share a sync.
+    EVERY_WRITE,
+    // The records are written and synced in the background, every batch interval, so a crash loses up to one interval
+    BATCHED,
+    // The records are written in batches, and left to the operating system to sync. A crash of the process loses the
+    // records not written yet, and a crash of the machine the ones not synced by the operating system yet.
+    NONE
+}
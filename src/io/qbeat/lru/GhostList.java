@@ -0,0 +1,49 @@
+package io.qbeat.lru;
+
+import java.util.HashMap;
+
+/**
+ * The keys of elements that have been dropped, most recently dropped first, without their values, so that the
+ * eviction policies can tell when a key comes back soon after being dropped.
+ * Every operation takes constant time O(1).
+ */
+class GhostList<K> {
+    private final HashMap<K, DoubleLinkedListNode<K>> nodes = new HashMap<>();
+    private final DoubleLinkedList<K> keys = new DoubleLinkedList<>();
+
+    boolean contains(K key) {
+        return nodes.containsKey(key);
+    }
+
+    void addFirst(K key) {
+        nodes.put(key, keys.putFirst(key));
+    }
+
+    // Returns true if the key was in the list
+    boolean remove(K key) {
+        DoubleLinkedListNode<K> node = nodes.remove(key);
+        if (node == null) {
+            return false;
+        }
+        keys.remove(node);
+        return true;
+    }
+
+    // The list must not be empty
+    void removeLast() {
+        nodes.remove(keys.removeLast());
+    }
+
+    int size() {
+        return keys.size();
+    }
+
+    boolean isEmpty() {
+        return keys.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return keys.toString();
+    }
+}
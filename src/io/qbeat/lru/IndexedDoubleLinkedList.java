@@ -0,0 +1,108 @@
+package io.qbeat.lru;
+
+/**
+ * A double linked list over a fixed number of slots, where the links live in two int arrays instead of node objects.
+ * A slot is allocated from a free-list, linked into the list, and handed back to the free-list when it is dropped,
+ * so once the list has been filled up, moving or evicting elements never allocates.
+ * Whatever the slot refers to (keys, values) is kept by the caller, in arrays indexed by the same slot.
+ */
+public class IndexedDoubleLinkedList {
+    static final int NONE = -1;
+
+    private final int[] previous;
+    // For slots in the list, this is the next slot in the list. For free slots, this is the next free slot.
+    private final int[] next;
+    private int size = 0;
+    private int head = NONE;
+    private int tail = NONE;
+    private int firstFree;
+
+    IndexedDoubleLinkedList(int capacity) {
+        previous = new int[capacity];
+        next = new int[capacity];
+        for (int slot = 0; slot < capacity; slot++) {
+            next[slot] = slot + 1 < capacity ? slot + 1 : NONE;
+        }
+        firstFree = capacity > 0 ? 0 : NONE;
+    }
+
+    // Returns a free slot, or NONE if every slot is in use
+    int allocate() {
+        int slot = firstFree;
+        if (slot != NONE) {
+            firstFree = next[slot];
+        }
+        return slot;
+    }
+
+    void free(int slot) {
+        next[slot] = firstFree;
+        firstFree = slot;
+    }
+
+    void putFirst(int slot) {
+        previous[slot] = NONE;
+        next[slot] = head;
+        if (head == NONE) {
+            tail = slot;
+        } else {
+            previous[head] = slot;
+        }
+        head = slot;
+        size++;
+    }
+
+    void moveToTheTop(int slot) {
+        if (slot == head) {
+            return;
+        }
+        remove(slot);
+        putFirst(slot);
+    }
+
+    void remove(int slot) {
+        if (previous[slot] == NONE) {
+            head = next[slot];
+        } else {
+            next[previous[slot]] = next[slot];
+        }
+
+        if (next[slot] == NONE) {
+            tail = previous[slot];
+        } else {
+            previous[next[slot]] = previous[slot];
+        }
+        size--;
+    }
+
+    int removeLast() {
+        // O(1)
+        int slot = tail;
+        remove(slot);
+        return slot;
+    }
+
+    int getHead() {
+        return head;
+    }
+
+    int getTail() {
+        return tail;
+    }
+
+    int getNext(int slot) {
+        return next[slot];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public boolean isFull() {
+        return firstFree == NONE;
+    }
+}
@@ -0,0 +1,135 @@
+package io.qbeat.lru;
+
+import java.util.function.IntUnaryOperator;
+
+public class IntIntLRUCache {
+
+    public static final int DEFAULT_MISSING_VALUE = Integer.MIN_VALUE;
+
+    private final int missingValue;
+
+    /**
+     * An implementation of the Last Recently Used (LRU) Cache, specialised for int keys and int values.
+     * Both Set and Get methods require a constant time and never box a key or a value.
+     * Does not support concurrency, priorities or expiry date.
+     *
+     * @param capacity     The capacity the Cache should have
+     * @param missingValue The value that get returns, when the key is not in the cache
+     */
+    public IntIntLRUCache(int capacity, int missingValue) {
+        SlotHashIndex.checkCapacity(capacity);
+        this.missingValue = missingValue;
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.orderedCache = new IndexedDoubleLinkedList(capacity);
+        this.index = new SlotHashIndex(capacity) {
+            @Override
+            int hashOfSlot(int slot) {
+                return hash(keys[slot]);
+            }
+        };
+    }
+
+    public IntIntLRUCache(int capacity) {
+        this(capacity, DEFAULT_MISSING_VALUE);
+    }
+
+    // Every entry lives in a slot. Keys and values are parallel arrays indexed by slot, and so are the links of the
+    // ordered list, so an entry costs a handful of ints instead of a node, an element and a HashMap entry.
+    private final int[] keys;
+    private final int[] values;
+    private final IndexedDoubleLinkedList orderedCache;
+    private final SlotHashIndex index;
+
+    // Time complexity: O(1)
+    public int get(int key) {
+        int slot = findSlot(key);
+        if (slot == IndexedDoubleLinkedList.NONE) {
+            return missingValue;
+        }
+
+        orderedCache.moveToTheTop(slot);
+        return values[slot];
+    }
+
+    /**
+     * Gets the value of the key, and if it is not in the cache, loads it and sets it.
+     * If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1), plus the load
+     */
+    public int get(int key, IntUnaryOperator loader) {
+        int slot = findSlot(key);
+        if (slot != IndexedDoubleLinkedList.NONE) {
+            orderedCache.moveToTheTop(slot);
+            return values[slot];
+        }
+        int value = loader.applyAsInt(key);
+        set(key, value);
+        return value;
+    }
+
+    public boolean containsKey(int key) {
+        return findSlot(key) != IndexedDoubleLinkedList.NONE;
+    }
+
+    // Time complexity: O(1)
+    public void set(int key, int value) {
+        int slot = findSlot(key);
+        if (slot != IndexedDoubleLinkedList.NONE) {
+            values[slot] = value;
+            orderedCache.moveToTheTop(slot);
+            return;
+        }
+
+        if (orderedCache.isFull()) {
+            // Drop element to make capacity
+            removeLast();
+        }
+        insertToTheTop(key, value);
+    }
+
+    public int size() {
+        return orderedCache.size();
+    }
+
+    private int findSlot(int key) {
+        for (int bucket = index.firstBucket(hash(key)); ; bucket = index.nextBucket(bucket)) {
+            int slot = index.slotAt(bucket);
+            if (slot == IndexedDoubleLinkedList.NONE || keys[slot] == key) {
+                return slot;
+            }
+        }
+    }
+
+    private void removeLast() {
+        int slot = orderedCache.removeLast();
+        index.remove(slot);
+        orderedCache.free(slot);
+    }
+
+    private void insertToTheTop(int key, int value) {
+        int slot = orderedCache.allocate();
+        keys[slot] = key;
+        values[slot] = value;
+        index.add(slot);
+        orderedCache.putFirst(slot);
+    }
+
+    private static int hash(int key) {
+        int h = key * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public String toString() {
+        if (orderedCache.isEmpty()) {
+            return "List is empty";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Elements: ");
+        for (int slot = orderedCache.getHead(); slot != IndexedDoubleLinkedList.NONE; slot = orderedCache.getNext(slot)) {
+            sb.append("{").append(keys[slot]).append(",").append(values[slot]).append("}");
+        }
+        return sb.toString();
+    }
+}
@@ -1,8 +1,12 @@
 package io.qbeat.lru;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
-public class LRUCache {
+public class LRUCache<K, V> {
 
     private final int capacity;
 
@@ -10,77 +14,322 @@ public class LRUCache {
      * An implementation of the Last Recently Used (LRU) Cache
      * Both Set and Get methods require a constant time
      * Does not support concurrency, priorities or expiry date.
+     * For int or long keys with int values, see {@link IntIntLRUCache} and {@link LongIntLRUCache},
+     * which avoid boxing altogether.
      *
      * @param capacity The capacity the Cache should have
      */
     public LRUCache(int capacity) {
+        this(capacity, new LruPolicy<>());
+    }
+
+    /**
+     * A cache that drops the element the given policy picks when it is full, instead of the Least Recently Used one,
+     * e.g. a {@link SegmentedLruPolicy}, {@link TwoQueuePolicy} or {@link ArcPolicy} created with the same capacity.
+     * Both Set and Get methods still require a constant time.
+     *
+     * @param capacity       The capacity the Cache should have
+     * @param evictionPolicy The policy that orders the elements, used by this cache only
+     */
+    public LRUCache(int capacity, EvictionPolicy<K, V> evictionPolicy) {
         this.capacity = capacity;
+        this.evictionPolicy = evictionPolicy;
     }
 
     // We need this, in order to be able to find an element in our cache in constant O(1) time
-    private final HashMap<String, DoubleLinkedListNode<Element>> hashmapWithNodes = new HashMap<>();
-    // We need this, for the ordering of our list. The DoubleLinkedList is the perfect structure since we could:
-    // Add an element on the top or tail in constant time.
-    // Move an element to the top of the list, given that we have the node, again in constant time
-    private final DoubleLinkedList<Element> orderedCache = new DoubleLinkedList<>();
+    private final HashMap<K, DoubleLinkedListNode<Element<K, V>>> hashmapWithNodes = new HashMap<>();
+    // Keeps the elements in the order they would be dropped in, in constant time O(1)
+    private final EvictionPolicy<K, V> evictionPolicy;
+
+    private StatsCounter statsCounter = StatsCounter.disabled();
+    private AdmissionPolicy<? super K> admissionPolicy = AdmissionPolicy.admitAll();
+    private Weigher<? super K, ? super V> weigher = Weigher.singleton();
+    private long maximumWeight = Long.MAX_VALUE;
+    private long totalWeight = 0;
+    private MutationJournal<? super K, ? super V> mutationJournal = MutationJournal.disabled();
+    private RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
 
     // Time complexity: O(1)
-    public Integer get(String key) {
-        DoubleLinkedListNode<Element> node;
+    public V get(K key) {
+        admissionPolicy.record(key);
         // O(1)
-        if (hashmapWithNodes.containsKey(key)) {
-            node = hashmapWithNodes.get(key);
-        } else {
+        DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(key);
+        if (node == null) {
+            statsCounter.recordMisses(1);
             return null;
         }
 
         // O(1)
-        orderedCache.moveToTheTop(node);
+        evictionPolicy.recordAccess(node);
 
+        statsCounter.recordHits(1);
         return node.getElement().getValue();
     }
 
-    // Time complexity: O(1)
-    public void set(String key, int value) {
-        if (hashmapWithNodes.containsKey(key)) {
-            moveToTheTop(key, value);
-        } else {
-            if (size() == capacity) {
-                // Drop element to make capacity
-                removeLast();
+    // Time complexity: O(1), plus O(1) per element dropped to make room for a heavier one
+    public void set(K key, V value) {
+        admissionPolicy.record(key);
+        final int weight = Weights.weigh(weigher, key, value);
+        DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(key);
+        if (node != null) {
+            if (totalWeight - node.getElement().getWeight() + weight <= maximumWeight) {
+                moveToTheTop(node, value, weight);
+                return;
+            }
+            // The element is set again like a new one, so that it is not dropped to make room for itself
+            removeNode(node, weight > maximumWeight ? RemovalCause.TOO_HEAVY : RemovalCause.REPLACED);
+        } else if (weight <= maximumWeight && !hasRoomFor(weight)
+                && !admissionPolicy.admit(key, evictionPolicy.victim(key).getKey())) {
+            return;
+        }
+        if (weight > maximumWeight) {
+            // It would never fit
+            return;
+        }
+        // Drop elements to make capacity
+        boolean firstEviction = true;
+        while (!hasRoomFor(weight)) {
+            removeLast(key, firstEviction);
+            firstEviction = false;
+        }
+        insertToTheTop(key, value, weight, !firstEviction);
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it.
+     * A null value is returned, but not cached. If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1), plus the load
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value == null) {
+            value = LoadTimer.load(key, loader, statsCounter);
+            if (value != null) {
+                set(key, value);
             }
-            insertToTheTop(key, value);
         }
+        return value;
     }
 
-    private void moveToTheTop(String key, int value) {
-        DoubleLinkedListNode<Element> elementDoubleLinkedListNode = hashmapWithNodes.get(key);
-        elementDoubleLinkedListNode.getElement().updateValue(value);
-        orderedCache.moveToTheTop(elementDoubleLinkedListNode);
-        hashmapWithNodes.put(key, elementDoubleLinkedListNode);
+    /**
+     * Gets the elements of the given keys that are in the cache, as if get was called for each key in order.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>();
+        int hits = 0;
+        for (K key : keys) {
+            admissionPolicy.record(key);
+            DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(key);
+            if (node != null) {
+                evictionPolicy.recordAccess(node);
+                values.put(key, node.getElement().getValue());
+                hits++;
+            }
+        }
+        statsCounter.recordHits(hits);
+        statsCounter.recordMisses(keys.size() - hits);
+        return values;
+    }
+
+    /**
+     * Sets all the given elements, with the same result as calling set for each one in order.
+     * Every key is looked up once, and the elements to drop are only dropped once the whole batch is in:
+     * since the Least Recently Used elements are always dropped first, that leaves the same elements as one set
+     * per element would. Time complexity: O(k), for k elements
+     * With an admission policy, each new element has to be compared with the one it would replace, and with an
+     * eviction policy other than LRU or a weigher, which elements are dropped depends on the elements inserted before
+     * them, so in those cases they are set one at a time.
+     */
+    public void setAll(Map<? extends K, ? extends V> values) {
+        if (admissionPolicy != AdmissionPolicy.admitAll() || !(evictionPolicy instanceof LruPolicy)
+                || weigher != Weigher.singleton()) {
+            for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+                set(entry.getKey(), entry.getValue());
+            }
+            return;
+        }
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(entry.getKey());
+            if (node != null) {
+                moveToTheTop(node, entry.getValue(), 1);
+            } else {
+                insertToTheTop(entry.getKey(), entry.getValue(), 1, false);
+            }
+        }
+        // A maximum weight with the default weigher is a capacity of its own
+        while (size() > capacity || totalWeight > maximumWeight) {
+            removeLast(null, false);
+        }
+    }
+
+    private void moveToTheTop(DoubleLinkedListNode<Element<K, V>> elementDoubleLinkedListNode, V value, int weight) {
+        final Element<K, V> element = elementDoubleLinkedListNode.getElement();
+        mutationJournal.recordSet(element.getKey(), value, MutationJournal.NO_PRIORITY, MutationJournal.NO_EXPIRY_TIMESTAMP);
+        final V previousValue = element.getValue();
+        totalWeight += weight - element.getWeight();
+        element.updateValue(value);
+        element.setWeight(weight);
+        evictionPolicy.recordAccess(elementDoubleLinkedListNode);
+        removalNotifier.enqueue(element.getKey(), previousValue, RemovalCause.REPLACED);
     }
 
     public int size() {
         return hashmapWithNodes.size();
     }
 
-    private void removeLast() {
-        Element element = orderedCache.removeLast();
+    /**
+     * The total weight of the elements, which is their number unless the cache is bounded by weight.
+     */
+    public long weightedSize() {
+        return totalWeight;
+    }
+
+    private boolean hasRoomFor(int weight) {
+        return size() < capacity && totalWeight + weight <= maximumWeight;
+    }
+
+    // The candidate is the key about to be inserted, if any
+    private void removeLast(K candidate, boolean firstEviction) {
+        Element<K, V> element = evictionPolicy.evict(candidate, firstEviction);
         hashmapWithNodes.remove(element.getKey());
+        totalWeight -= element.getWeight();
+        // The policy only picks the element as it drops it, so the eviction is recorded once done
+        mutationJournal.recordRemoval(element.getKey());
+        statsCounter.recordEviction(RemovalCause.LEAST_RECENTLY_USED);
+        removalNotifier.enqueue(element.getKey(), element.getValue(), RemovalCause.LEAST_RECENTLY_USED);
+    }
+
+    private void removeNode(DoubleLinkedListNode<Element<K, V>> node, RemovalCause cause) {
+        mutationJournal.recordRemoval(node.getElement().getKey());
+        evictionPolicy.remove(node);
+        hashmapWithNodes.remove(node.getElement().getKey());
+        totalWeight -= node.getElement().getWeight();
+        // Only the elements set again are removed this way: replaced, or evicted if the new value would never fit
+        if (cause != RemovalCause.REPLACED) {
+            statsCounter.recordEviction(cause);
+        }
+        removalNotifier.enqueue(node.getElement().getKey(), node.getElement().getValue(), cause);
     }
 
-    private void insertToTheTop(String key, int value) {
-        DoubleLinkedListNode<Element> node = orderedCache.putFirst(new Element(key, value));
+    private void insertToTheTop(K key, V value, int weight, boolean afterEviction) {
+        mutationJournal.recordSet(key, value, MutationJournal.NO_PRIORITY, MutationJournal.NO_EXPIRY_TIMESTAMP);
+        final Element<K, V> element = new Element<>(key, value);
+        element.setWeight(weight);
+        DoubleLinkedListNode<Element<K, V>> node = evictionPolicy.insert(element, afterEviction);
         hashmapWithNodes.put(key, node);
+        totalWeight += weight;
+    }
+
+    /**
+     * Starts recording the hits, misses, evictions and loads of the cache in the given counter, which can be shared
+     * with other caches. By default, the cache records nothing.
+     */
+    public void setStatsCounter(StatsCounter statsCounter) {
+        this.statsCounter = statsCounter;
+    }
+
+    /**
+     * Makes the cache ask the given policy before dropping an element for a new one, e.g. a
+     * {@link TinyLfuAdmissionPolicy}. A new element the policy does not admit is not cached, and nothing is dropped.
+     * By default, every new element is admitted.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy<? super K> admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    /**
+     * Starts recording every element set, removed and evicted in the given journal, e.g. a {@link FileMutationJournal},
+     * so that it can be recovered after a crash. The changes are recorded before they are made, except the evictions,
+     * which are recorded once the eviction policy has dropped its element. The elements already in the cache are not
+     * recorded: a recovered snapshot is restored first, and the journal set after. By default, nothing is recorded.
+     */
+    public void setMutationJournal(MutationJournal<? super K, ? super V> mutationJournal) {
+        this.mutationJournal = mutationJournal;
+    }
+
+    /**
+     * Tells the listener about every element removed from the cache, with its key, value and {@link RemovalCause}:
+     * elements evicted by the eviction policy, and the previous values of the elements set again.
+     * The removals are queued, and delivered in batches on the executor, in the order they happened, so the listener
+     * never runs on the thread that changes the cache. If the executor rejects the delivery, the removals queued until
+     * then are dropped. By default, nothing is reported, and nothing is queued.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+        this.removalNotifier = new BatchingRemovalNotifier<>(removalListener, executor);
+    }
+
+    /**
+     * The same as above, delivering the removals on the executor the caches load values on by default.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+        setRemovalListener(removalListener, DefaultLoaderExecutor.INSTANCE);
+    }
+
+    /**
+     * Bounds the cache by the total weight of its elements, as the weigher weighs them, as well as by its capacity, so
+     * that e.g. an LRUCache created with a capacity of Integer.MAX_VALUE and a weigher that returns the size of each
+     * value in bytes holds up to maximumWeight bytes. The elements are dropped in the usual order until a new one fits,
+     * and an update that makes an element heavier drops other elements, never the element itself. An element heavier
+     * than maximumWeight is never cached: setting it removes the previous value of its key, if any.
+     * The elements already in the cache are weighed, and dropped until they fit. Time complexity: O(n)
+     */
+    public void setMaximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        Weights.checkMaximumWeight(maximumWeight);
+        // Every element is weighed before any is changed, so that a weigher that throws leaves the cache as it was
+        final int[] weights = new int[size()];
+        int i = 0;
+        for (DoubleLinkedListNode<Element<K, V>> node : hashmapWithNodes.values()) {
+            weights[i++] = Weights.weigh(weigher, node.getElement().getKey(), node.getElement().getValue());
+        }
+        i = 0;
+        totalWeight = 0;
+        for (DoubleLinkedListNode<Element<K, V>> node : hashmapWithNodes.values()) {
+            node.getElement().setWeight(weights[i]);
+            totalWeight += weights[i++];
+        }
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        while (totalWeight > maximumWeight) {
+            removeLast(null, false);
+        }
+    }
+
+    /**
+     * Takes a snapshot of the elements, in the order the eviction policy would drop them in, e.g. to write it to a
+     * file before a restart with {@link CacheSnapshot#writeTo}. Only the references are copied. Time complexity: O(n)
+     */
+    public CacheSnapshot<K, V> snapshot() {
+        final CacheSnapshot<K, V> snapshot = new CacheSnapshot<>(size(), false, false);
+        evictionPolicy.forEachFromLast(element -> snapshot.add(element.getKey(), element.getValue(), 0, 0));
+        return snapshot;
+    }
+
+    /**
+     * Sets the elements of the snapshot, as if set was called for each one in order, so that the snapshot of a cache
+     * with the same capacity comes back in the same LRU order. The priorities and expiry timestamps of the snapshot,
+     * if any, are ignored. Eviction policies other than LRU get the elements back in order, not in their segments.
+     * Time complexity: O(k), for k elements
+     */
+    public void restore(CacheSnapshot<? extends K, ? extends V> snapshot) {
+        for (int i = 0; i < snapshot.size(); i++) {
+            set(snapshot.keyAt(i), snapshot.valueAt(i));
+        }
+    }
+
+    public CacheStats stats() {
+        return statsCounter.snapshot();
     }
 
     @Override
     public String toString() {
-        return orderedCache.toString();
+        return evictionPolicy.toString();
     }
 
     public static void main(String[] args) {
-        LRUCache lruCache = new LRUCache(5);
+        LRUCache<String, Integer> lruCache = new LRUCache<>(5);
         System.out.println(lruCache);
         lruCache.set("A", 5);
         System.out.println(lruCache);
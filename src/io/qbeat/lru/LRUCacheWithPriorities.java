@@ -1,129 +1,355 @@
 package io.qbeat.lru;
 
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
 
-public class LRUCacheWithPriorities {
+public class LRUCacheWithPriorities<K, V> {
 
     private final int capacity;
 
     /**
      * An implementation of the Last Recently Used (LRU) Cache
-     * Get has timeComplexity O(n)
-     * Set has timeComplexity O(logn)
+     * Get has timeComplexity O(1)
+     * Set has timeComplexity O(logn), on the number of distinct priorities
      * Does not support concurrency or expiry date.
      *
      * @param capacity The capacity the Cache should have
      */
     public LRUCacheWithPriorities(int capacity) {
+        this(capacity, new TreePriorityBuckets<>());
+    }
+
+    /**
+     * An implementation of the Last Recently Used (LRU) Cache, for priorities between 0 and maxPriority
+     * Get has timeComplexity O(1)
+     * Set has timeComplexity O(1)
+     * Does not support concurrency or expiry date.
+     *
+     * @param capacity    The capacity the Cache should have
+     * @param maxPriority The highest priority allowed, at most {@link BitmapPriorityBuckets#MAX_PRIORITY}.
+     *                    Setting a priority outside of [0, maxPriority] throws an IllegalArgumentException.
+     */
+    public LRUCacheWithPriorities(int capacity, int maxPriority) {
+        this(capacity, new BitmapPriorityBuckets<>(maxPriority));
+    }
+
+    private LRUCacheWithPriorities(int capacity, PriorityBuckets<ElementWithPriority<K, V>> prioritiesCache) {
         this.capacity = capacity;
+        this.prioritiesCache = prioritiesCache;
     }
 
     // We need this, in order to be able to find an element in our cache in constant O(1) time
-    private final HashMap<String, DoubleLinkedListNode<ElementWithPriority>> hashmapWithNodes = new HashMap<>();
+    private final HashMap<K, DoubleLinkedListNode<ElementWithPriority<K, V>>> hashmapWithNodes = new HashMap<>();
+
+    private final PriorityBuckets<ElementWithPriority<K, V>> prioritiesCache;
 
-    private final TreeMap<Integer, DoubleLinkedList<ElementWithPriority>> prioritiesMap = new TreeMap<>();
+    private StatsCounter statsCounter = StatsCounter.disabled();
+    private AdmissionPolicy<? super K> admissionPolicy = AdmissionPolicy.admitAll();
+    private Weigher<? super K, ? super V> weigher = Weigher.singleton();
+    private long maximumWeight = Long.MAX_VALUE;
+    private long totalWeight = 0;
+    private MutationJournal<? super K, ? super V> mutationJournal = MutationJournal.disabled();
+    private RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
 
     // Time complexity: O(1)
-    public Integer get(String key) {
-        DoubleLinkedListNode<ElementWithPriority> node;
+    public V get(K key) {
+        admissionPolicy.record(key);
         // O(1)
-        if (hashmapWithNodes.containsKey(key)) {
-            node = hashmapWithNodes.get(key);
-        } else {
+        DoubleLinkedListNode<ElementWithPriority<K, V>> node = hashmapWithNodes.get(key);
+        if (node == null) {
+            statsCounter.recordMisses(1);
             return null;
         }
 
         // O(1)
-        moveToTheTopInPriorityList(node);
+        prioritiesCache.moveToTopForPriority(node.getElement().getPriority(), node);
+        statsCounter.recordHits(1);
         return node.getElement().getValue();
     }
 
-    private void moveToTheTopInPriorityList(DoubleLinkedListNode<ElementWithPriority> node) {
-        int priority = node.getElement().getPriority();
-        DoubleLinkedList<ElementWithPriority> cacheForPriority = prioritiesMap.get(priority);
-        cacheForPriority.moveToTheTop(node);
+    // Time complexity: O(logn), or O(1) with bounded priorities
+    public void set(K key, V value, int priority) {
+        prioritiesCache.checkPriority(priority);
+        setWithoutCheck(key, value, priority);
     }
 
-    // Time complexity: O(logn)
-    public void set(String key, int value, int priority) {
-        if (hashmapWithNodes.containsKey(key)) {
-            moveToTheTop(key, value, priority);
-        } else {
-            if (size() == capacity) {
-                // Drop element to make capacity
-                removeLast();
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it with the given priority.
+     * A null value is returned, but not cached. If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1) on a hit, O(logn) plus the load on a miss
+     */
+    public V get(K key, int priority, Function<? super K, ? extends V> loader) {
+        prioritiesCache.checkPriority(priority);
+        V value = get(key);
+        if (value == null) {
+            value = LoadTimer.load(key, loader, statsCounter);
+            if (value != null) {
+                set(key, value, priority);
             }
-            insertToTheTop(key, value, priority);
         }
+        return value;
     }
 
-    private void moveToTheTop(String key, Integer value, int updatedPriority) {
-        DoubleLinkedListNode<ElementWithPriority> elementDoubleLinkedListNode = hashmapWithNodes.get(key);
-        int existingPriority = elementDoubleLinkedListNode.getElement().getPriority();
+    /**
+     * Gets the elements of the given keys that are in the cache, as if get was called for each key in order.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>();
+        int hits = 0;
+        for (K key : keys) {
+            admissionPolicy.record(key);
+            DoubleLinkedListNode<ElementWithPriority<K, V>> node = hashmapWithNodes.get(key);
+            if (node != null) {
+                prioritiesCache.moveToTopForPriority(node.getElement().getPriority(), node);
+                values.put(key, node.getElement().getValue());
+                hits++;
+            }
+        }
+        statsCounter.recordHits(hits);
+        statsCounter.recordMisses(keys.size() - hits);
+        return values;
+    }
 
-        elementDoubleLinkedListNode.getElement().update(value, updatedPriority);
+    /**
+     * Sets all the given elements with the same priority, with the same result as calling set for each one in order.
+     * Every key is looked up once, and the priority is checked once. An element is still dropped for each new one
+     * inserted while the capacity is reached, since which one is dropped depends on the elements inserted before it.
+     * Time complexity: O(k logn), or O(k) with bounded priorities, for k elements
+     */
+    public void setAll(Map<? extends K, ? extends V> values, int priority) {
+        prioritiesCache.checkPriority(priority);
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            setWithoutCheck(entry.getKey(), entry.getValue(), priority);
+        }
+    }
 
-        if (existingPriority != updatedPriority) {
-            // Remove element from list
-            DoubleLinkedList<ElementWithPriority> cacheForPriority = prioritiesMap.get(existingPriority);
-            cacheForPriority.remove(elementDoubleLinkedListNode);
-            if (cacheForPriority.isEmpty()) {
-                prioritiesMap.remove(existingPriority);
+    private void setWithoutCheck(K key, V value, int priority) {
+        admissionPolicy.record(key);
+        final int weight = Weights.weigh(weigher, key, value);
+        DoubleLinkedListNode<ElementWithPriority<K, V>> node = hashmapWithNodes.get(key);
+        if (node != null) {
+            if (totalWeight - node.getElement().getWeight() + weight <= maximumWeight) {
+                moveToTheTop(node, value, priority, weight);
+                return;
             }
-            prioritiesMap.putIfAbsent(updatedPriority, new DoubleLinkedList<>());
-
-            DoubleLinkedList<ElementWithPriority> cacheForUpdatedPriority = prioritiesMap.get(updatedPriority);
-            elementDoubleLinkedListNode = cacheForUpdatedPriority.putFirst(elementDoubleLinkedListNode.getElement());
-        } else {
-            DoubleLinkedList<ElementWithPriority> cacheForUpdatedPriority = prioritiesMap.get(updatedPriority);
-            cacheForUpdatedPriority.moveToTheTop(elementDoubleLinkedListNode);
+            // The element is set again like a new one, so that it is not dropped to make room for itself
+            removeNode(node, weight > maximumWeight ? RemovalCause.TOO_HEAVY : RemovalCause.REPLACED);
+        } else if (weight <= maximumWeight && !hasRoomFor(weight)
+                && !admissionPolicy.admit(key, prioritiesCache.peekLastElementOfLowestPriority().getKey())) {
+            return;
         }
+        if (weight > maximumWeight) {
+            // It would never fit
+            return;
+        }
+        // Drop elements to make capacity
+        while (!hasRoomFor(weight)) {
+            removeLast();
+        }
+        insertToTheTop(key, value, priority, weight);
+    }
 
-        hashmapWithNodes.put(key, elementDoubleLinkedListNode);
+    private void moveToTheTop(DoubleLinkedListNode<ElementWithPriority<K, V>> elementDoubleLinkedListNode, V value, int updatedPriority, int weight) {
+        int existingPriority = elementDoubleLinkedListNode.getElement().getPriority();
+        mutationJournal.recordSet(elementDoubleLinkedListNode.getElement().getKey(), value, updatedPriority,
+                MutationJournal.NO_EXPIRY_TIMESTAMP);
+
+        final V previousValue = elementDoubleLinkedListNode.getElement().getValue();
+        prioritiesCache.moveToTop(existingPriority, updatedPriority, elementDoubleLinkedListNode);
+        elementDoubleLinkedListNode.getElement().update(value, updatedPriority);
+        removalNotifier.enqueue(elementDoubleLinkedListNode.getElement().getKey(), previousValue, RemovalCause.REPLACED);
+        totalWeight += weight - elementDoubleLinkedListNode.getElement().getWeight();
+        elementDoubleLinkedListNode.getElement().setWeight(weight);
+        if (existingPriority != updatedPriority) {
+            statsCounter.recordRemoval(existingPriority);
+            statsCounter.recordInsertion(updatedPriority);
+        }
     }
 
     public int size() {
         return hashmapWithNodes.size();
     }
 
+    /**
+     * The total weight of the elements, which is their number unless the cache is bounded by weight.
+     */
+    public long weightedSize() {
+        return totalWeight;
+    }
+
+    private boolean hasRoomFor(int weight) {
+        return size() < capacity && totalWeight + weight <= maximumWeight;
+    }
+
     private void removeLast() {
-        DoubleLinkedList<ElementWithPriority> cacheForFirstPriority = prioritiesMap.get(prioritiesMap.firstKey());
-        ElementWithPriority elementWithPriority = cacheForFirstPriority.removeLast();
-        if (cacheForFirstPriority.isEmpty()) {
-            prioritiesMap.remove(prioritiesMap.firstKey());
-        }
+        mutationJournal.recordRemoval(prioritiesCache.peekLastElementOfLowestPriority().getKey());
+        ElementWithPriority<K, V> elementWithPriority = prioritiesCache.deleteLastElementOfLowestPriority();
         hashmapWithNodes.remove(elementWithPriority.getKey());
+        totalWeight -= elementWithPriority.getWeight();
+        final RemovalCause cause = causeOfEviction(elementWithPriority.getPriority());
+        statsCounter.recordEviction(cause);
+        statsCounter.recordRemoval(elementWithPriority.getPriority());
+        removalNotifier.enqueue(elementWithPriority.getKey(), elementWithPriority.getValue(), cause);
     }
 
-    private void insertToTheTop(String key, Integer value, int priority) {
-        prioritiesMap.putIfAbsent(priority, new DoubleLinkedList<>());
+    // The priority decided which element was dropped, only if elements with a higher priority were kept
+    private RemovalCause causeOfEviction(int priorityOfDroppedElement) {
+        if (!prioritiesCache.isEmpty() && prioritiesCache.highestPriority() > priorityOfDroppedElement) {
+            return RemovalCause.LOWEST_PRIORITY;
+        }
+        return RemovalCause.LEAST_RECENTLY_USED;
+    }
 
+    private void removeNode(DoubleLinkedListNode<ElementWithPriority<K, V>> node, RemovalCause cause) {
+        final ElementWithPriority<K, V> element = node.getElement();
+        mutationJournal.recordRemoval(element.getKey());
+        prioritiesCache.delete(element.getPriority(), node);
+        hashmapWithNodes.remove(element.getKey());
+        totalWeight -= element.getWeight();
+        statsCounter.recordRemoval(element.getPriority());
+        // Only the elements set again are removed this way: replaced, or evicted if the new value would never fit
+        if (cause != RemovalCause.REPLACED) {
+            statsCounter.recordEviction(cause);
+        }
+        removalNotifier.enqueue(element.getKey(), element.getValue(), cause);
+    }
 
-        DoubleLinkedList<ElementWithPriority> cacheForUpdatedPriority = prioritiesMap.get(priority);
-        DoubleLinkedListNode<ElementWithPriority> node = cacheForUpdatedPriority.putFirst(new ElementWithPriority(key, value, priority));
+    private void insertToTheTop(K key, V value, int priority, int weight) {
+        mutationJournal.recordSet(key, value, priority, MutationJournal.NO_EXPIRY_TIMESTAMP);
+        final ElementWithPriority<K, V> element = new ElementWithPriority<>(key, value, priority);
+        element.setWeight(weight);
+        DoubleLinkedListNode<ElementWithPriority<K, V>> node = prioritiesCache.insertToTheTop(priority, element);
 
         hashmapWithNodes.put(key, node);
+        totalWeight += weight;
+        statsCounter.recordInsertion(priority);
     }
 
-    @Override
-    public String toString() {
-        if (prioritiesMap.size() == 0) {
-            return "Cache is empty";
+    /**
+     * Starts recording the hits, misses, evictions, elements per priority and loads of the cache in the given counter,
+     * which can be shared with other caches. By default, the cache records nothing.
+     * The elements already in the cache are counted in their priority. Time complexity: O(n)
+     */
+    public void setStatsCounter(StatsCounter statsCounter) {
+        this.statsCounter = statsCounter;
+        for (DoubleLinkedListNode<ElementWithPriority<K, V>> node : hashmapWithNodes.values()) {
+            statsCounter.recordInsertion(node.getElement().getPriority());
         }
-        StringBuilder sb = new StringBuilder();
-        for (Map.Entry<Integer, DoubleLinkedList<ElementWithPriority>> entry : prioritiesMap.entrySet()) {
-            sb.append("Priority ").append(entry.getKey()).append(": ");
-            sb.append(entry.getValue().toString());
-            sb.append(System.getProperty("line.separator"));
+    }
+
+    /**
+     * Makes the cache ask the given policy before dropping an element for a new one, e.g. a
+     * {@link TinyLfuAdmissionPolicy}. The new element is compared with the one that would be dropped, the Least
+     * Recently Used element of the lowest priority, whatever their priorities. A new element the policy does not
+     * admit is not cached, and nothing is dropped. By default, every new element is admitted.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy<? super K> admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    /**
+     * Starts recording every element set with its priority, removed and evicted in the given journal, e.g. a
+     * {@link FileMutationJournal}, before changing the cache, so that it can be recovered after a crash. The elements
+     * already in the cache are not recorded: a recovered snapshot is restored first, and the journal set after.
+     * By default, nothing is recorded.
+     */
+    public void setMutationJournal(MutationJournal<? super K, ? super V> mutationJournal) {
+        this.mutationJournal = mutationJournal;
+    }
+
+    /**
+     * Tells the listener about every element removed from the cache, with its key, value and {@link RemovalCause}:
+     * elements dropped to make capacity, and the previous values of the elements set again.
+     * The removals are queued, and delivered in batches on the executor, in the order they happened, so the listener
+     * never runs on the thread that changes the cache. If the executor rejects the delivery, the removals queued until
+     * then are dropped. By default, nothing is reported, and nothing is queued.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+        this.removalNotifier = new BatchingRemovalNotifier<>(removalListener, executor);
+    }
+
+    /**
+     * The same as above, delivering the removals on the executor the caches load values on by default.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+        setRemovalListener(removalListener, DefaultLoaderExecutor.INSTANCE);
+    }
+
+    /**
+     * Bounds the cache by the total weight of its elements, as the weigher weighs them, as well as by its capacity.
+     * The elements are dropped in the usual order, the Least Recently Used element of the lowest priority first, until
+     * a new one fits, and an update that makes an element heavier drops other elements, never the element itself.
+     * An element heavier than maximumWeight is never cached: setting it removes the previous value of its key, if any.
+     * The elements already in the cache are weighed, and dropped until they fit. Time complexity: O(n)
+     */
+    public void setMaximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        Weights.checkMaximumWeight(maximumWeight);
+        // Every element is weighed before any is changed, so that a weigher that throws leaves the cache as it was
+        final int[] weights = new int[size()];
+        int i = 0;
+        for (DoubleLinkedListNode<ElementWithPriority<K, V>> node : hashmapWithNodes.values()) {
+            weights[i++] = Weights.weigh(weigher, node.getElement().getKey(), node.getElement().getValue());
+        }
+        i = 0;
+        totalWeight = 0;
+        for (DoubleLinkedListNode<ElementWithPriority<K, V>> node : hashmapWithNodes.values()) {
+            node.getElement().setWeight(weights[i]);
+            totalWeight += weights[i++];
         }
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        while (totalWeight > maximumWeight) {
+            removeLast();
+        }
+    }
 
-        return sb.toString();
+    /**
+     * Takes a snapshot of the elements with their priorities, in the order they would be dropped in, e.g. to write it
+     * to a file before a restart with {@link CacheSnapshot#writeTo}. Only the references are copied.
+     * Time complexity: O(n)
+     */
+    public CacheSnapshot<K, V> snapshot() {
+        final CacheSnapshot<K, V> snapshot = new CacheSnapshot<>(size(), true, false);
+        prioritiesCache.forEachFromLast(element -> snapshot.add(element.getKey(), element.getValue(), element.getPriority(), 0));
+        return snapshot;
+    }
+
+    /**
+     * Sets the elements of the snapshot with their priorities, as if set was called for each one in order, so that
+     * the snapshot of a cache with the same capacity comes back in the same LRU order in each priority.
+     * Every priority is checked before anything is set. Time complexity: O(k logn), or O(k) with bounded priorities
+     *
+     * @throws IllegalArgumentException If the snapshot has no priorities, or a priority is not allowed
+     */
+    public void restore(CacheSnapshot<? extends K, ? extends V> snapshot) {
+        if (!snapshot.hasPriorities()) {
+            throw new IllegalArgumentException("The snapshot has no priorities");
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            prioritiesCache.checkPriority(snapshot.priorityAt(i));
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            setWithoutCheck(snapshot.keyAt(i), snapshot.valueAt(i), snapshot.priorityAt(i));
+        }
+    }
+
+    public CacheStats stats() {
+        return statsCounter.snapshot();
+    }
+
+    @Override
+    public String toString() {
+        return prioritiesCache.toString();
     }
 
     public static void main(String[] args) {
-        LRUCacheWithPriorities lruCacheWithPriorities = new LRUCacheWithPriorities(5);
+        LRUCacheWithPriorities<String, Integer> lruCacheWithPriorities = new LRUCacheWithPriorities<>(5);
         System.out.println(lruCacheWithPriorities);
         lruCacheWithPriorities.set("A", 5, 4);
         System.out.println(lruCacheWithPriorities);
@@ -1,151 +1,480 @@
 package io.qbeat.lru;
 
+import java.util.Collection;
 import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class LRUCacheWithPrioritiesAndExpiryTimestamps<K, V> {
+    public static final long DEFAULT_TICK_RESOLUTION_MILLIS = 1;
 
-public class LRUCacheWithPrioritiesAndExpiryTimestamps {
     private final int capacity;
     private final LRUTime lruTime;
 
     /**
      * An implementation of the Last Recently Used (LRU) Cache
-     * Get has timeComplexity O(n)
-     * Set has timeComplexity O(logn)
+     * Elements whose expiry timestamp has passed are never returned: a get treats them as missing, and removes them.
+     * Reads check the time on every call, so for a hot read path, pass a {@link CoarseLRUTime}.
+     * Get has timeComplexity O(1)
+     * Set has timeComplexity O(logn), on the number of distinct priorities
      * Does not support concurrency.
      *
-     * @param capacity The capacity the Cache should have
+     * @param capacity             The capacity the Cache should have
+     * @param tickResolutionMillis The resolution the expiry timestamps are tracked with. Elements are considered
+     *                             expired at most one tick after their expiry timestamp.
      */
-    public LRUCacheWithPrioritiesAndExpiryTimestamps(int capacity, LRUTime lruTime) {
+    public LRUCacheWithPrioritiesAndExpiryTimestamps(int capacity, LRUTime lruTime, long tickResolutionMillis) {
+        this(capacity, lruTime, tickResolutionMillis, new TreePriorityBuckets<>());
+    }
+
+    /**
+     * The same as above, for priorities between 0 and maxPriority, where Set has timeComplexity O(1).
+     *
+     * @param maxPriority The highest priority allowed, at most {@link BitmapPriorityBuckets#MAX_PRIORITY}.
+     *                    Setting a priority outside of [0, maxPriority] throws an IllegalArgumentException.
+     */
+    public LRUCacheWithPrioritiesAndExpiryTimestamps(int capacity, LRUTime lruTime, long tickResolutionMillis, int maxPriority) {
+        this(capacity, lruTime, tickResolutionMillis, new BitmapPriorityBuckets<>(maxPriority));
+    }
+
+    private LRUCacheWithPrioritiesAndExpiryTimestamps(int capacity, LRUTime lruTime, long tickResolutionMillis,
+                                                      PriorityBuckets<ElementWithPriorityAndExpiryTimestamp<K, V>> prioritiesCache) {
         this.capacity = capacity;
         this.lruTime = lruTime;
+        this.prioritiesCache = prioritiesCache;
+        this.expiryTimestampsWheel = new TimingWheel<>(tickResolutionMillis, lruTime.getCurrentTimeToEpochMillis());
     }
 
-    class NodesPair{
-        // The two nodes point to the same element.
-        // However, we need both nodes, since they represent nodes in different lists
-        private final DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> priorityCacheNode;
-        private final DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> expiryCacheNode;
+    public LRUCacheWithPrioritiesAndExpiryTimestamps(int capacity, LRUTime lruTime) {
+        this(capacity, lruTime, DEFAULT_TICK_RESOLUTION_MILLIS);
+    }
 
-        NodesPair(DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> priorityCacheNode, DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> expiryCacheNode) {
-            this.priorityCacheNode = priorityCacheNode;
-            this.expiryCacheNode = expiryCacheNode;
-        }
+    // We need this, in order to be able to find an element in our cache in constant O(1) time
+    // Each element is its own node in the list of its priority, and carries its own links in the timing wheel,
+    // so an element is a single object, and updating it allocates nothing
+    private final HashMap<K, ElementWithPriorityAndExpiryTimestamp<K, V>> hashmapWithNodes = new HashMap<>();
+    private final PriorityBuckets<ElementWithPriorityAndExpiryTimestamp<K, V>> prioritiesCache;
+    private final TimingWheel<ElementWithPriorityAndExpiryTimestamp<K, V>> expiryTimestampsWheel;
+
+    private StatsCounter statsCounter = StatsCounter.disabled();
+    private AdmissionPolicy<? super K> admissionPolicy = AdmissionPolicy.admitAll();
+    private Weigher<? super K, ? super V> weigher = Weigher.singleton();
+    private long maximumWeight = Long.MAX_VALUE;
+    private long totalWeight = 0;
+    private MutationJournal<? super K, ? super V> mutationJournal = MutationJournal.disabled();
+    private RemovalNotifier<K, V> removalNotifier = RemovalNotifier.disabled();
+    // Given each element dropped to make capacity, once it is out of the cache, e.g. to demote it to another tier
+    private Consumer<? super ElementWithPriorityAndExpiryTimestamp<K, V>> evictionConsumer = element -> {
+    };
 
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> getPriorityCacheNode() {
-            return priorityCacheNode;
+    // Time complexity: O(1)
+    public V get(K key) {
+        return get(key, lruTime.getCurrentTimeToEpochMillis());
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache or has expired, loads it and sets it with the given
+     * priority and expiry timestamp.
+     * A null value is returned, but not cached. If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1) on a hit, O(logn) plus the load on a miss
+     */
+    public V get(K key, int priority, long expiryTimestamp, Function<? super K, ? extends V> loader) {
+        prioritiesCache.checkPriority(priority);
+        V value = get(key);
+        if (value == null) {
+            value = LoadTimer.load(key, loader, statsCounter);
+            if (value != null) {
+                set(key, value, priority, expiryTimestamp);
+            }
         }
+        return value;
+    }
 
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> getExpiryCacheNode() {
-            return expiryCacheNode;
+    /**
+     * Gets the elements of the given keys that are in the cache and have not expired, as if get was called for each
+     * key in order. Every key is looked up once, and the time is only read once for the whole batch.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        Map<K, V> values = new HashMap<>();
+        for (K key : keys) {
+            V value = get(key, now);
+            if (value != null) {
+                values.put(key, value);
+            }
         }
+        return values;
     }
 
-    // We need this, in order to be able to find an element in our cache in constant O(1) time
-    private final HashMap<String, NodesPair> hashmapWithNodes = new HashMap<>();
-    private final TreeCache<Integer> prioritiesCache = new TreeCache<>("Priority");
-    private final TreeCache<Long> expiryTimestampsCache = new TreeCache<>("ExpiryTimestamp");
+    private V get(K key, long now) {
+        admissionPolicy.record(key);
+        final ElementWithPriorityAndExpiryTimestamp<K, V> element = hashmapWithNodes.get(key);
+        if (element == null) {
+            statsCounter.recordMisses(1);
+            return null;
+        }
 
-    // Time complexity: O(1)
-    public Integer get(String key) {
-        NodesPair nodesPair;
-        // O(1)
-        if (hashmapWithNodes.containsKey(key)) {
-            nodesPair = hashmapWithNodes.get(key);
-        } else {
+        if (expiryTimestampsWheel.isExpired(element.getExpiryTimestamp(), now)) {
+            expiryTimestampsWheel.cancel(element);
+            removeItem(element, RemovalCause.EXPIRED);
+            statsCounter.recordEviction(RemovalCause.EXPIRED);
+            statsCounter.recordMisses(1);
             return null;
         }
 
         // O(1)
-        moveToTheTopInBothTreeCaches(nodesPair);
-        return nodesPair.getPriorityCacheNode().getElement().getValue();
+        prioritiesCache.moveToTopForPriority(element.getPriority(), element);
+        statsCounter.recordHits(1);
+        return element.getValue();
     }
 
-    private void moveToTheTopInBothTreeCaches(NodesPair nodesPair) {
-        final ElementWithPriorityAndExpiryTimestamp element = nodesPair.getPriorityCacheNode().getElement();
-        prioritiesCache.moveToTopForKey(element.getPriority(), nodesPair.getPriorityCacheNode());
-
-        // These line might not be needed.
-        expiryTimestampsCache.moveToTopForKey(element.getExpiryTimestamp(), nodesPair.getExpiryCacheNode());
+    // Time complexity: O(logn)
+    public void set(K key, V value, int priority, long expiryTimestamp) {
+        prioritiesCache.checkPriority(priority);
+        setWithoutCheck(key, value, priority, expiryTimestamp, lruTime.getCurrentTimeToEpochMillis());
     }
 
-    // Time complexity: O(logn)
-    public void set(String key, int value, int priority, int expiryTimestamp) {
-        if (hashmapWithNodes.containsKey(key)) {
-            updateElementAndMoveToTheTopInCorrespondingTreeCaches(key, value, priority, expiryTimestamp);
-        } else {
-            dropElementIfCapacityIsReached();
-            insertToTheTop(key, value, priority, expiryTimestamp);
+    /**
+     * Sets all the given elements with the same priority and expiry timestamp, with the same result as calling set for
+     * each one in order. Every key is looked up once, and the priority is checked and the time is read once for the
+     * whole batch. An element is still dropped for each new one inserted while the capacity is reached, since which
+     * one is dropped depends on the elements inserted before it.
+     * Time complexity: O(k logn), or O(k) with bounded priorities, for k elements
+     */
+    public void setAll(Map<? extends K, ? extends V> values, int priority, long expiryTimestamp) {
+        prioritiesCache.checkPriority(priority);
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+            setWithoutCheck(entry.getKey(), entry.getValue(), priority, expiryTimestamp, now);
         }
     }
 
-    private void dropElementIfCapacityIsReached() {
-        if (size() == capacity) {
-            removeExpiredItemOrItemWithLowestPriorityOrLastUsed();
+    private void setWithoutCheck(K key, V value, int priority, long expiryTimestamp, long now) {
+        admissionPolicy.record(key);
+        final int weight = Weights.weigh(weigher, key, value);
+        final ElementWithPriorityAndExpiryTimestamp<K, V> element = hashmapWithNodes.get(key);
+        boolean admitted = false;
+        if (element != null) {
+            if (totalWeight - element.getWeight() + weight <= maximumWeight) {
+                updateElementAndMoveToTheTopInCorrespondingCaches(element, value, priority, expiryTimestamp, weight);
+                return;
+            }
+            // The element is set again like a new one, so that it is not dropped to make room for itself
+            expiryTimestampsWheel.cancel(element);
+            if (weight > maximumWeight) {
+                removeItem(element, RemovalCause.TOO_HEAVY);
+                statsCounter.recordEviction(RemovalCause.TOO_HEAVY);
+                return;
+            }
+            removeItem(element, RemovalCause.REPLACED);
+            admitted = true;
+        }
+        if (weight > maximumWeight) {
+            // It would never fit
+            return;
+        }
+        if (dropElementsUntilThereIsRoom(key, weight, now, admitted)) {
+            insertToTheTop(key, value, priority, expiryTimestamp, weight);
         }
     }
 
-    private void updateElementAndMoveToTheTopInCorrespondingTreeCaches(String key, Integer updatedValue, int updatedPriority, long updatedTimestamp) {
-        final NodesPair initialNodesPair = hashmapWithNodes.get(key);
+    // An expired element makes room for any new one. Otherwise, the new one has to be admitted first, unless it
+    // already has been. Returns false if the key is not admitted, in which case only expired elements are dropped.
+    private boolean dropElementsUntilThereIsRoom(K key, int weight, long now, boolean admitted) {
+        while (size() == capacity || totalWeight + weight > maximumWeight) {
+            if (removeExpiredItemIfAny(now)) {
+                continue;
+            }
+            if (!admitted && !admissionPolicy.admit(key, prioritiesCache.peekLastElementOfLowestPriority().getKey())) {
+                return false;
+            }
+            admitted = true;
+            removeItemWithLowestPriorityOrLastUsed();
+        }
+        return true;
+    }
 
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> priorityCacheNode = initialNodesPair.getPriorityCacheNode();
-        final ElementWithPriorityAndExpiryTimestamp element = priorityCacheNode.getElement();
-        int existingPriority = element.getPriority();
-        priorityCacheNode = prioritiesCache.moveToTop(existingPriority, updatedPriority, priorityCacheNode);
+    private void updateElementAndMoveToTheTopInCorrespondingCaches(ElementWithPriorityAndExpiryTimestamp<K, V> element, V updatedValue, int updatedPriority, long updatedTimestamp, int updatedWeight) {
+        mutationJournal.recordSet(element.getKey(), updatedValue, updatedPriority, updatedTimestamp);
+        totalWeight += updatedWeight - element.getWeight();
+        element.setWeight(updatedWeight);
+        final int existingPriority = element.getPriority();
+        prioritiesCache.moveToTop(existingPriority, updatedPriority, element);
+        if (existingPriority != updatedPriority) {
+            statsCounter.recordRemoval(existingPriority);
+            statsCounter.recordInsertion(updatedPriority);
+        }
 
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> expiryCacheNode = initialNodesPair.getExpiryCacheNode();
         final long existingExpiryTimestamp = element.getExpiryTimestamp();
-        expiryCacheNode = expiryTimestampsCache.moveToTop(existingExpiryTimestamp, updatedTimestamp, expiryCacheNode);
-
+        final V previousValue = element.getValue();
         element.update(updatedValue, updatedPriority, updatedTimestamp);
+        if (existingExpiryTimestamp != updatedTimestamp) {
+            expiryTimestampsWheel.reschedule(element);
+        }
+        removalNotifier.enqueue(element.getKey(), previousValue, RemovalCause.REPLACED);
+    }
 
-        NodesPair updatedNodesPair = new NodesPair(priorityCacheNode, expiryCacheNode);
-        hashmapWithNodes.put(key, updatedNodesPair);
+    /**
+     * Removes the element of the key, if it is in the cache, whether it has expired or not.
+     * Time complexity: O(logn), or O(1) with bounded priorities
+     *
+     * @return The value of the element removed, or null if it was not in the cache
+     */
+    public V remove(K key) {
+        final ElementWithPriorityAndExpiryTimestamp<K, V> element = hashmapWithNodes.get(key);
+        if (element == null) {
+            return null;
+        }
+        expiryTimestampsWheel.cancel(element);
+        removeItem(element, RemovalCause.EXPLICIT);
+        return element.getValue();
+    }
+
+    // Tells if the expiry timestamp has passed by now, by the same rule as the elements of the cache
+    boolean hasExpired(long expiryTimestamp) {
+        return expiryTimestampsWheel.isExpired(expiryTimestamp, lruTime.getCurrentTimeToEpochMillis());
+    }
+
+    void setEvictionConsumer(Consumer<? super ElementWithPriorityAndExpiryTimestamp<K, V>> evictionConsumer) {
+        this.evictionConsumer = evictionConsumer;
+    }
+
+    // Returns the value of the key, without using it or checking its expiry timestamp
+    V peek(K key) {
+        final ElementWithPriorityAndExpiryTimestamp<K, V> element = hashmapWithNodes.get(key);
+        return element == null ? null : element.getValue();
     }
 
     public int size() {
         return hashmapWithNodes.size();
     }
 
-    private void removeExpiredItemOrItemWithLowestPriorityOrLastUsed() {
+    /**
+     * The total weight of the elements, which is their number unless the cache is bounded by weight.
+     * Expired elements are counted until they are removed.
+     */
+    public long weightedSize() {
+        return totalWeight;
+    }
+
+    /**
+     * Removes every element that has expired by now.
+     *
+     * @return The number of elements removed
+     */
+    public int cleanUp() {
+        return cleanUp(Integer.MAX_VALUE);
+    }
 
-        boolean wasItemRemoved = removeExpiredItemIfAny();
-        if (wasItemRemoved){
-            return;
+    /**
+     * Removes up to maxElements of the elements that have expired by now, so that the time spent is bounded.
+     * Time complexity: O(maxElements), plus advancing the timing wheel
+     *
+     * @return The number of elements removed. If it is maxElements, there might be more expired elements left.
+     */
+    public int cleanUp(int maxElements) {
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        expiryTimestampsWheel.advance(now);
+        int removed = 0;
+        while (removed < maxElements) {
+            final ElementWithPriorityAndExpiryTimestamp<K, V> expiredElement = expiryTimestampsWheel.pollExpired(now);
+            if (expiredElement == null) {
+                break;
+            }
+            removeItem(expiredElement, RemovalCause.EXPIRED);
+            statsCounter.recordEviction(RemovalCause.EXPIRED);
+            removed++;
         }
+        return removed;
+    }
 
-        final ElementWithPriorityAndExpiryTimestamp elementWithPriorityAndExpiryTimestamp = prioritiesCache.deleteLastElementFromCacheForKey(prioritiesCache.firstKey());
-        expiryTimestampsCache.delete(elementWithPriorityAndExpiryTimestamp.getExpiryTimestamp(),hashmapWithNodes.get(elementWithPriorityAndExpiryTimestamp.getKey()).expiryCacheNode);
+    private void removeItemWithLowestPriorityOrLastUsed() {
+        mutationJournal.recordRemoval(prioritiesCache.peekLastElementOfLowestPriority().getKey());
+        final ElementWithPriorityAndExpiryTimestamp<K, V> elementWithPriorityAndExpiryTimestamp = prioritiesCache.deleteLastElementOfLowestPriority();
+        expiryTimestampsWheel.cancel(elementWithPriorityAndExpiryTimestamp);
         hashmapWithNodes.remove(elementWithPriorityAndExpiryTimestamp.getKey());
+        totalWeight -= elementWithPriorityAndExpiryTimestamp.getWeight();
+        final RemovalCause cause = causeOfEviction(elementWithPriorityAndExpiryTimestamp.getPriority());
+        statsCounter.recordEviction(cause);
+        statsCounter.recordRemoval(elementWithPriorityAndExpiryTimestamp.getPriority());
+        removalNotifier.enqueue(elementWithPriorityAndExpiryTimestamp.getKey(), elementWithPriorityAndExpiryTimestamp.getValue(), cause);
+        evictionConsumer.accept(elementWithPriorityAndExpiryTimestamp);
+    }
+
+    // The priority decided which element was dropped, only if elements with a higher priority were kept
+    private RemovalCause causeOfEviction(int priorityOfDroppedElement) {
+        if (!prioritiesCache.isEmpty() && prioritiesCache.highestPriority() > priorityOfDroppedElement) {
+            return RemovalCause.LOWEST_PRIORITY;
+        }
+        return RemovalCause.LEAST_RECENTLY_USED;
     }
 
-    private boolean removeExpiredItemIfAny() {
-        if (expiryTimestampsCache.isEmpty()){
+    private boolean removeExpiredItemIfAny(long now) {
+        expiryTimestampsWheel.advance(now);
+        final ElementWithPriorityAndExpiryTimestamp<K, V> expiredElement = expiryTimestampsWheel.pollExpired(now);
+        if (expiredElement == null) {
             return false;
         }
 
-        final Long lowestExpiryTimestamp = expiryTimestampsCache.firstKey();
-        if (lowestExpiryTimestamp < lruTime.getCurrentTimeToEpochMillis() ){
-            removeExpiredItem(lowestExpiryTimestamp);
-            return true;
+        removeItem(expiredElement, RemovalCause.EXPIRED);
+        statsCounter.recordEviction(RemovalCause.EXPIRED);
+        return true;
+    }
+
+    // The element must already be out of the timing wheel
+    private void removeItem(ElementWithPriorityAndExpiryTimestamp<K, V> element, RemovalCause cause) {
+        mutationJournal.recordRemoval(element.getKey());
+        prioritiesCache.delete(element.getPriority(), element);
+        hashmapWithNodes.remove(element.getKey());
+        totalWeight -= element.getWeight();
+        statsCounter.recordRemoval(element.getPriority());
+        removalNotifier.enqueue(element.getKey(), element.getValue(), cause);
+    }
+
+    private void insertToTheTop(K key, V value, int priority, long expiryTimestamp, int weight) {
+        mutationJournal.recordSet(key, value, priority, expiryTimestamp);
+        final ElementWithPriorityAndExpiryTimestamp<K, V> elementWithPriorityAndExpiryTimestamp = new ElementWithPriorityAndExpiryTimestamp<>(key, value, priority, expiryTimestamp);
+        elementWithPriorityAndExpiryTimestamp.setWeight(weight);
+        totalWeight += weight;
+        prioritiesCache.insertNodeToTheTop(priority, elementWithPriorityAndExpiryTimestamp);
+        expiryTimestampsWheel.schedule(elementWithPriorityAndExpiryTimestamp);
+
+        hashmapWithNodes.put(key, elementWithPriorityAndExpiryTimestamp);
+        statsCounter.recordInsertion(priority);
+    }
+
+    /**
+     * Starts recording the hits, misses, evictions, elements per priority and loads of the cache in the given counter,
+     * which can be shared with other caches. By default, the cache records nothing.
+     * The elements already in the cache are counted in their priority. Time complexity: O(n)
+     */
+    public void setStatsCounter(StatsCounter statsCounter) {
+        this.statsCounter = statsCounter;
+        for (ElementWithPriorityAndExpiryTimestamp<K, V> element : hashmapWithNodes.values()) {
+            statsCounter.recordInsertion(element.getPriority());
         }
-        return false;
     }
 
-    private void removeExpiredItem(Long lowestExpiryTimestamp) {
-        final ElementWithPriorityAndExpiryTimestamp elementWithPriorityAndExpiryTimestamp = expiryTimestampsCache.deleteLastElementFromCacheForKey(lowestExpiryTimestamp);
+    /**
+     * Makes the cache ask the given policy before dropping an element for a new one, e.g. a
+     * {@link TinyLfuAdmissionPolicy}. An expired element is always dropped first, without asking. Otherwise the new
+     * element is compared with the one that would be dropped, the Least Recently Used element of the lowest priority,
+     * whatever their priorities. A new element the policy does not admit is not cached, and nothing is dropped.
+     * By default, every new element is admitted.
+     */
+    public void setAdmissionPolicy(AdmissionPolicy<? super K> admissionPolicy) {
+        this.admissionPolicy = admissionPolicy;
+    }
+
+    /**
+     * Starts recording every element set with its priority and expiry timestamp, removed, evicted and expired in the
+     * given journal, e.g. a {@link FileMutationJournal}, before changing the cache, so that it can be recovered after
+     * a crash. The elements already in the cache are not recorded: a recovered snapshot is restored first, which skips
+     * the elements that have expired in the meantime, and the journal set after. By default, nothing is recorded.
+     */
+    public void setMutationJournal(MutationJournal<? super K, ? super V> mutationJournal) {
+        this.mutationJournal = mutationJournal;
+    }
+
+    /**
+     * Tells the listener about every element removed from the cache, with its key, value and {@link RemovalCause}:
+     * elements that expired, whether a get, a clean up or a set found them, elements dropped to make
+     * capacity, elements removed with remove, and the previous values of the elements set again.
+     * The removals are queued, and delivered in batches on the executor, in the order they happened, so the listener
+     * never runs on the thread that changes the cache. If the executor rejects the delivery, the removals queued until
+     * then are dropped. By default, nothing is reported, and nothing is queued.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener, Executor executor) {
+        this.removalNotifier = new BatchingRemovalNotifier<>(removalListener, executor);
+    }
 
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> node = hashmapWithNodes.get(elementWithPriorityAndExpiryTimestamp.getKey()).getPriorityCacheNode();
-        int priority = node.getElement().getPriority();
-        prioritiesCache.delete(priority, node);
-        hashmapWithNodes.remove(node.getElement().getKey());
+    /**
+     * The same as above, delivering the removals on the executor the caches load values on by default.
+     */
+    public void setRemovalListener(RemovalListener<? super K, ? super V> removalListener) {
+        setRemovalListener(removalListener, DefaultLoaderExecutor.INSTANCE);
     }
 
-    private void insertToTheTop(String key, Integer value, int priority, long expiryTimestamp) {
-        final ElementWithPriorityAndExpiryTimestamp elementWithPriorityAndExpiryTimestamp = new ElementWithPriorityAndExpiryTimestamp(key, value, priority, expiryTimestamp);
-        final DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> priorityCacheNode = prioritiesCache.insertToTheTop(priority, elementWithPriorityAndExpiryTimestamp);
-        final DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> expiryDatetimeCacheNode = expiryTimestampsCache.insertToTheTop(expiryTimestamp, elementWithPriorityAndExpiryTimestamp);
+    /**
+     * Bounds the cache by the total weight of its elements, as the weigher weighs them, as well as by its capacity.
+     * The elements are dropped in the usual order, expired elements first, then the Least Recently Used element of the
+     * lowest priority, until a new one fits, and an update that makes an element heavier drops other elements, never
+     * the element itself. An element heavier than maximumWeight is never cached: setting it removes the previous value
+     * of its key, if any. With an admission policy, a new element is only compared with the first element that would
+     * be dropped for it, other than the expired ones.
+     * The elements already in the cache are weighed, and dropped until they fit. Time complexity: O(n)
+     */
+    public void setMaximumWeight(long maximumWeight, Weigher<? super K, ? super V> weigher) {
+        Weights.checkMaximumWeight(maximumWeight);
+        // Every element is weighed before any is changed, so that a weigher that throws leaves the cache as it was
+        final int[] weights = new int[size()];
+        int i = 0;
+        for (ElementWithPriorityAndExpiryTimestamp<K, V> element : hashmapWithNodes.values()) {
+            weights[i++] = Weights.weigh(weigher, element.getKey(), element.getValue());
+        }
+        i = 0;
+        totalWeight = 0;
+        for (ElementWithPriorityAndExpiryTimestamp<K, V> element : hashmapWithNodes.values()) {
+            element.setWeight(weights[i]);
+            totalWeight += weights[i++];
+        }
+        this.weigher = weigher;
+        this.maximumWeight = maximumWeight;
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        while (totalWeight > maximumWeight) {
+            if (!removeExpiredItemIfAny(now)) {
+                removeItemWithLowestPriorityOrLastUsed();
+            }
+        }
+    }
+
+    /**
+     * Takes a snapshot of the elements that have not expired, with their priorities and expiry timestamps, in the
+     * order they would be dropped in, e.g. to write it to a file before a restart with {@link CacheSnapshot#writeTo}.
+     * Only the references are copied. Time complexity: O(n)
+     */
+    public CacheSnapshot<K, V> snapshot() {
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        final CacheSnapshot<K, V> snapshot = new CacheSnapshot<>(size(), true, true);
+        prioritiesCache.forEachFromLast(element -> {
+            if (!expiryTimestampsWheel.isExpired(element.getExpiryTimestamp(), now)) {
+                snapshot.add(element.getKey(), element.getValue(), element.getPriority(), element.getExpiryTimestamp());
+            }
+        });
+        return snapshot;
+    }
+
+    /**
+     * Sets the elements of the snapshot with their priorities and expiry timestamps, as if set was called for each
+     * one in order, so that the snapshot of a cache with the same capacity comes back in the same LRU order in each
+     * priority. The elements that have expired since the snapshot was taken, e.g. while the process was down, are
+     * skipped. Every priority is checked, and the time is read, once before anything is set.
+     * Time complexity: O(k logn), or O(k) with bounded priorities
+     *
+     * @throws IllegalArgumentException If the snapshot has no priorities or expiry timestamps, or a priority is not allowed
+     */
+    public void restore(CacheSnapshot<? extends K, ? extends V> snapshot) {
+        if (!snapshot.hasPriorities() || !snapshot.hasExpiryTimestamps()) {
+            throw new IllegalArgumentException("The snapshot has no priorities or no expiry timestamps");
+        }
+        for (int i = 0; i < snapshot.size(); i++) {
+            prioritiesCache.checkPriority(snapshot.priorityAt(i));
+        }
+        final long now = lruTime.getCurrentTimeToEpochMillis();
+        for (int i = 0; i < snapshot.size(); i++) {
+            if (!expiryTimestampsWheel.isExpired(snapshot.expiryTimestampAt(i), now)) {
+                setWithoutCheck(snapshot.keyAt(i), snapshot.valueAt(i), snapshot.priorityAt(i), snapshot.expiryTimestampAt(i), now);
+            }
+        }
+    }
 
-        final NodesPair nodesPair = new NodesPair(priorityCacheNode, expiryDatetimeCacheNode);
-        hashmapWithNodes.put(key, nodesPair);
+    public CacheStats stats() {
+        return statsCounter.snapshot();
     }
 
     @Override
@@ -164,14 +493,14 @@ public class LRUCacheWithPrioritiesAndExpiryTimestamps {
         sb.append(newLine);
         sb.append("===============");
         sb.append(newLine);
-        sb.append(expiryTimestampsCache.toString());
+        sb.append(expiryTimestampsWheel.toString());
 
         return sb.toString();
     }
 
     public static void main(String[] args) {
         final LRUTimeForTests lruTimeForTests = new LRUTimeForTests();
-        LRUCacheWithPrioritiesAndExpiryTimestamps lruCacheWithPrioritiesAndExpiryTimestamps = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> lruCacheWithPrioritiesAndExpiryTimestamps = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         System.out.println(lruCacheWithPrioritiesAndExpiryTimestamps);
         lruCacheWithPrioritiesAndExpiryTimestamps.set("A", 1, 7, 8000);
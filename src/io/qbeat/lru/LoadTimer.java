@@ -0,0 +1,28 @@
+package io.qbeat.lru;
+
+import java.util.function.Function;
+
+// Loads the values of the read-through gets, and records the load time and outcome
+final class LoadTimer {
+
+    private LoadTimer() {
+    }
+
+    static <K, V> V load(K key, Function<? super K, ? extends V> loader, StatsCounter statsCounter) {
+        final long start = System.nanoTime();
+        final V value;
+        try {
+            value = loader.apply(key);
+        } catch (RuntimeException | Error e) {
+            statsCounter.recordLoadFailure(System.nanoTime() - start);
+            throw e;
+        }
+        final long loadTimeNanos = System.nanoTime() - start;
+        if (value == null) {
+            statsCounter.recordLoadFailure(loadTimeNanos);
+        } else {
+            statsCounter.recordLoadSuccess(loadTimeNanos);
+        }
+        return value;
+    }
+}
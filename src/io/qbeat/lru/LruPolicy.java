@@ -0,0 +1,48 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * Drops the Least Recently Used element. The elements are kept in a single list, most recently used first.
+ */
+public class LruPolicy<K, V> implements EvictionPolicy<K, V> {
+    // We need this, for the ordering of our list. The DoubleLinkedList is the perfect structure since we could:
+    // Add an element on the top or tail in constant time.
+    // Move an element to the top of the list, given that we have the node, again in constant time
+    private final DoubleLinkedList<Element<K, V>> orderedCache = new DoubleLinkedList<>();
+
+    @Override
+    public DoubleLinkedListNode<Element<K, V>> insert(Element<K, V> element, boolean afterEviction) {
+        return orderedCache.putFirst(element);
+    }
+
+    @Override
+    public void recordAccess(DoubleLinkedListNode<Element<K, V>> node) {
+        orderedCache.moveToTheTop(node);
+    }
+
+    @Override
+    public void remove(DoubleLinkedListNode<Element<K, V>> node) {
+        orderedCache.remove(node);
+    }
+
+    @Override
+    public Element<K, V> victim(K candidate) {
+        return orderedCache.peekLast();
+    }
+
+    @Override
+    public Element<K, V> evict(K candidate, boolean firstEviction) {
+        return orderedCache.removeLast();
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super Element<K, V>> action) {
+        orderedCache.forEachFromLast(action);
+    }
+
+    @Override
+    public String toString() {
+        return orderedCache.toString();
+    }
+}
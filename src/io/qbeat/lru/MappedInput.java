@@ -0,0 +1,80 @@
+package io.qbeat.lru;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Reads a file through memory-mapped regions, one after the other, the counterpart of MappedOutput
+final class MappedInput {
+    private final FileChannel channel;
+    private final long length;
+    private final int regionSize;
+    private long regionStart = 0;
+    private MappedByteBuffer region;
+
+    MappedInput(FileChannel channel, int regionSize) throws IOException {
+        this.channel = channel;
+        this.length = channel.size();
+        this.regionSize = regionSize;
+        this.region = map(0);
+    }
+
+    // The bytes not read yet
+    long remaining() {
+        return length - regionStart - region.position();
+    }
+
+    byte getByte() throws IOException {
+        ensureRemaining();
+        return region.get();
+    }
+
+    int getInt() throws IOException {
+        if (region.remaining() >= Integer.BYTES) {
+            return region.getInt();
+        }
+        int value = 0;
+        for (int i = 0; i < Integer.BYTES; i++) {
+            value = (value << 8) | (getByte() & 0xFF);
+        }
+        return value;
+    }
+
+    long getLong() throws IOException {
+        if (region.remaining() >= Long.BYTES) {
+            return region.getLong();
+        }
+        return ((long) getInt() << 32) | (getInt() & 0xFFFFFFFFL);
+    }
+
+    byte[] get(int count) throws IOException {
+        if (count > remaining()) {
+            throw new EOFException("Reading " + count + " bytes, but only " + remaining() + " are left");
+        }
+        byte[] bytes = new byte[count];
+        int offset = 0;
+        while (offset < count) {
+            ensureRemaining();
+            int chunk = Math.min(region.remaining(), count - offset);
+            region.get(bytes, offset, chunk);
+            offset += chunk;
+        }
+        return bytes;
+    }
+
+    private void ensureRemaining() throws IOException {
+        if (!region.hasRemaining()) {
+            long next = regionStart + region.capacity();
+            if (next >= length) {
+                throw new EOFException("Reading past the " + length + " bytes of the file");
+            }
+            region = map(next);
+        }
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        regionStart = start;
+        return channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(regionSize, length - start));
+    }
+}
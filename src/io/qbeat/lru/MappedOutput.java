@@ -0,0 +1,79 @@
+package io.qbeat.lru;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+// Writes a file of a known length through memory-mapped regions, one after the other, so that the file is not limited
+// to the 2GB of a single MappedByteBuffer. A value can span two regions.
+final class MappedOutput {
+    static final int DEFAULT_REGION_SIZE = 1 << 30;
+
+    private final FileChannel channel;
+    private final long length;
+    private final int regionSize;
+    private long regionStart = 0;
+    private MappedByteBuffer region;
+
+    MappedOutput(FileChannel channel, long length, int regionSize) throws IOException {
+        this.channel = channel;
+        this.length = length;
+        this.regionSize = regionSize;
+        this.region = map(0);
+    }
+
+    void putByte(byte value) throws IOException {
+        ensureRemaining();
+        region.put(value);
+    }
+
+    // Big-endian, as the buffers are
+    void putInt(int value) throws IOException {
+        if (region.remaining() >= Integer.BYTES) {
+            region.putInt(value);
+            return;
+        }
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            putByte((byte) (value >>> shift));
+        }
+    }
+
+    void putLong(long value) throws IOException {
+        if (region.remaining() >= Long.BYTES) {
+            region.putLong(value);
+            return;
+        }
+        putInt((int) (value >>> 32));
+        putInt((int) value);
+    }
+
+    void put(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensureRemaining();
+            int chunk = Math.min(region.remaining(), bytes.length - offset);
+            region.put(bytes, offset, chunk);
+            offset += chunk;
+        }
+    }
+
+    // Flushes the last region to the file. The previous ones are flushed as they are left.
+    void force() {
+        region.force();
+    }
+
+    private void ensureRemaining() throws IOException {
+        if (!region.hasRemaining()) {
+            region.force();
+            region = map(regionStart + region.capacity());
+        }
+    }
+
+    private MappedByteBuffer map(long start) throws IOException {
+        if (start >= length) {
+            throw new IOException("Writing past the " + length + " bytes of the file");
+        }
+        regionStart = start;
+        return channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(regionSize, length - start));
+    }
+}
@@ -0,0 +1,26 @@
+package io.qbeat.lru;
+
+/**
+ * Records every change of a cache, so that it can be persisted and replayed after a crash: each element set, with its
+ * priority and expiry timestamp, and each element removed, evicted or expired. The caches call the journal before
+ * changing, so a journal that throws leaves the change undone, except for the evictions of an {@link LRUCache},
+ * which are recorded once its eviction policy has picked and dropped the element. The reads are not recorded.
+ * A cache records nothing until it is given a journal other than {@link #disabled()}, e.g. a
+ * {@link FileMutationJournal}. A journal is used by a single cache.
+ */
+public interface MutationJournal<K, V> {
+    // The priority recorded by the caches without priorities
+    int NO_PRIORITY = 0;
+    // The expiry timestamp recorded by the caches without expiry timestamps
+    long NO_EXPIRY_TIMESTAMP = Long.MAX_VALUE;
+
+    void recordSet(K key, V value, int priority, long expiryTimestamp);
+
+    void recordRemoval(K key);
+
+    // Records nothing. Its calls are empty, so the JIT compiler removes them from the caches that use it.
+    @SuppressWarnings("unchecked")
+    static <K, V> MutationJournal<K, V> disabled() {
+        return (MutationJournal<K, V>) DisabledMutationJournal.INSTANCE;
+    }
+}
@@ -0,0 +1,269 @@
+package io.qbeat.lru;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.function.LongToIntFunction;
+
+public class OffHeapLongIntLRUCache implements AutoCloseable {
+
+    private static final int NONE = -1;
+    private static final int EMPTY = 0;
+
+    // Layout of a slot: key (8 bytes), value (4), previous slot (4), next slot (4), padding (4)
+    private static final int KEY_OFFSET = 0;
+    private static final int VALUE_OFFSET = 8;
+    private static final int PREVIOUS_OFFSET = 12;
+    private static final int NEXT_OFFSET = 16;
+    private static final int SLOT_SIZE = 24;
+
+    private final int capacity;
+    private final int missingValue;
+    private final int mask;
+
+    // The entries and the links of the ordered list, one slot per entry
+    private ByteBuffer slots;
+    // Open addressing hash table holding (slot + 1), so that 0 marks an empty bucket
+    private ByteBuffer table;
+
+    private int size = 0;
+    private int head = NONE;
+    private int tail = NONE;
+
+    /**
+     * An implementation of the Last Recently Used (LRU) Cache, for long keys and int values,
+     * with the same contract as {@link LongIntLRUCache}, but with all of its state in native memory:
+     * the hash index, the links of the ordered list, the keys and the values live in direct buffers,
+     * so the heap footprint (and the GC work) does not grow with the capacity.
+     * Both Set and Get methods require a constant time
+     * Does not support concurrency, priorities or expiry date.
+     * The cache must be closed, once it is no longer needed. On Java 17, without the Foreign Memory API, close does
+     * not free the native memory right away: it only releases the direct buffers to the garbage collector, which frees
+     * their memory once it collects them, as with {@link TieredLRUCache#close()}.
+     * The slots are kept in a single direct buffer of at most 2GB, so the capacity is at most about 89 million entries
+     * ({@link Integer#MAX_VALUE} / 24 bytes per slot).
+     *
+     * @param capacity     The capacity the Cache should have
+     * @param missingValue The value that get returns, when the key is not in the cache
+     */
+    public OffHeapLongIntLRUCache(int capacity, int missingValue) {
+        long tableSize = 2;
+        // Keep the load factor at or below 0.5, so that probe sequences stay short
+        while (tableSize < 2L * capacity) {
+            tableSize <<= 1;
+        }
+        if ((long) capacity * SLOT_SIZE > Integer.MAX_VALUE || tableSize * Integer.BYTES > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Capacity " + capacity + " does not fit in a direct buffer");
+        }
+        this.capacity = capacity;
+        this.missingValue = missingValue;
+        this.mask = (int) tableSize - 1;
+        this.slots = ByteBuffer.allocateDirect(capacity * SLOT_SIZE).order(ByteOrder.nativeOrder());
+        // Direct buffers are zeroed, so every bucket starts empty
+        this.table = ByteBuffer.allocateDirect((int) tableSize * Integer.BYTES).order(ByteOrder.nativeOrder());
+    }
+
+    public OffHeapLongIntLRUCache(int capacity) {
+        this(capacity, LongIntLRUCache.DEFAULT_MISSING_VALUE);
+    }
+
+    // Time complexity: O(1)
+    public int get(long key) {
+        ensureOpen();
+        int slot = findSlot(key);
+        if (slot == NONE) {
+            return missingValue;
+        }
+
+        moveToTheTop(slot);
+        return slots.getInt(slot * SLOT_SIZE + VALUE_OFFSET);
+    }
+
+    /**
+     * Gets the value of the key, and if it is not in the cache, loads it and sets it.
+     * If the loader throws, nothing is cached, and the exception is thrown.
+     * Time complexity: O(1), plus the load
+     */
+    public int get(long key, LongToIntFunction loader) {
+        ensureOpen();
+        int slot = findSlot(key);
+        if (slot != NONE) {
+            moveToTheTop(slot);
+            return slots.getInt(slot * SLOT_SIZE + VALUE_OFFSET);
+        }
+        int value = loader.applyAsInt(key);
+        set(key, value);
+        return value;
+    }
+
+    public boolean containsKey(long key) {
+        ensureOpen();
+        return findSlot(key) != NONE;
+    }
+
+    // Time complexity: O(1)
+    public void set(long key, int value) {
+        ensureOpen();
+        int slot = findSlot(key);
+        if (slot != NONE) {
+            slots.putInt(slot * SLOT_SIZE + VALUE_OFFSET, value);
+            moveToTheTop(slot);
+            return;
+        }
+
+        if (size == capacity) {
+            // Drop element to make capacity. Its slot is the one that the new element will take.
+            slot = tail;
+            removeFromTable(slot);
+            unlink(slot);
+        } else {
+            slot = size++;
+        }
+        slots.putLong(slot * SLOT_SIZE + KEY_OFFSET, key);
+        slots.putInt(slot * SLOT_SIZE + VALUE_OFFSET, value);
+        insertToTable(slot);
+        linkFirst(slot);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Releases the native memory of the cache. Any further call to get or set fails.
+     * The buffers are handed over to the garbage collector, which frees their memory once it collects them, not
+     * necessarily on its next cycle.
+     */
+    @Override
+    public void close() {
+        slots = null;
+        table = null;
+        size = 0;
+        head = NONE;
+        tail = NONE;
+    }
+
+    private void ensureOpen() {
+        if (slots == null) {
+            throw new IllegalStateException("Cache is closed");
+        }
+    }
+
+    private long keyAt(int slot) {
+        return slots.getLong(slot * SLOT_SIZE + KEY_OFFSET);
+    }
+
+    private int previousOf(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + PREVIOUS_OFFSET);
+    }
+
+    private int nextOf(int slot) {
+        return slots.getInt(slot * SLOT_SIZE + NEXT_OFFSET);
+    }
+
+    private void setPrevious(int slot, int previous) {
+        slots.putInt(slot * SLOT_SIZE + PREVIOUS_OFFSET, previous);
+    }
+
+    private void setNext(int slot, int next) {
+        slots.putInt(slot * SLOT_SIZE + NEXT_OFFSET, next);
+    }
+
+    private int bucketAt(int bucket) {
+        return table.getInt(bucket * Integer.BYTES);
+    }
+
+    private void setBucket(int bucket, int value) {
+        table.putInt(bucket * Integer.BYTES, value);
+    }
+
+    private int findSlot(long key) {
+        for (int bucket = hash(key) & mask; bucketAt(bucket) != EMPTY; bucket = (bucket + 1) & mask) {
+            int slot = bucketAt(bucket) - 1;
+            if (keyAt(slot) == key) {
+                return slot;
+            }
+        }
+        return NONE;
+    }
+
+    private void insertToTable(int slot) {
+        int bucket = hash(keyAt(slot)) & mask;
+        while (bucketAt(bucket) != EMPTY) {
+            bucket = (bucket + 1) & mask;
+        }
+        setBucket(bucket, slot + 1);
+    }
+
+    private void removeFromTable(int slot) {
+        int bucket = hash(keyAt(slot)) & mask;
+        while (bucketAt(bucket) != slot + 1) {
+            bucket = (bucket + 1) & mask;
+        }
+        // Shift back the elements that follow, so that no lookup stops early on the bucket that we have just emptied
+        int current = (bucket + 1) & mask;
+        while (bucketAt(current) != EMPTY) {
+            int home = hash(keyAt(bucketAt(current) - 1)) & mask;
+            if (((current - home) & mask) >= ((current - bucket) & mask)) {
+                setBucket(bucket, bucketAt(current));
+                bucket = current;
+            }
+            current = (current + 1) & mask;
+        }
+        setBucket(bucket, EMPTY);
+    }
+
+    private void moveToTheTop(int slot) {
+        if (slot == head) {
+            return;
+        }
+        unlink(slot);
+        linkFirst(slot);
+    }
+
+    private void linkFirst(int slot) {
+        setPrevious(slot, NONE);
+        setNext(slot, head);
+        if (head == NONE) {
+            tail = slot;
+        } else {
+            setPrevious(head, slot);
+        }
+        head = slot;
+    }
+
+    private void unlink(int slot) {
+        int previous = previousOf(slot);
+        int next = nextOf(slot);
+        if (previous == NONE) {
+            head = next;
+        } else {
+            setNext(previous, next);
+        }
+        if (next == NONE) {
+            tail = previous;
+        } else {
+            setPrevious(next, previous);
+        }
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        if (slots == null) {
+            return "Cache is closed";
+        }
+        if (head == NONE) {
+            return "List is empty";
+        }
+        StringBuilder sb = new StringBuilder();
+        sb.append("Elements: ");
+        for (int slot = head; slot != NONE; slot = nextOf(slot)) {
+            sb.append("{").append(keyAt(slot)).append(",").append(slots.getInt(slot * SLOT_SIZE + VALUE_OFFSET)).append("}");
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,42 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * The elements of a cache with priorities, kept in one {@link DoubleLinkedList} per priority, most recently used first.
+ * The lowest priority with at least one element is always known, so that the element to evict can be found.
+ * See {@link TreePriorityBuckets} for any int priority, and {@link BitmapPriorityBuckets} for small non-negative ones.
+ */
+public interface PriorityBuckets<E> {
+
+    // Throws an IllegalArgumentException if the priority is not allowed, so that it can be checked before evicting
+    default void checkPriority(int priority) {
+    }
+
+    DoubleLinkedListNode<E> insertToTheTop(int priority, E element);
+
+    // Inserts a node that is not in any list, e.g. an element that is its own node
+    void insertNodeToTheTop(int priority, DoubleLinkedListNode<E> node);
+
+    void delete(int priority, DoubleLinkedListNode<E> node);
+
+    // The node is moved as it is, without allocating, so it stays the node of its element
+    void moveToTop(int currentPriority, int updatedPriority, DoubleLinkedListNode<E> node);
+
+    void moveToTopForPriority(int priority, DoubleLinkedListNode<E> node);
+
+    // Removes the Least Recently Used element of the lowest priority. The buckets must not be empty.
+    E deleteLastElementOfLowestPriority();
+
+    // The element deleteLastElementOfLowestPriority() would remove, left in place. The buckets must not be empty.
+    E peekLastElementOfLowestPriority();
+
+    // The elements in the order they would be removed in: lowest priority first, Least Recently Used first
+    void forEachFromLast(Consumer<? super E> action);
+
+    int lowestPriority();
+
+    int highestPriority();
+
+    boolean isEmpty();
+}
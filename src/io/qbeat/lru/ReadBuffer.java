@@ -0,0 +1,59 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lossy ring buffer that many threads offer to, and a single thread (the one holding the lock of the cache)
+ * drains. When the buffer is full, or when another thread wins the race for the same position, the offered element
+ * is simply dropped: the buffer records accesses, and losing a few of them only makes the LRU order a bit less exact.
+ */
+class ReadBuffer<T> {
+    static final int FAILED = -1;
+
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    private final AtomicLong writeCounter = new AtomicLong();
+    // Only ever written by the draining thread
+    private volatile long readCounter = 0;
+
+    ReadBuffer(int size) {
+        int capacity = 1;
+        while (capacity < size) {
+            capacity <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    // Returns the number of elements waiting to be drained, or FAILED if the element was dropped
+    int offer(T element) {
+        long head = readCounter;
+        long tail = writeCounter.get();
+        if (tail - head > mask) {
+            return FAILED;
+        }
+        if (!writeCounter.compareAndSet(tail, tail + 1)) {
+            return FAILED;
+        }
+        buffer.lazySet((int) (tail & mask), element);
+        return (int) (tail + 1 - head);
+    }
+
+    void drainTo(Consumer<T> consumer) {
+        long head = readCounter;
+        long tail = writeCounter.get();
+        for (; head < tail; head++) {
+            int index = (int) (head & mask);
+            T element = buffer.get(index);
+            if (element == null) {
+                // The writer has claimed the position, but has not stored its element yet
+                break;
+            }
+            buffer.lazySet(index, null);
+            consumer.accept(element);
+        }
+        readCounter = head;
+    }
+}
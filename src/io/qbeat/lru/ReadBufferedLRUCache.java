@@ -0,0 +1,251 @@
+package io.qbeat.lru;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class ReadBufferedLRUCache<K, V> {
+
+    public static final int DEFAULT_BUFFER_SIZE = 32;
+    public static final int DEFAULT_DRAIN_THRESHOLD = 16;
+
+    private final int capacity;
+    private final int drainThreshold;
+    private final ReadBuffer<DoubleLinkedListNode<Element<K, V>>>[] readBuffers;
+
+    /**
+     * A thread-safe Last Recently Used (LRU) Cache, where reads do not take a lock.
+     * A get looks the element up in a concurrent hash map and records the access in a ring buffer.
+     * The buffers are striped by thread and drained in batches by whichever thread gets the lock first,
+     * which then moves the recorded elements on the top of the list. A thread that does not get the lock carries on.
+     * When a buffer is full, accesses are dropped, so under heavy contention the order is only approximately LRU.
+     * Set takes the lock, drains the buffers and behaves like {@link LRUCache#set}.
+     * Both Set and Get methods require a constant time
+     * Does not support priorities or expiry date.
+     *
+     * @param capacity       The capacity the Cache should have
+     * @param stripeCount    The number of read buffers. Threads are spread over them, to avoid contending on one buffer.
+     * @param bufferSize     The number of accesses each read buffer can hold, before it starts dropping them
+     * @param drainThreshold The number of pending accesses in a read buffer, that makes a get try to drain the buffers.
+     *                       1 drains on every get; bufferSize only drains when a buffer is full.
+     */
+    @SuppressWarnings("unchecked")
+    public ReadBufferedLRUCache(int capacity, int stripeCount, int bufferSize, int drainThreshold) {
+        if (stripeCount < 1 || bufferSize < 1 || drainThreshold < 1 || drainThreshold > bufferSize) {
+            throw new IllegalArgumentException("Expected 1 <= drainThreshold <= bufferSize and at least one stripe, but got "
+                    + stripeCount + " stripes, buffer size " + bufferSize + " and drain threshold " + drainThreshold);
+        }
+        this.capacity = capacity;
+        this.drainThreshold = drainThreshold;
+        int stripes = 1;
+        while (stripes < stripeCount) {
+            stripes <<= 1;
+        }
+        this.readBuffers = (ReadBuffer<DoubleLinkedListNode<Element<K, V>>>[]) new ReadBuffer<?>[stripes];
+        for (int i = 0; i < stripes; i++) {
+            readBuffers[i] = new ReadBuffer<>(bufferSize);
+        }
+    }
+
+    public ReadBufferedLRUCache(int capacity) {
+        this(capacity, Runtime.getRuntime().availableProcessors(), DEFAULT_BUFFER_SIZE, DEFAULT_DRAIN_THRESHOLD);
+    }
+
+    // We need this, in order to be able to find an element in our cache in constant O(1) time, without a lock
+    private final ConcurrentHashMap<K, DoubleLinkedListNode<Element<K, V>>> hashmapWithNodes = new ConcurrentHashMap<>();
+    // Only ever modified while holding the evictionLock
+    private final DoubleLinkedList<Element<K, V>> orderedCache = new DoubleLinkedList<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Consumer<DoubleLinkedListNode<Element<K, V>>> applyAccess = this::moveToTheTopIfStillCached;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+
+    // Time complexity: O(1)
+    public V get(K key) {
+        DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(key);
+        if (node == null) {
+            return null;
+        }
+
+        recordAccess(node);
+        return node.getElement().getValue();
+    }
+
+    // Time complexity: O(1), plus draining the pending accesses
+    public void set(K key, V value) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            DoubleLinkedListNode<Element<K, V>> existingNode = hashmapWithNodes.get(key);
+            if (existingNode != null) {
+                // Elements are replaced rather than updated, since readers see them without holding the lock
+                orderedCache.remove(existingNode);
+            } else if (size() == capacity) {
+                // Drop element to make capacity
+                removeLast();
+            }
+            insertToTheTop(key, value);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it.
+     * When several threads miss on the same key at the same time, only one of them calls the loader, and the others
+     * wait for its result. A null value is returned, but not cached. If the loader throws, nothing is cached, and the
+     * exception is thrown to all the threads waiting for that load.
+     * Time complexity: O(1) on a hit, plus the load on a miss
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        V value = get(key);
+        if (value != null) {
+            return value;
+        }
+        return loads.load(key, k -> {
+            // Another thread might have loaded it, just before this load started
+            V loadedValue = get(k);
+            if (loadedValue == null) {
+                loadedValue = loader.apply(k);
+                if (loadedValue != null) {
+                    set(k, loadedValue);
+                }
+            }
+            return loadedValue;
+        });
+    }
+
+    /**
+     * Gets the elements of the given keys that are in the cache, without waiting for the lock.
+     * If the lock is free, the accesses of the whole batch are applied at once while holding it, instead of going
+     * through the read buffers.
+     * Time complexity: O(k), for k keys
+     *
+     * @return The keys that were found, with their values
+     */
+    public Map<K, V> getAll(Collection<? extends K> keys) {
+        Map<K, V> values = new HashMap<>();
+        List<DoubleLinkedListNode<Element<K, V>>> nodes = new ArrayList<>();
+        for (K key : keys) {
+            DoubleLinkedListNode<Element<K, V>> node = hashmapWithNodes.get(key);
+            if (node != null) {
+                nodes.add(node);
+                values.put(key, node.getElement().getValue());
+            }
+        }
+
+        if (evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+                nodes.forEach(applyAccess);
+            } finally {
+                evictionLock.unlock();
+            }
+        } else {
+            nodes.forEach(this::recordAccess);
+        }
+        return values;
+    }
+
+    /**
+     * Sets all the given elements, taking the lock once for the whole batch, with the same result as calling set for
+     * each one in order. The elements to drop are only dropped once the whole batch is in, see {@link LRUCache#setAll}.
+     * Time complexity: O(k), for k elements, plus draining the pending accesses
+     */
+    public void setAll(Map<? extends K, ? extends V> values) {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+            for (Map.Entry<? extends K, ? extends V> entry : values.entrySet()) {
+                DoubleLinkedListNode<Element<K, V>> existingNode = hashmapWithNodes.get(entry.getKey());
+                if (existingNode != null) {
+                    orderedCache.remove(existingNode);
+                }
+                insertToTheTop(entry.getKey(), entry.getValue());
+            }
+            while (size() > capacity) {
+                removeLast();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * Applies all the accesses that are pending in the read buffers, waiting for the lock if needed.
+     */
+    public void cleanUp() {
+        evictionLock.lock();
+        try {
+            drainReadBuffers();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    public int size() {
+        return hashmapWithNodes.size();
+    }
+
+    private void recordAccess(DoubleLinkedListNode<Element<K, V>> node) {
+        ReadBuffer<DoubleLinkedListNode<Element<K, V>>> readBuffer = readBuffers[stripeOfCurrentThread()];
+        int pending = readBuffer.offer(node);
+        if (pending == ReadBuffer.FAILED || pending >= drainThreshold) {
+            tryToDrainReadBuffers();
+        }
+    }
+
+    private int stripeOfCurrentThread() {
+        long id = Thread.currentThread().getId();
+        int h = (int) (id ^ (id >>> 32)) * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (readBuffers.length - 1);
+    }
+
+    private void tryToDrainReadBuffers() {
+        if (evictionLock.tryLock()) {
+            try {
+                drainReadBuffers();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private void drainReadBuffers() {
+        for (ReadBuffer<DoubleLinkedListNode<Element<K, V>>> readBuffer : readBuffers) {
+            readBuffer.drainTo(applyAccess);
+        }
+    }
+
+    private void moveToTheTopIfStillCached(DoubleLinkedListNode<Element<K, V>> node) {
+        // The access might have been recorded before the element was evicted or replaced
+        if (hashmapWithNodes.get(node.getElement().getKey()) == node) {
+            orderedCache.moveToTheTop(node);
+        }
+    }
+
+    private void removeLast() {
+        Element<K, V> element = orderedCache.removeLast();
+        hashmapWithNodes.remove(element.getKey());
+    }
+
+    private void insertToTheTop(K key, V value) {
+        DoubleLinkedListNode<Element<K, V>> node = orderedCache.putFirst(new Element<>(key, value));
+        hashmapWithNodes.put(key, node);
+    }
+
+    @Override
+    public String toString() {
+        evictionLock.lock();
+        try {
+            return orderedCache.toString();
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package io.qbeat.lru;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+public class RefreshAheadLRUCache<K, V> {
+
+    private final LRUCacheWithPrioritiesAndExpiryTimestamps<K, Entry<V>> cache;
+    private final LRUTime lruTime;
+    private final double refreshWindow;
+    private final Executor executor;
+    private final SingleFlight<K, V> loads = new SingleFlight<>();
+    // Only held for the operations on the cache, never while loading
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * A thread-safe cache on top of a {@link LRUCacheWithPrioritiesAndExpiryTimestamps}, that reloads the elements
+     * shortly before they expire, so that the readers of a hot key do not all wait for its reload once it has expired.
+     * Each element is set with a time to live, and the refresh window is the last part of it: e.g. with a window of 0.1
+     * and a time to live of 1000ms, a get in the last 100ms returns the current value right away, and starts one
+     * reload on the executor. The reloaded value replaces the element, with the same priority and time to live.
+     * If the reload fails, or loads null, the current value is kept until it expires, and the next get in the window
+     * tries again. A reload is dropped if the element has been set, removed or dropped in the meantime.
+     * On a miss, the value is loaded by the caller, once per key, as in {@link ConcurrentLRUCache#get(Object, Function)}.
+     * Both Set and Get methods require the time of the cache below, plus a lock that is never held while loading.
+     *
+     * @param capacity      The capacity the Cache should have
+     * @param refreshWindow The part of the time to live, between 0 and 1, in which a get starts a reload.
+     *                      0 never reloads ahead, and 1 reloads on any get.
+     * @param executor      The executor the reloads run on
+     */
+    public RefreshAheadLRUCache(int capacity, LRUTime lruTime, double refreshWindow, Executor executor) {
+        if (!(refreshWindow >= 0 && refreshWindow <= 1)) {
+            throw new IllegalArgumentException("The refresh window should be between 0 and 1, but got " + refreshWindow);
+        }
+        this.cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(capacity, lruTime);
+        this.lruTime = lruTime;
+        this.refreshWindow = refreshWindow;
+        this.executor = executor;
+    }
+
+    /**
+     * Creates a cache that reloads on virtual threads, when the runtime has them (Java 21 or later),
+     * and on a shared pool of daemon threads otherwise.
+     */
+    public RefreshAheadLRUCache(int capacity, LRUTime lruTime, double refreshWindow) {
+        this(capacity, lruTime, refreshWindow, DefaultLoaderExecutor.INSTANCE);
+    }
+
+    /**
+     * Gets the element of the key, and if it is not in the cache, loads it and sets it with the given priority and
+     * time to live. If the element is in its refresh window, it is returned, and reloaded in the background.
+     * A null value is returned, but not cached. If the loader throws on a miss, nothing is cached, and the exception
+     * is thrown.
+     * Time complexity: O(1) on a hit, O(logn) plus the load on a miss
+     */
+    public V get(K key, int priority, long timeToLiveMillis, Function<? super K, ? extends V> loader) {
+        final Entry<V> entry;
+        boolean refresh = false;
+        lock.lock();
+        try {
+            entry = cache.get(key);
+            if (entry != null && !entry.refreshing && lruTime.getCurrentTimeToEpochMillis() >= entry.refreshTimestamp) {
+                entry.refreshing = true;
+                refresh = true;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (entry != null) {
+            if (refresh) {
+                refresh(key, entry, loader);
+            }
+            return entry.value;
+        }
+
+        return loads.load(key, k -> {
+            V value = getIfPresent(k);
+            if (value == null) {
+                value = loader.apply(k);
+                if (value != null) {
+                    set(k, value, priority, timeToLiveMillis);
+                }
+            }
+            return value;
+        });
+    }
+
+    // Time complexity: O(1). Never starts a reload.
+    public V getIfPresent(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = cache.get(key);
+            return entry == null ? null : entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // Time complexity: O(logn)
+    public void set(K key, V value, int priority, long timeToLiveMillis) {
+        lock.lock();
+        try {
+            setWithoutLock(key, value, priority, timeToLiveMillis);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public V remove(K key) {
+        lock.lock();
+        try {
+            Entry<V> entry = cache.remove(key);
+            return entry == null ? null : entry.value;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void setWithoutLock(K key, V value, int priority, long timeToLiveMillis) {
+        long now = lruTime.getCurrentTimeToEpochMillis();
+        long expiryTimestamp = now + timeToLiveMillis;
+        long refreshTimestamp = expiryTimestamp - (long) (timeToLiveMillis * refreshWindow);
+        cache.set(key, new Entry<>(value, priority, timeToLiveMillis, refreshTimestamp), priority, expiryTimestamp);
+    }
+
+    private void refresh(K key, Entry<V> entry, Function<? super K, ? extends V> loader) {
+        try {
+            executor.execute(() -> {
+                V value = null;
+                try {
+                    value = loader.apply(key);
+                } catch (RuntimeException e) {
+                    // The current value is kept, and the failure is not passed on to the executor, which might
+                    // otherwise drop one of its threads each time
+                } finally {
+                    // Runs when the loader throws as well, so that the next get in the window tries again
+                    replace(key, entry, value);
+                }
+            });
+        } catch (RuntimeException e) {
+            // The executor rejected the reload
+            replace(key, entry, null);
+        }
+    }
+
+    private void replace(K key, Entry<V> entry, V value) {
+        lock.lock();
+        try {
+            // Only if it is still this entry: the key might have been set, or dropped and loaded again since
+            if (cache.peek(key) != entry) {
+                return;
+            }
+            if (value == null) {
+                entry.refreshing = false;
+            } else {
+                setWithoutLock(key, value, entry.priority, entry.timeToLiveMillis);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        lock.lock();
+        try {
+            return cache.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static final class Entry<V> {
+        private final V value;
+        private final int priority;
+        private final long timeToLiveMillis;
+        private final long refreshTimestamp;
+        // Guarded by the lock of the cache
+        private boolean refreshing;
+
+        private Entry(V value, int priority, long timeToLiveMillis, long refreshTimestamp) {
+            this.value = value;
+            this.priority = priority;
+            this.timeToLiveMillis = timeToLiveMillis;
+            this.refreshTimestamp = refreshTimestamp;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(value);
+        }
+    }
+}
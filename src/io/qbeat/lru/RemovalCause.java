@@ -0,0 +1,22 @@
+package io.qbeat.lru;
+
+/**
+ * Why an element was removed from a cache: dropped to make capacity, because it had expired or because it was set to a
+ * value that would never fit, which the {@link StatsCounter} counts as evictions, or replaced or removed by the caller,
+ * which only a {@link RemovalListener} is told about.
+ */
+public enum RemovalCause {
+    // Its expiry timestamp had passed
+    EXPIRED,
+    // It was the Least Recently Used element of the lowest priority, and there were elements with a higher priority
+    LOWEST_PRIORITY,
+    // It was the Least Recently Used element, and all the others had the same priority, if any, or it was picked by
+    // the eviction policy of an LRUCache
+    LEAST_RECENTLY_USED,
+    // Its value was set again to one heavier than the maximum weight, so neither value is kept
+    TOO_HEAVY,
+    // Its value was set again, and the listener is given the previous value
+    REPLACED,
+    // It was removed by a call to remove
+    EXPLICIT
+}
@@ -0,0 +1,13 @@
+package io.qbeat.lru;
+
+/**
+ * Told about every element removed from a cache, e.g. to release what its value holds, or to update an index of the
+ * keys. The caches never call it on the thread that changes them: they queue the removals, and deliver them in
+ * batches on an executor, in the order they happened. See the setRemovalListener method of each cache.
+ */
+@FunctionalInterface
+public interface RemovalListener<K, V> {
+
+    // An exception thrown by the listener is ignored, and the next removals are still delivered
+    void onRemoval(K key, V value, RemovalCause cause);
+}
@@ -0,0 +1,13 @@
+package io.qbeat.lru;
+
+// Queues the removals of a cache for its RemovalListener, if it has one
+interface RemovalNotifier<K, V> {
+
+    void enqueue(K key, V value, RemovalCause cause);
+
+    // Queues nothing. Its calls are empty, so the JIT compiler removes them from the caches that use it.
+    @SuppressWarnings("unchecked")
+    static <K, V> RemovalNotifier<K, V> disabled() {
+        return (RemovalNotifier<K, V>) DisabledRemovalNotifier.INSTANCE;
+    }
+}
@@ -0,0 +1,88 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * Segmented LRU (Karedla, Love & Wherry): new elements go to a probation segment, and are promoted to a protected
+ * segment the first time they are used again. The protected segment takes up to 80% of the capacity; when it is
+ * full, its Least Recently Used element goes back to the top of the probation segment. The Least Recently Used
+ * element of the probation segment is dropped first, so a scan over keys used once only goes through probation,
+ * and does not drop the elements used more than once.
+ */
+public class SegmentedLruPolicy<K, V> implements EvictionPolicy<K, V> {
+    private final int protectedCapacity;
+    private final DoubleLinkedList<Element<K, V>> probation = new DoubleLinkedList<>();
+    private final DoubleLinkedList<Element<K, V>> protectedSegment = new DoubleLinkedList<>();
+
+    /**
+     * @param capacity The capacity of the cache
+     */
+    public SegmentedLruPolicy(int capacity) {
+        this.protectedCapacity = Math.max(1, (int) (capacity * 0.8));
+    }
+
+    @Override
+    public DoubleLinkedListNode<Element<K, V>> insert(Element<K, V> element, boolean afterEviction) {
+        return probation.putNodeFirst(new SegmentNode<>(element));
+    }
+
+    @Override
+    public void recordAccess(DoubleLinkedListNode<Element<K, V>> node) {
+        SegmentNode<K, V> segmentNode = (SegmentNode<K, V>) node;
+        if (segmentNode.isProtected) {
+            protectedSegment.moveToTheTop(node);
+            return;
+        }
+        probation.remove(node);
+        if (protectedSegment.size() == protectedCapacity) {
+            demoteLastProtected();
+        }
+        segmentNode.isProtected = true;
+        protectedSegment.putNodeFirst(node);
+    }
+
+    @Override
+    public void remove(DoubleLinkedListNode<Element<K, V>> node) {
+        if (((SegmentNode<K, V>) node).isProtected) {
+            protectedSegment.remove(node);
+        } else {
+            probation.remove(node);
+        }
+    }
+
+    @Override
+    public Element<K, V> victim(K candidate) {
+        return probation.isEmpty() ? protectedSegment.peekLast() : probation.peekLast();
+    }
+
+    @Override
+    public Element<K, V> evict(K candidate, boolean firstEviction) {
+        return probation.isEmpty() ? protectedSegment.removeLast() : probation.removeLast();
+    }
+
+    private void demoteLastProtected() {
+        SegmentNode<K, V> last = (SegmentNode<K, V>) protectedSegment.lastNode();
+        protectedSegment.remove(last);
+        last.isProtected = false;
+        probation.putNodeFirst(last);
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super Element<K, V>> action) {
+        probation.forEachFromLast(action);
+        protectedSegment.forEachFromLast(action);
+    }
+
+    @Override
+    public String toString() {
+        return "Protected: " + protectedSegment + System.getProperty("line.separator") + "Probation: " + probation;
+    }
+
+    private static final class SegmentNode<K, V> extends DoubleLinkedListNode<Element<K, V>> {
+        private boolean isProtected = false;
+
+        private SegmentNode(Element<K, V> element) {
+            super(element);
+        }
+    }
+}
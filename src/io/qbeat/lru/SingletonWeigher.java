@@ -0,0 +1,13 @@
+package io.qbeat.lru;
+
+final class SingletonWeigher implements Weigher<Object, Object> {
+    static final SingletonWeigher INSTANCE = new SingletonWeigher();
+
+    private SingletonWeigher() {
+    }
+
+    @Override
+    public int weigh(Object key, Object value) {
+        return 1;
+    }
+}
@@ -0,0 +1,77 @@
+package io.qbeat.lru;
+
+/**
+ * An open addressing (linear probing) hash table that maps keys to slots of an {@link IndexedDoubleLinkedList}.
+ * The table only stores slots; the keys themselves are kept by the caller, which is why lookups are written by the
+ * caller as well (it walks the buckets from {@link #firstBucket(int)} and compares its own keys), and why the caller
+ * has to tell the index how to hash the key of a slot.
+ * Removals shift the following buckets back, so there are no tombstones and lookups stay short.
+ */
+public abstract class SlotHashIndex {
+    private static final int EMPTY = 0;
+    // The table has twice as many buckets, and an int[] holds up to 2^30 of them, as a power of two
+    static final int MAX_CAPACITY = 1 << 29;
+
+    // Holds (slot + 1), so that 0 marks an empty bucket
+    private final int[] table;
+    private final int mask;
+
+    SlotHashIndex(int capacity) {
+        checkCapacity(capacity);
+        // Keep the load factor at or below 0.5, so that probe sequences stay short
+        int size = 2;
+        while (size < capacity * 2) {
+            size <<= 1;
+        }
+        table = new int[size];
+        mask = size - 1;
+    }
+
+    // Called by the caches before they allocate their own arrays, so that a capacity the index cannot hold fails fast
+    static void checkCapacity(int capacity) {
+        if (capacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Capacity " + capacity + " is larger than the maximum of " + MAX_CAPACITY);
+        }
+    }
+
+    abstract int hashOfSlot(int slot);
+
+    int firstBucket(int hash) {
+        return hash & mask;
+    }
+
+    int nextBucket(int bucket) {
+        return (bucket + 1) & mask;
+    }
+
+    // Returns the slot stored in the bucket, or IndexedDoubleLinkedList.NONE if the bucket is empty
+    int slotAt(int bucket) {
+        return table[bucket] - 1;
+    }
+
+    void add(int slot) {
+        int bucket = firstBucket(hashOfSlot(slot));
+        while (table[bucket] != EMPTY) {
+            bucket = nextBucket(bucket);
+        }
+        table[bucket] = slot + 1;
+    }
+
+    void remove(int slot) {
+        int bucket = firstBucket(hashOfSlot(slot));
+        while (table[bucket] != slot + 1) {
+            bucket = nextBucket(bucket);
+        }
+        // Shift back the elements that follow, so that no lookup stops early on the bucket that we have just emptied
+        int current = nextBucket(bucket);
+        while (table[current] != EMPTY) {
+            int home = firstBucket(hashOfSlot(table[current] - 1));
+            if (((current - home) & mask) >= ((current - bucket) & mask)) {
+                table[bucket] = table[current];
+                bucket = current;
+            }
+            current = nextBucket(current);
+        }
+        table[bucket] = EMPTY;
+    }
+}
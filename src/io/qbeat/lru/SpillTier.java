@@ -0,0 +1,90 @@
+package io.qbeat.lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.HashMap;
+
+// The second tier of a TieredLRUCache: the values are encoded into a BlockStore, and only the keys, the priorities,
+// the expiry timestamps and the blocks of the values are kept on the heap, in an LRU index of their own.
+// An element is taken out of the tier when it is found, since it goes back to the first tier.
+final class SpillTier<K, V> implements Closeable {
+    // The length of a null value
+    private static final int NULL_LENGTH = -1;
+
+    private final BlockStore blockStore;
+    private final Codec<V> valueCodec;
+    // We need this, in order to be able to find an element in our tier in constant O(1) time
+    private final HashMap<K, DoubleLinkedListNode<SpilledElement<K>>> hashmapWithNodes = new HashMap<>();
+    private final DoubleLinkedList<SpilledElement<K>> elements = new DoubleLinkedList<>();
+
+    SpillTier(BlockStore blockStore, Codec<V> valueCodec) {
+        this.blockStore = blockStore;
+        this.valueCodec = valueCodec;
+    }
+
+    // Drops the Least Recently Used elements until the element fits. An element larger than the whole tier is dropped.
+    // Time complexity: O(1) per block written and per element dropped
+    void put(ElementWithPriorityAndExpiryTimestamp<K, V> element) {
+        remove(element.getKey());
+        final byte[] encodedValue = element.getValue() == null ? new byte[0] : valueCodec.encode(element.getValue());
+        final int blocks = blockStore.blocksFor(encodedValue.length);
+        if (blocks > blockStore.blockCount()) {
+            return;
+        }
+        while (blockStore.freeBlockCount() < blocks) {
+            final SpilledElement<K> leastRecentlyUsed = elements.removeLast();
+            hashmapWithNodes.remove(leastRecentlyUsed.key);
+            blockStore.free(leastRecentlyUsed.firstBlock);
+        }
+        final SpilledElement<K> spilledElement = new SpilledElement<>(element.getKey(), blockStore.write(encodedValue),
+                element.getValue() == null ? NULL_LENGTH : encodedValue.length, element.getPriority(), element.getExpiryTimestamp());
+        hashmapWithNodes.put(element.getKey(), elements.putFirst(spilledElement));
+    }
+
+    // Takes the element of the key out of the tier, with its value decoded, or returns null if it is not in the tier.
+    // Time complexity: O(1) per block read
+    ElementWithPriorityAndExpiryTimestamp<K, V> take(K key) {
+        final DoubleLinkedListNode<SpilledElement<K>> node = hashmapWithNodes.remove(key);
+        if (node == null) {
+            return null;
+        }
+        final SpilledElement<K> spilledElement = elements.remove(node);
+        final V value = spilledElement.length == NULL_LENGTH ? null
+                : valueCodec.decode(blockStore.read(spilledElement.firstBlock, spilledElement.length));
+        blockStore.free(spilledElement.firstBlock);
+        return new ElementWithPriorityAndExpiryTimestamp<>(key, value, spilledElement.priority, spilledElement.expiryTimestamp);
+    }
+
+    void remove(K key) {
+        final DoubleLinkedListNode<SpilledElement<K>> node = hashmapWithNodes.remove(key);
+        if (node != null) {
+            blockStore.free(elements.remove(node).firstBlock);
+        }
+    }
+
+    int size() {
+        return hashmapWithNodes.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        hashmapWithNodes.clear();
+        blockStore.close();
+    }
+
+    private static final class SpilledElement<K> {
+        private final K key;
+        private final int firstBlock;
+        private final int length;
+        private final int priority;
+        private final long expiryTimestamp;
+
+        private SpilledElement(K key, int firstBlock, int length, int priority, long expiryTimestamp) {
+            this.key = key;
+            this.firstBlock = firstBlock;
+            this.length = length;
+            this.priority = priority;
+            this.expiryTimestamp = expiryTimestamp;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package io.qbeat.lru;
+
+/**
+ * Records what happens in a cache: hits and misses, the elements dropped and why, the number of elements of each
+ * priority, and the loads. A cache records nothing until it is given a counter other than {@link #disabled()}.
+ * The caches do not support concurrency, but one counter can be shared by several caches used by different threads,
+ * so the implementations have to be thread-safe, like {@link StripedStatsCounter}.
+ */
+public interface StatsCounter {
+
+    void recordHits(int count);
+
+    void recordMisses(int count);
+
+    void recordEviction(RemovalCause cause);
+
+    // An element with the priority has been added, and will be counted in the elements of the priority until removed
+    void recordInsertion(int priority);
+
+    // An element with the priority has been removed, whether it was dropped or not
+    void recordRemoval(int priority);
+
+    void recordLoadSuccess(long loadTimeNanos);
+
+    // The loader has thrown, or loaded null
+    void recordLoadFailure(long loadTimeNanos);
+
+    CacheStats snapshot();
+
+    // Records nothing. Its calls are empty, so the JIT compiler removes them from the caches that use it.
+    static StatsCounter disabled() {
+        return DisabledStatsCounter.INSTANCE;
+    }
+}
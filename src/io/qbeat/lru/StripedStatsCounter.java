@@ -0,0 +1,87 @@
+package io.qbeat.lru;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe {@link StatsCounter}, on {@link LongAdder}s: each one spreads its updates over several cells when
+ * threads contend on it, so that recording does not become the bottleneck of caches used by many threads.
+ * The counters are only added up when a snapshot is taken, so a snapshot taken while the caches are in use is not
+ * atomic: each count is exact, but they may not all include the same operations.
+ */
+public class StripedStatsCounter implements StatsCounter {
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder[] evictionCounts = new LongAdder[RemovalCause.values().length];
+    private final ConcurrentHashMap<Integer, LongAdder> elementsPerPriority = new ConcurrentHashMap<>();
+    private final LongAdder loadSuccessCount = new LongAdder();
+    private final LongAdder loadFailureCount = new LongAdder();
+    private final LongAdder totalLoadTimeNanos = new LongAdder();
+
+    public StripedStatsCounter() {
+        for (int i = 0; i < evictionCounts.length; i++) {
+            evictionCounts[i] = new LongAdder();
+        }
+    }
+
+    @Override
+    public void recordHits(int count) {
+        hitCount.add(count);
+    }
+
+    @Override
+    public void recordMisses(int count) {
+        missCount.add(count);
+    }
+
+    @Override
+    public void recordEviction(RemovalCause cause) {
+        evictionCounts[cause.ordinal()].increment();
+    }
+
+    @Override
+    public void recordInsertion(int priority) {
+        elementsPerPriority.computeIfAbsent(priority, p -> new LongAdder()).increment();
+    }
+
+    @Override
+    public void recordRemoval(int priority) {
+        elementsPerPriority.computeIfAbsent(priority, p -> new LongAdder()).decrement();
+    }
+
+    @Override
+    public void recordLoadSuccess(long loadTimeNanos) {
+        loadSuccessCount.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    @Override
+    public void recordLoadFailure(long loadTimeNanos) {
+        loadFailureCount.increment();
+        totalLoadTimeNanos.add(loadTimeNanos);
+    }
+
+    @Override
+    public CacheStats snapshot() {
+        long[] evictions = new long[evictionCounts.length];
+        for (int i = 0; i < evictions.length; i++) {
+            evictions[i] = evictionCounts[i].sum();
+        }
+        Map<Integer, Long> occupancy = new TreeMap<>();
+        for (Map.Entry<Integer, LongAdder> entry : elementsPerPriority.entrySet()) {
+            long elements = entry.getValue().sum();
+            if (elements > 0) {
+                occupancy.put(entry.getKey(), elements);
+            }
+        }
+        return new CacheStats(hitCount.sum(), missCount.sum(), evictions, occupancy,
+                loadSuccessCount.sum(), loadFailureCount.sum(), totalLoadTimeNanos.sum());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+}
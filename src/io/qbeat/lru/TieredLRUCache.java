@@ -0,0 +1,151 @@
+package io.qbeat.lru;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+public class TieredLRUCache<K, V> implements Closeable {
+    public static final int DEFAULT_BLOCK_SIZE = 256;
+
+    private final LRUCacheWithPrioritiesAndExpiryTimestamps<K, V> heapTier;
+    private final SpillTier<K, V> spillTier;
+    private boolean closed = false;
+
+    /**
+     * A cache of two tiers: a {@link LRUCacheWithPrioritiesAndExpiryTimestamps} on the heap, and a larger tier in
+     * direct (native) memory, that the elements dropped from the first one to make capacity are demoted to, with
+     * their priorities and expiry timestamps. A hit in the second tier promotes the element back into the first one,
+     * which demotes the element it replaces, if the first tier is full.
+     * The second tier holds the values encoded with the codec, in blocks of {@link #DEFAULT_BLOCK_SIZE} bytes, and
+     * only keeps the keys and an LRU index of the values on the heap. When it is full, its Least Recently Used
+     * elements are dropped, whatever their priorities, and its expired elements are dropped once they are looked up.
+     * Get has timeComplexity O(1), plus decoding the value on a hit in the second tier
+     * Set has timeComplexity O(logn), on the number of distinct priorities, plus encoding the value it demotes, if any
+     * Does not support concurrency. The cache must be closed, once it is no longer needed.
+     *
+     * @param heapCapacity The capacity of the first tier
+     * @param valueCodec   Encodes the values of the second tier
+     * @param offHeapBytes The size of the second tier
+     */
+    public TieredLRUCache(int heapCapacity, LRUTime lruTime, Codec<V> valueCodec, long offHeapBytes) {
+        this(heapCapacity, lruTime, valueCodec, offHeapBytes, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * The same as above, with the given size of the blocks of the second tier. Each block keeps 4 of its bytes to
+     * link to the next one, and a value takes at least one block, so the size should be close to that of most values.
+     */
+    public TieredLRUCache(int heapCapacity, LRUTime lruTime, Codec<V> valueCodec, long offHeapBytes, int blockSize) {
+        this(new LRUCacheWithPrioritiesAndExpiryTimestamps<>(heapCapacity, lruTime),
+                new SpillTier<>(BlockStore.offHeap(offHeapBytes, blockSize), valueCodec));
+    }
+
+    /**
+     * A cache whose second tier is a memory-mapped file instead, so that it can be larger than the memory, and is
+     * paged in and out by the operating system. The file is only scratch space: it is truncated first, and deleted
+     * once the cache is closed.
+     *
+     * @param file      The file of the second tier
+     * @param fileBytes The size of the second tier
+     */
+    public TieredLRUCache(int heapCapacity, LRUTime lruTime, Codec<V> valueCodec, Path file, long fileBytes) throws IOException {
+        this(heapCapacity, lruTime, valueCodec, file, fileBytes, DEFAULT_BLOCK_SIZE);
+    }
+
+    public TieredLRUCache(int heapCapacity, LRUTime lruTime, Codec<V> valueCodec, Path file, long fileBytes, int blockSize) throws IOException {
+        this(new LRUCacheWithPrioritiesAndExpiryTimestamps<>(heapCapacity, lruTime),
+                new SpillTier<>(BlockStore.mapped(file, fileBytes, blockSize), valueCodec));
+    }
+
+    private TieredLRUCache(LRUCacheWithPrioritiesAndExpiryTimestamps<K, V> heapTier, SpillTier<K, V> spillTier) {
+        this.heapTier = heapTier;
+        this.spillTier = spillTier;
+        heapTier.setEvictionConsumer(spillTier::put);
+    }
+
+    // Time complexity: O(1), plus O(logn) and decoding the value on a hit in the second tier
+    public V get(K key) {
+        ensureOpen();
+        final V value = heapTier.get(key);
+        if (value != null) {
+            return value;
+        }
+        final ElementWithPriorityAndExpiryTimestamp<K, V> spilledElement = spillTier.take(key);
+        if (spilledElement == null || heapTier.hasExpired(spilledElement.getExpiryTimestamp())) {
+            return null;
+        }
+        heapTier.set(key, spilledElement.getValue(), spilledElement.getPriority(), spilledElement.getExpiryTimestamp());
+        return spilledElement.getValue();
+    }
+
+    // Time complexity: O(logn), plus encoding the value it demotes, if any
+    public void set(K key, V value, int priority, long expiryTimestamp) {
+        ensureOpen();
+        // The value in the first tier is the latest one
+        spillTier.remove(key);
+        heapTier.set(key, value, priority, expiryTimestamp);
+    }
+
+    /**
+     * Removes the element of the key from both tiers, whether it has expired or not.
+     *
+     * @return The value of the element removed, or null if it was not in the cache
+     */
+    public V remove(K key) {
+        ensureOpen();
+        final V value = heapTier.remove(key);
+        if (value != null) {
+            return value;
+        }
+        final ElementWithPriorityAndExpiryTimestamp<K, V> spilledElement = spillTier.take(key);
+        return spilledElement == null ? null : spilledElement.getValue();
+    }
+
+    /**
+     * The number of elements in both tiers. Expired elements are counted until they are removed.
+     */
+    public int size() {
+        return heapTier.size() + spillTier.size();
+    }
+
+    /**
+     * The number of elements in the second tier.
+     */
+    public int spilledSize() {
+        return spillTier.size();
+    }
+
+    /**
+     * Removes every element of the first tier that has expired by now. The expired elements of the second tier are
+     * dropped once they are looked up, or once they are the Least Recently Used ones.
+     *
+     * @return The number of elements removed
+     */
+    public int cleanUp() {
+        ensureOpen();
+        return heapTier.cleanUp();
+    }
+
+    /**
+     * Releases the second tier: its native memory is handed over to the garbage collector, or its file is deleted.
+     * Any further call to get or set fails.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            spillTier.close();
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Cache is closed");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return heapTier + System.getProperty("line.separator") + "Spilled elements: " + spillTier.size();
+    }
+}
@@ -0,0 +1,255 @@
+package io.qbeat.lru;
+
+/**
+ * A hierarchical timing wheel, that indexes elements by their expiry timestamp.
+ * Time is cut in ticks of a configurable resolution. The wheel has a few levels of 64 buckets each: the first level
+ * holds the elements that expire within the next 64 ticks, one bucket per tick, the second one the elements that
+ * expire within the next 64 * 64 ticks, one bucket per 64 ticks, and so on. The last level also holds everything
+ * that is further in the future, and just looks at it again whenever the wheel comes round.
+ * As time advances, the buckets of the higher levels are emptied into the lower ones, and the buckets of the first
+ * level into a list of expired elements.
+ * Scheduling, rescheduling and cancelling are O(1), since the elements carry their own links (see {@link Node}),
+ * and expiring is amortized O(1) per element.
+ * An element is considered expired, once the tick of its expiry timestamp is before the current tick, so with a
+ * resolution of 1ms this is exactly (expiryTimestamp < now), and with a coarser one, elements expire at most one tick late.
+ */
+public class TimingWheel<E extends TimingWheel.Node> {
+
+    /**
+     * An element that can be scheduled in a {@link TimingWheel}.
+     * The wheel keeps its buckets as circular lists through these links, so an element can be unlinked
+     * without knowing which bucket it is in.
+     */
+    public interface Node {
+        long getExpiryTimestamp();
+
+        Node getPreviousInWheel();
+
+        void setPreviousInWheel(Node node);
+
+        Node getNextInWheel();
+
+        void setNextInWheel(Node node);
+    }
+
+    // The head of a circular list. An empty list points to itself.
+    private static final class Sentinel implements Node {
+        private Node previous = this;
+        private Node next = this;
+
+        @Override
+        public long getExpiryTimestamp() {
+            return Long.MAX_VALUE;
+        }
+
+        @Override
+        public Node getPreviousInWheel() {
+            return previous;
+        }
+
+        @Override
+        public void setPreviousInWheel(Node node) {
+            this.previous = node;
+        }
+
+        @Override
+        public Node getNextInWheel() {
+            return next;
+        }
+
+        @Override
+        public void setNextInWheel(Node node) {
+            this.next = node;
+        }
+
+        boolean isEmpty() {
+            return next == this;
+        }
+    }
+
+    private static final int BITS_PER_LEVEL = 6;
+    private static final int BUCKETS_PER_LEVEL = 1 << BITS_PER_LEVEL;
+    private static final int LEVELS = 6;
+
+    private final long tickResolutionMillis;
+    private final Sentinel[][] wheel = new Sentinel[LEVELS][BUCKETS_PER_LEVEL];
+    private final Sentinel expired = new Sentinel();
+    private long currentTick;
+
+    /**
+     * @param tickResolutionMillis The length of a tick, in milliseconds
+     * @param currentTimeMillis    The time the wheel starts at, in milliseconds since Unix epoch
+     */
+    public TimingWheel(long tickResolutionMillis, long currentTimeMillis) {
+        if (tickResolutionMillis < 1) {
+            throw new IllegalArgumentException("The tick resolution should be at least 1ms, but got " + tickResolutionMillis);
+        }
+        this.tickResolutionMillis = tickResolutionMillis;
+        this.currentTick = tickOf(currentTimeMillis);
+        for (Sentinel[] level : wheel) {
+            for (int i = 0; i < BUCKETS_PER_LEVEL; i++) {
+                level[i] = new Sentinel();
+            }
+        }
+    }
+
+    // Time complexity: O(1)
+    public void schedule(E node) {
+        long tick = tickOf(node.getExpiryTimestamp());
+        long delta = tick - currentTick;
+        if (delta < 0) {
+            linkLast(expired, node);
+            return;
+        }
+
+        for (int level = 0; level < LEVELS - 1; level++) {
+            if (delta < 1L << (BITS_PER_LEVEL * (level + 1))) {
+                linkLast(bucketFor(level, tick), node);
+                return;
+            }
+        }
+        linkLast(bucketFor(LEVELS - 1, tick), node);
+    }
+
+    // Time complexity: O(1). To be called after the expiry timestamp of the node has changed.
+    public void reschedule(E node) {
+        unlink(node);
+        schedule(node);
+    }
+
+    // Time complexity: O(1)
+    public void cancel(E node) {
+        unlink(node);
+    }
+
+    /**
+     * Moves the wheel forward to the given time, so that every element that has expired by then can be polled.
+     * Moving backwards is ignored.
+     */
+    public void advance(long currentTimeMillis) {
+        long tick = tickOf(currentTimeMillis);
+        if (tick <= currentTick) {
+            return;
+        }
+        long previousTick = currentTick;
+        currentTick = tick;
+
+        for (int level = 0; level < LEVELS; level++) {
+            long previousSlot = previousTick >> (BITS_PER_LEVEL * level);
+            long currentSlot = tick >> (BITS_PER_LEVEL * level);
+            if (previousSlot == currentSlot) {
+                // The higher levels have not moved either
+                return;
+            }
+            // The first level empties the buckets of the ticks that have passed. The higher ones empty their buckets
+            // as soon as they are reached, so that the elements in them go down to a finer level in time.
+            long firstSlot = level == 0 ? previousSlot : previousSlot + 1;
+            long slots = Math.min(currentSlot - previousSlot, BUCKETS_PER_LEVEL);
+            for (long slot = firstSlot; slot < firstSlot + slots; slot++) {
+                expireOrReschedule(wheel[level][(int) (slot & (BUCKETS_PER_LEVEL - 1))]);
+            }
+        }
+    }
+
+    /**
+     * Removes and returns an element that has expired by the given time, if any, among those that had expired by the
+     * time the wheel was last advanced to. The wheel never moves backwards, so when the clock does, the elements
+     * scheduled before the tick of the wheel are not polled until their own expiry timestamp has passed: they are
+     * skipped, which makes polling O(number of such elements) until the clock catches up again.
+     */
+    @SuppressWarnings("unchecked")
+    public E pollExpired(long currentTimeMillis) {
+        for (Node node = expired.getNextInWheel(); node != expired; node = node.getNextInWheel()) {
+            if (isExpired(node.getExpiryTimestamp(), currentTimeMillis)) {
+                unlink(node);
+                return (E) node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Tells if an expiry timestamp has passed at the given time, with the resolution of this wheel.
+     * Elements are polled as expired by the same rule.
+     */
+    public boolean isExpired(long expiryTimestamp, long currentTimeMillis) {
+        return tickOf(expiryTimestamp) < tickOf(currentTimeMillis);
+    }
+
+    public long getTickResolutionMillis() {
+        return tickResolutionMillis;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void expireOrReschedule(Sentinel bucket) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        // Detach the whole list first, since rescheduling may put elements back in the same bucket
+        Node node = bucket.getNextInWheel();
+        bucket.getPreviousInWheel().setNextInWheel(null);
+        bucket.setNextInWheel(bucket);
+        bucket.setPreviousInWheel(bucket);
+        while (node != null) {
+            Node next = node.getNextInWheel();
+            if (tickOf(node.getExpiryTimestamp()) < currentTick) {
+                linkLast(expired, node);
+            } else {
+                schedule((E) node);
+            }
+            node = next;
+        }
+    }
+
+    private Sentinel bucketFor(int level, long tick) {
+        return wheel[level][(int) ((tick >> (BITS_PER_LEVEL * level)) & (BUCKETS_PER_LEVEL - 1))];
+    }
+
+    private long tickOf(long timeMillis) {
+        return Math.floorDiv(timeMillis, tickResolutionMillis);
+    }
+
+    private static void linkLast(Sentinel list, Node node) {
+        Node last = list.getPreviousInWheel();
+        node.setPreviousInWheel(last);
+        node.setNextInWheel(list);
+        last.setNextInWheel(node);
+        list.setPreviousInWheel(node);
+    }
+
+    private static void unlink(Node node) {
+        Node previous = node.getPreviousInWheel();
+        Node next = node.getNextInWheel();
+        previous.setNextInWheel(next);
+        next.setPreviousInWheel(previous);
+        node.setPreviousInWheel(null);
+        node.setNextInWheel(null);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        final String newLine = System.getProperty("line.separator");
+        appendBucket(sb, "Expired", expired, newLine);
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i < BUCKETS_PER_LEVEL; i++) {
+                appendBucket(sb, "Level " + level + ", Bucket " + i, wheel[level][i], newLine);
+            }
+        }
+        if (sb.length() == 0) {
+            return "Cache is empty";
+        }
+        return sb.toString();
+    }
+
+    private static void appendBucket(StringBuilder sb, String name, Sentinel bucket, String newLine) {
+        if (bucket.isEmpty()) {
+            return;
+        }
+        sb.append(name).append(": ");
+        for (Node node = bucket.getNextInWheel(); node != bucket; node = node.getNextInWheel()) {
+            sb.append(node.toString());
+        }
+        sb.append(newLine);
+    }
+}
@@ -0,0 +1,29 @@
+package io.qbeat.lru;
+
+/**
+ * The TinyLFU admission policy (Einziger, Friedman & Manes): a new key is only admitted to a full cache if it has been
+ * asked for more often, recently, than the element it would replace, as estimated by a {@link FrequencySketch}.
+ * A scan over keys that are used once does not flush the keys used often, since a key seen once never wins
+ * against a key seen more than once. A key that is not admitted is simply not cached, and the cache is unchanged.
+ * Does not support concurrency, and should be used by a single cache.
+ */
+public class TinyLfuAdmissionPolicy implements AdmissionPolicy<Object> {
+    private final FrequencySketch sketch;
+
+    /**
+     * @param capacity The capacity of the cache it is used by
+     */
+    public TinyLfuAdmissionPolicy(int capacity) {
+        this.sketch = new FrequencySketch(capacity);
+    }
+
+    @Override
+    public void record(Object key) {
+        sketch.increment(key);
+    }
+
+    @Override
+    public boolean admit(Object candidate, Object victim) {
+        return sketch.frequency(candidate) > sketch.frequency(victim);
+    }
+}
@@ -2,71 +2,76 @@ package io.qbeat.lru;
 
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.function.Consumer;
 
-public class TreeCache<K extends Comparable<K>>
+public class TreeCache<K extends Comparable<K>, E>
 {
     // We need this, for the ordering of our list. The DoubleLinkedList is the perfect structure since we could:
     // Add an element on the top or tail in constant time.
     // Move an element to the top of the list, given that we have the node, again in constant time
-    private final TreeMap<K, DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp>> cache = new TreeMap<>();
+    private final TreeMap<K, DoubleLinkedList<E>> cache = new TreeMap<>();
     private final String keyName;
 
     public TreeCache(String keyName) {
         this.keyName = keyName;
     }
 
-    public ElementWithPriorityAndExpiryTimestamp deleteLastElementFromCacheForKey(K key){
-        DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp> cacheForFirstPriority = cache.get(key);
-        ElementWithPriorityAndExpiryTimestamp elementWithPriorityAndTimestamp = cacheForFirstPriority.removeLast();
+    public E deleteLastElementFromCacheForKey(K key){
+        DoubleLinkedList<E> cacheForFirstPriority = cache.get(key);
+        E elementWithPriorityAndTimestamp = cacheForFirstPriority.removeLast();
         if (cacheForFirstPriority.isEmpty()) {
             cache.remove(key);
         }
         return elementWithPriorityAndTimestamp;
     }
 
-    public DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> insertToTheTop(K key, ElementWithPriorityAndExpiryTimestamp elementWithPriorityAndExpiryTimestamp){
-        cache.putIfAbsent(key, new DoubleLinkedList<>());
+    public E peekLastElementFromCacheForKey(K key) {
+        return cache.get(key).peekLast();
+    }
+
+    public DoubleLinkedListNode<E> insertToTheTop(K key, E elementWithPriorityAndExpiryTimestamp){
+        return insertNodeToTheTop(key, new DoubleLinkedListNode<>(elementWithPriorityAndExpiryTimestamp));
+    }
 
-        DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp> cacheForUpdatedPriority = cache.get(key);
-        return cacheForUpdatedPriority.putFirst(elementWithPriorityAndExpiryTimestamp);
+    public DoubleLinkedListNode<E> insertNodeToTheTop(K key, DoubleLinkedListNode<E> node){
+        return cache.computeIfAbsent(key, k -> new DoubleLinkedList<>()).putNodeFirst(node);
     }
 
-    public void delete(K key, DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> priorityCacheNode) {
-        DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp> partialCacheForKey = cache.get(key);
+    public void delete(K key, DoubleLinkedListNode<E> priorityCacheNode) {
+        DoubleLinkedList<E> partialCacheForKey = cache.get(key);
         partialCacheForKey.remove(priorityCacheNode);
         if (partialCacheForKey.isEmpty()) {
             cache.remove(key);
         }
     }
 
-    public DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> moveToTop(K currentKey, K updatedKey, DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> partialCacheNode) {
-        ElementWithPriorityAndExpiryTimestamp element = partialCacheNode.getElement();
-        if (currentKey != updatedKey) {
-            partialCacheNode = addToDifferentCache(currentKey, updatedKey, partialCacheNode, element);
+    // The node is moved as it is, so it stays the node of its element
+    public DoubleLinkedListNode<E> moveToTop(K currentKey, K updatedKey, DoubleLinkedListNode<E> partialCacheNode) {
+        // The keys are boxed, so they have to be compared by value
+        if (!currentKey.equals(updatedKey)) {
+            addToDifferentCache(currentKey, updatedKey, partialCacheNode);
         } else {
             moveToTopForKey(updatedKey, partialCacheNode);
         }
         return partialCacheNode;
     }
 
-    private DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> addToDifferentCache(K currentKey, K updatedKey, DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> partialCacheNode, ElementWithPriorityAndExpiryTimestamp element) {
+    private void addToDifferentCache(K currentKey, K updatedKey, DoubleLinkedListNode<E> partialCacheNode) {
         // Remove element from list
         delete(currentKey, partialCacheNode);
-        partialCacheNode = addFirstAndCreateCacheIfNotExist(updatedKey, element);
-        return partialCacheNode;
+        insertNodeToTheTop(updatedKey, partialCacheNode);
     }
 
-    public void moveToTopForKey(K key, DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> node) {
-        DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp> cacheForKey = cache.get(key);
+    public void moveToTopForKey(K key, DoubleLinkedListNode<E> node) {
+        DoubleLinkedList<E> cacheForKey = cache.get(key);
         cacheForKey.moveToTheTop(node);
     }
 
-    private DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> addFirstAndCreateCacheIfNotExist(K key, ElementWithPriorityAndExpiryTimestamp element) {
-        DoubleLinkedListNode<ElementWithPriorityAndExpiryTimestamp> partialCacheNode;
-        cache.putIfAbsent(key, new DoubleLinkedList<>());
-        DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp> partialCacheForKey = cache.get(key);
-        partialCacheNode = partialCacheForKey.putFirst(element);
-        return partialCacheNode;
+    // The lowest key first, and the Least Recently Used element of each key first
+    void forEachFromLast(Consumer<? super E> action) {
+        for (DoubleLinkedList<E> list : cache.values()) {
+            list.forEachFromLast(action);
+        }
     }
 
     @Override
@@ -75,7 +80,7 @@ public class TreeCache<K extends Comparable<K>>
             return "Cache is empty";
         }
         StringBuilder sb = new StringBuilder();
-        for (Map.Entry<K, DoubleLinkedList<ElementWithPriorityAndExpiryTimestamp>> entry : cache.entrySet()) {
+        for (Map.Entry<K, DoubleLinkedList<E>> entry : cache.entrySet()) {
             sb.append(keyName).append(" ").append(entry.getKey()).append(": ");
             sb.append(entry.getValue().toString());
             sb.append(System.getProperty("line.separator"));
@@ -91,4 +96,8 @@ public class TreeCache<K extends Comparable<K>>
     public K firstKey() {
         return cache.firstKey();
     }
+
+    public K lastKey() {
+        return cache.lastKey();
+    }
 }
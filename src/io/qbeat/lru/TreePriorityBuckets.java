@@ -0,0 +1,76 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * {@link PriorityBuckets} for any int priority, kept in a {@link TreeCache}.
+ * Finding the lowest priority, and adding or removing a priority, take logarithmic time O(log p),
+ * on the number of distinct priorities p.
+ */
+public class TreePriorityBuckets<E> implements PriorityBuckets<E> {
+    private final TreeCache<Integer, E> cache = new TreeCache<>("Priority");
+
+    @Override
+    public DoubleLinkedListNode<E> insertToTheTop(int priority, E element) {
+        return cache.insertToTheTop(priority, element);
+    }
+
+    @Override
+    public void insertNodeToTheTop(int priority, DoubleLinkedListNode<E> node) {
+        cache.insertNodeToTheTop(priority, node);
+    }
+
+    @Override
+    public void delete(int priority, DoubleLinkedListNode<E> node) {
+        cache.delete(priority, node);
+    }
+
+    @Override
+    public void moveToTop(int currentPriority, int updatedPriority, DoubleLinkedListNode<E> node) {
+        if (currentPriority == updatedPriority) {
+            cache.moveToTopForKey(updatedPriority, node);
+        } else {
+            cache.moveToTop(currentPriority, updatedPriority, node);
+        }
+    }
+
+    @Override
+    public void moveToTopForPriority(int priority, DoubleLinkedListNode<E> node) {
+        cache.moveToTopForKey(priority, node);
+    }
+
+    @Override
+    public E deleteLastElementOfLowestPriority() {
+        return cache.deleteLastElementFromCacheForKey(cache.firstKey());
+    }
+
+    @Override
+    public E peekLastElementOfLowestPriority() {
+        return cache.peekLastElementFromCacheForKey(cache.firstKey());
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super E> action) {
+        cache.forEachFromLast(action);
+    }
+
+    @Override
+    public int lowestPriority() {
+        return cache.firstKey();
+    }
+
+    @Override
+    public int highestPriority() {
+        return cache.lastKey();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return cache.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return cache.toString();
+    }
+}
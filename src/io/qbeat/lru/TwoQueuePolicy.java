@@ -0,0 +1,94 @@
+package io.qbeat.lru;
+
+import java.util.function.Consumer;
+
+/**
+ * 2Q (Johnson & Shasha): new elements go to a FIFO queue, A1in, that takes up to 25% of the capacity, and are
+ * dropped from it in the order they came in, whether they are used in the meantime or not. The keys dropped from A1in
+ * are remembered, without their values, in a ghost queue, A1out, of up to 50% of the capacity. A key that comes back
+ * while in A1out has been used twice in a short time, so it goes to the main queue, Am, an LRU list, which only loses
+ * elements once A1in is within its share. A scan over keys used once only goes through A1in.
+ */
+public class TwoQueuePolicy<K, V> implements EvictionPolicy<K, V> {
+    private final int inCapacity;
+    private final int outCapacity;
+    private final DoubleLinkedList<Element<K, V>> in = new DoubleLinkedList<>();
+    private final DoubleLinkedList<Element<K, V>> main = new DoubleLinkedList<>();
+    private final GhostList<K> out = new GhostList<>();
+
+    /**
+     * @param capacity The capacity of the cache
+     */
+    public TwoQueuePolicy(int capacity) {
+        this.inCapacity = Math.max(1, capacity / 4);
+        this.outCapacity = Math.max(1, capacity / 2);
+    }
+
+    @Override
+    public DoubleLinkedListNode<Element<K, V>> insert(Element<K, V> element, boolean afterEviction) {
+        if (out.remove(element.getKey())) {
+            return main.putNodeFirst(new QueueNode<>(element, true));
+        }
+        return in.putNodeFirst(new QueueNode<>(element, false));
+    }
+
+    @Override
+    public void recordAccess(DoubleLinkedListNode<Element<K, V>> node) {
+        // A1in is a FIFO queue, so only the elements of Am move
+        if (((QueueNode<K, V>) node).isInMain) {
+            main.moveToTheTop(node);
+        }
+    }
+
+    @Override
+    public void remove(DoubleLinkedListNode<Element<K, V>> node) {
+        if (((QueueNode<K, V>) node).isInMain) {
+            main.remove(node);
+        } else {
+            in.remove(node);
+        }
+    }
+
+    @Override
+    public Element<K, V> victim(K candidate) {
+        return dropsFromIn() ? in.peekLast() : main.peekLast();
+    }
+
+    @Override
+    public Element<K, V> evict(K candidate, boolean firstEviction) {
+        if (!dropsFromIn()) {
+            return main.removeLast();
+        }
+        Element<K, V> element = in.removeLast();
+        if (out.size() == outCapacity) {
+            out.removeLast();
+        }
+        out.addFirst(element.getKey());
+        return element;
+    }
+
+    private boolean dropsFromIn() {
+        return in.size() >= inCapacity || main.isEmpty();
+    }
+
+    @Override
+    public void forEachFromLast(Consumer<? super Element<K, V>> action) {
+        in.forEachFromLast(action);
+        main.forEachFromLast(action);
+    }
+
+    @Override
+    public String toString() {
+        final String newLine = System.getProperty("line.separator");
+        return "Am: " + main + newLine + "A1in: " + in + newLine + "A1out: " + out;
+    }
+
+    private static final class QueueNode<K, V> extends DoubleLinkedListNode<Element<K, V>> {
+        private final boolean isInMain;
+
+        private QueueNode(Element<K, V> element, boolean isInMain) {
+            super(element);
+            this.isInMain = isInMain;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package io.qbeat.lru;
+
+/**
+ * Tells how much an element weighs, e.g. its size in bytes, so that a cache can be bounded by the total weight of its
+ * elements instead of their number. The weight of an element is taken when it is set, and must not be negative.
+ * By default the caches weigh every element 1, see {@link #singleton()}.
+ */
+@FunctionalInterface
+public interface Weigher<K, V> {
+
+    int weigh(K key, V value);
+
+    // Weighs every element 1
+    @SuppressWarnings("unchecked")
+    static <K, V> Weigher<K, V> singleton() {
+        return (Weigher<K, V>) SingletonWeigher.INSTANCE;
+    }
+}
@@ -0,0 +1,22 @@
+package io.qbeat.lru;
+
+// Weighs the elements of the caches bounded by weight, and checks the weights they are given
+final class Weights {
+
+    private Weights() {
+    }
+
+    static <K, V> int weigh(Weigher<? super K, ? super V> weigher, K key, V value) {
+        final int weight = weigher.weigh(key, value);
+        if (weight < 0) {
+            throw new IllegalArgumentException("The weight should not be negative, but got " + weight + " for " + key);
+        }
+        return weight;
+    }
+
+    static void checkMaximumWeight(long maximumWeight) {
+        if (maximumWeight < 0) {
+            throw new IllegalArgumentException("The maximum weight should not be negative, but got " + maximumWeight);
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ArrayLRUCacheTest {
+    ArrayLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        cache = new ArrayLRUCache<>(3);
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set("A", 10);
+        assertEquals(10, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set("A", 10);
+        cache.set("A", 2);
+        assertEquals(2, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldReturnNullIfElementNotInCache(){
+        final Integer value = cache.get("B");
+        assertNull(value);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldNotRemoveAnyElementWhenCapacityIsFullButSetIsCalledWithExistingElement(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("B", 8);
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldDeleteLastUsedElementWhenCapacityReached(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("D", 8);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.set("D", 8);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldNotExistCapacity(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("D", 8);
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
+        cache = new ArrayLRUCache<>(1);
+        cache.set("A", 10);
+        cache.set("B", 2);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+    }
+
+    @Test
+    public void shouldReuseSlotsOfEvictedElements(){
+        for (int i = 0; i < 1000; i++) {
+            cache.set("K" + i, i);
+        }
+        assertNull(cache.get("K996"));
+        assertEquals(997, cache.get("K997"));
+        assertEquals(998, cache.get("K998"));
+        assertEquals(999, cache.get("K999"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldLoadMissingElementAndSetIt(){
+        cache.set("A", 10);
+        assertEquals(10, cache.get("A", key -> 1));
+        assertEquals(2, cache.get("B", key -> 2));
+        assertEquals(2, cache.get("B"));
+        assertNull(cache.get("C", key -> null));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldRejectACapacityTheIndexCannotHold(){
+        assertThrows(IllegalArgumentException.class, () -> new ArrayLRUCache<>(SlotHashIndex.MAX_CAPACITY + 1));
+        assertThrows(IllegalArgumentException.class, () -> new IntIntLRUCache(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> new LongIntLRUCache(1 << 30));
+    }
+}
@@ -0,0 +1,109 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncLRUCacheTest {
+    LRUTimeForTests lruTimeForTests;
+    // Runs the loads only when asked to, so that the tests can see them in flight
+    Queue<Runnable> pendingLoads;
+    AsyncLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        lruTimeForTests = new LRUTimeForTests();
+        pendingLoads = new ArrayDeque<>();
+        cache = new AsyncLRUCache<>(2, lruTimeForTests, pendingLoads::add);
+    }
+
+    @Test
+    public void shouldReturnWithoutWaitingForTheLoadAndLoadEachKeyOnce() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<Integer> first = cache.get("A", 1, 1000, key -> loads.incrementAndGet());
+        CompletableFuture<Integer> second = cache.get("A", 1, 1000, key -> loads.incrementAndGet());
+        assertSame(first, second);
+        assertFalse(first.isDone());
+        assertEquals(1, cache.size());
+
+        runPendingLoads();
+        assertEquals(1, first.get());
+        assertEquals(1, cache.getIfPresent("A").get());
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldRemoveFailedLoadSoThatTheNextGetLoadsAgain() throws Exception {
+        CompletableFuture<Integer> failed = cache.get("A", 1, 1000, key -> { throw new IllegalStateException(); });
+        runPendingLoads();
+        ExecutionException failure = assertThrows(ExecutionException.class, failed::get);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        assertNull(cache.getIfPresent("A"));
+        assertEquals(0, cache.size());
+
+        CompletableFuture<Integer> reloaded = cache.get("A", 1, 1000, key -> 7);
+        runPendingLoads();
+        assertEquals(7, reloaded.get());
+    }
+
+    @Test
+    public void shouldNotCacheNullValues() throws Exception {
+        CompletableFuture<Integer> future = cache.get("A", 1, 1000, key -> null);
+        runPendingLoads();
+        assertNull(future.get());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldCompleteDroppedLoadWithoutPuttingItBack() throws Exception {
+        CompletableFuture<Integer> dropped = cache.get("A", 1, 1000, key -> 1);
+        cache.get("B", 5, 1000, key -> 2);
+        cache.get("C", 5, 1000, key -> 3);
+        assertNull(cache.getIfPresent("A"));
+
+        runPendingLoads();
+        assertEquals(1, dropped.get());
+        assertNull(cache.getIfPresent("A"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldNotRemoveNewerFutureWhenOldLoadFails() throws Exception {
+        CompletableFuture<Integer> old = cache.get("A", 1, 1000, key -> { throw new IllegalStateException(); });
+        cache.remove("A");
+        cache.set("A", 5, 1, 1000);
+        runPendingLoads();
+        assertTrue(old.isCompletedExceptionally());
+        assertEquals(5, cache.getIfPresent("A").get());
+    }
+
+    @Test
+    public void shouldLoadAgainOnceExpired() throws Exception {
+        cache.set("A", 1, 1, 100);
+        lruTimeForTests.setCurrentTimeInEpochMillis(101);
+        CompletableFuture<Integer> reloaded = cache.get("A", 1, 1000, key -> 2);
+        runPendingLoads();
+        assertEquals(2, reloaded.get());
+    }
+
+    @Test
+    public void shouldLoadOnTheDefaultExecutor() throws Exception {
+        cache = new AsyncLRUCache<>(2, lruTimeForTests);
+        assertEquals(42, cache.get("A", 1, 1000, key -> 42).get(10, TimeUnit.SECONDS));
+    }
+
+    private void runPendingLoads() {
+        Runnable load;
+        while ((load = pendingLoads.poll()) != null) {
+            load.run();
+        }
+    }
+}
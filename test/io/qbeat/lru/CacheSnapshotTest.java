@@ -0,0 +1,114 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CacheSnapshotTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldRestoreLeastRecentlyUsedOrder() throws IOException {
+        LRUCache<String, Integer> cache = new LRUCache<>(3);
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        Path path = directory.resolve("lru.snapshot");
+        cache.snapshot().writeTo(path, Codec.strings(), Codec.integers());
+
+        LRUCache<String, Integer> restored = new LRUCache<>(3);
+        restored.restore(CacheSnapshot.readFrom(path, Codec.strings(), Codec.integers()));
+        assertEquals(cache.toString(), restored.toString());
+        restored.set("D", 4);
+        assertNull(restored.get("B"));
+        assertEquals(1, restored.get("A"));
+    }
+
+    @Test
+    public void shouldRestorePrioritiesAndOrderInEachPriority() throws IOException {
+        LRUCacheWithPriorities<String, Integer> cache = new LRUCacheWithPriorities<>(4, 7);
+        cache.set("A", 1, 5);
+        cache.set("B", 2, 1);
+        cache.set("C", 3, 5);
+        cache.set("D", 4, 1);
+        cache.get("B");
+        Path path = directory.resolve("priorities.snapshot");
+        cache.snapshot().writeTo(path, Codec.strings(), Codec.integers());
+
+        LRUCacheWithPriorities<String, Integer> restored = new LRUCacheWithPriorities<>(4, 7);
+        restored.restore(CacheSnapshot.readFrom(path, Codec.strings(), Codec.integers()));
+        assertEquals(cache.toString(), restored.toString());
+        // D is the Least Recently Used element of the lowest priority
+        restored.set("E", 5, 7);
+        assertNull(restored.get("D"));
+        assertEquals(2, restored.get("B"));
+
+        assertThrows(IllegalArgumentException.class, () -> restored.restore(new LRUCache<String, Integer>(1).snapshot()));
+    }
+
+    @Test
+    public void shouldSkipElementsThatExpiredWhileTheCacheWasDown() throws IOException {
+        LRUTimeForTests lruTimeForTests = new LRUTimeForTests();
+        LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(3, lruTimeForTests);
+        cache.set("A", 1, 1, 1000);
+        cache.set("B", 2, 1, 5000);
+        cache.set("C", 3, 2, 500);
+        lruTimeForTests.setCurrentTimeInEpochMillis(600);
+        Path path = directory.resolve("expiry.snapshot");
+        CacheSnapshot<String, Integer> snapshot = cache.snapshot();
+        assertEquals(2, snapshot.size());
+        snapshot.writeTo(path, Codec.strings(), Codec.integers());
+
+        lruTimeForTests.setCurrentTimeInEpochMillis(2000);
+        LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> restored = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(3, lruTimeForTests);
+        restored.restore(CacheSnapshot.readFrom(path, Codec.strings(), Codec.integers()));
+        assertEquals(1, restored.size());
+        assertEquals(2, restored.get("B"));
+        lruTimeForTests.setCurrentTimeInEpochMillis(5001);
+        assertNull(restored.get("B"));
+    }
+
+    @Test
+    public void shouldWriteAndReadElementsAcrossMappedRegions() throws IOException {
+        LRUCache<Long, String> cache = new LRUCache<>(10);
+        for (long i = 0; i < 10; i++) {
+            cache.set(i, "Value of " + i);
+        }
+        cache.set(10L, null);
+        Path path = directory.resolve("regions.snapshot");
+        // Regions of 7 bytes, so that the ints, longs and strings all span two regions at some point
+        cache.snapshot().writeTo(path, Codec.longs(), Codec.strings(), 7);
+
+        CacheSnapshot<Long, String> snapshot = CacheSnapshot.readFrom(path, Codec.longs(), Codec.strings(), 7);
+        assertEquals(10, snapshot.size());
+        for (int i = 0; i < 9; i++) {
+            assertEquals(i + 1L, snapshot.keyAt(i));
+            assertEquals("Value of " + (i + 1), snapshot.valueAt(i));
+        }
+        assertNull(snapshot.valueAt(9));
+        assertFalse(Files.exists(directory.resolve("regions.snapshot.tmp")));
+    }
+
+    @Test
+    public void shouldRejectFileThatIsNotACompleteSnapshot() throws IOException {
+        Path path = directory.resolve("other.txt");
+        Files.write(path, "Not a snapshot at all".getBytes());
+        assertThrows(IOException.class, () -> CacheSnapshot.readFrom(path, Codec.strings(), Codec.integers()));
+
+        LRUCache<String, Integer> cache = new LRUCache<>(3);
+        cache.set("A", 1);
+        Path truncated = directory.resolve("truncated.snapshot");
+        cache.snapshot().writeTo(truncated, Codec.strings(), Codec.integers());
+        byte[] bytes = Files.readAllBytes(truncated);
+        Files.write(truncated, Arrays.copyOf(bytes, bytes.length - 2));
+        assertThrows(IOException.class, () -> CacheSnapshot.readFrom(truncated, Codec.strings(), Codec.integers()));
+    }
+}
@@ -0,0 +1,37 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CoarseLRUTimeTest {
+
+    @Test
+    public void shouldReturnTheCachedTimeUntilTheNextTick(){
+        LRUTimeForTests source = new LRUTimeForTests();
+        source.setCurrentTimeInEpochMillis(100);
+        try (CoarseLRUTime coarseLRUTime = new CoarseLRUTime(source, 3_600_000)) {
+            source.setCurrentTimeInEpochMillis(105);
+            assertEquals(100, coarseLRUTime.getCurrentTimeToEpochMillis());
+            coarseLRUTime.tick();
+            assertEquals(105, coarseLRUTime.getCurrentTimeToEpochMillis());
+        }
+    }
+
+    @Test
+    public void shouldAdvanceOnItsOwn() throws Exception {
+        try (CoarseLRUTime coarseLRUTime = new CoarseLRUTime(1)) {
+            long start = coarseLRUTime.getCurrentTimeToEpochMillis();
+            long deadline = System.nanoTime() + 10_000_000_000L;
+            while (coarseLRUTime.getCurrentTimeToEpochMillis() == start && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(coarseLRUTime.getCurrentTimeToEpochMillis() > start);
+        }
+    }
+
+    @Test
+    public void shouldRejectPrecisionBelowOneMillisecond(){
+        assertThrows(IllegalArgumentException.class, () -> new CoarseLRUTime(0));
+    }
+}
@@ -0,0 +1,195 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLRUCacheTest {
+    ConcurrentLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        // A single segment behaves exactly like an LRUCache
+        cache = new ConcurrentLRUCache<>(3, 1);
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set("A", 10);
+        assertEquals(10, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set("A", 10);
+        cache.set("A", 2);
+        assertEquals(2, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldReturnNullIfElementNotInCache(){
+        assertNull(cache.get("B"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.set("D", 8);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldSplitCapacityAcrossSegments(){
+        cache = new ConcurrentLRUCache<>(10, 4);
+        assertEquals(4, cache.segmentCount());
+        for (int i = 0; i < 1000; i++) {
+            cache.set("K" + i, i);
+        }
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    public void shouldNotHaveMoreSegmentsThanCapacity(){
+        cache = new ConcurrentLRUCache<>(2, 16);
+        assertEquals(2, cache.segmentCount());
+    }
+
+    @Test
+    public void shouldNotExceedCapacityWhenUsedByManyThreads() throws Exception {
+        cache = new ConcurrentLRUCache<>(100, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "K" + ((i * 31 + thread) % 500);
+                    cache.set(key, i);
+                    Integer value = cache.get(key);
+                    assertTrue(value == null || value >= 0);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void shouldGetAndSetAllElementsAcrossSegments(){
+        cache = new ConcurrentLRUCache<>(100, 4);
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for (int i = 0; i < 20; i++) {
+            values.put("K" + i, i);
+        }
+        cache.setAll(values);
+        assertEquals(20, cache.size());
+        Map<String, Integer> found = cache.getAll(Arrays.asList("K0", "K7", "K19", "K20"));
+        assertEquals(3, found.size());
+        assertEquals(7, found.get("K7"));
+        assertEquals(19, found.get("K19"));
+    }
+
+    @Test
+    public void shouldSetAllElementsLikeOneSetPerElementWithOneSegment(){
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("A", 1);
+        values.put("B", 2);
+        values.put("C", 3);
+        values.put("D", 4);
+        cache.setAll(values);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldLoadMissingElementOnceWhenManyThreadsMissOnIt() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> cache.get("A", key -> {
+            loads.incrementAndGet();
+            loading.countDown();
+            await(release);
+            return 42;
+        })));
+        loading.await();
+        for (int t = 0; t < 7; t++) {
+            futures.add(executor.submit(() -> cache.get("A", key -> loads.incrementAndGet())));
+        }
+        Thread.sleep(50);
+        release.countDown();
+        for (Future<Integer> future : futures) {
+            assertEquals(42, future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void shouldPassLoaderFailureToWaitingThreadsWithoutCachingIt() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Integer> first = executor.submit(() -> cache.get("A", key -> {
+            loading.countDown();
+            await(release);
+            throw new IllegalStateException("backend is down");
+        }));
+        loading.await();
+        Future<Integer> second = executor.submit(() -> cache.get("A", key -> 7));
+        Thread.sleep(50);
+        release.countDown();
+        ExecutionException failure = assertThrows(ExecutionException.class, first::get);
+        assertTrue(failure.getCause() instanceof IllegalStateException);
+        // The second thread either waited for the failed load, or loaded the value itself once the load was over
+        try {
+            assertEquals(7, second.get());
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+        executor.shutdown();
+        // The failure is not cached, so the next load goes through
+        int value = cache.get("A", key -> 8);
+        assertTrue(value == 7 || value == 8);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
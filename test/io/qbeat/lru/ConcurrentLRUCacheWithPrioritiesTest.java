@@ -0,0 +1,229 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConcurrentLRUCacheWithPrioritiesTest {
+
+    ConcurrentLRUCacheWithPriorities<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        cache = new ConcurrentLRUCacheWithPriorities<>(3);
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set("A", 10 ,1);
+        assertEquals(10, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set("A", 10 ,2);
+        cache.set("A", 2,2);
+        assertEquals(2, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveItemWithLowestPriorityWhenCapacityIsReached(){
+        cache.set("A", 10 ,2);
+        cache.set("B", 2,3);
+        cache.set("C", 2,1);
+        cache.set("A", 10 ,0);
+        cache.set("D", 10 ,2);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(2, cache.get("C"));
+        assertEquals(10, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+
+    @Test
+    public void shouldReturnNullIfElementNotInCache(){
+        final Integer value = cache.get("B");
+        assertNull(value);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldNotRemoveAnyElementWhenCapacityIsFullButSetIsCalledWithExistingElement(){
+        cache.set("A", 10 , 1);
+        cache.set("B", 2, 1);
+        cache.set("C", 3,1 );
+        cache.set("B", 8,1 );
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldDeleteLastUsedElementWhenCapacityReached(){
+        cache.set("A", 10,3);
+        cache.set("B", 2,3 );
+        cache.set("C", 3,3);
+        cache.set("D", 8,3);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set("A", 10,3);
+        cache.set("B", 2,3);
+        cache.set("C", 3,3);
+        cache.get("A");
+        cache.set("D", 8,3);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldNotExistCapacity(){
+        cache.set("A", 10,3);
+        cache.set("B", 2,3);
+        cache.set("C", 3,3);
+        cache.set("D", 8,3);
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
+        cache = new ConcurrentLRUCacheWithPriorities<>(1);
+        cache.set("A", 10,3);
+        cache.set("B", 2,3);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+    }
+
+    @Test
+    public void shouldMoveElementToItsNewPriority(){
+        cache.set("A", 10, 1);
+        cache.set("B", 2, 2);
+        cache.set("C", 3, 3);
+        cache.set("A", 11, 4);
+        cache.set("D", 8, 4);
+        assertEquals(11, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldKeepHighPrioritiesWhenUsedByManyThreads() throws Exception {
+        cache = new ConcurrentLRUCacheWithPriorities<>(100);
+        for (int i = 0; i < 50; i++) {
+            cache.set("High" + i, i, 100);
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "K" + ((i * 31 + thread) % 500);
+                    cache.set(key, i, i % 20);
+                    cache.get(key);
+                    cache.get("High" + (i % 50));
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, cache.size());
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, cache.get("High" + i));
+        }
+    }
+
+    @Test
+    public void shouldKeepCapacityWhenManyThreadsInsertAtOnce() throws Exception {
+        for (int round = 0; round < 50; round++) {
+            cache = new ConcurrentLRUCacheWithPriorities<>(2);
+            ExecutorService executor = Executors.newFixedThreadPool(8);
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                final int thread = t;
+                futures.add(executor.submit(() -> {
+                    // Distinct keys and priorities, so that the inserts keep creating buckets, that are empty at first
+                    for (int i = 0; i < 2_000; i++) {
+                        cache.set("T" + thread + "-" + i, i, (i * 8 + thread) % 64);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+            assertTrue(cache.size() <= 2, "Size " + cache.size() + " is over the capacity");
+        }
+    }
+
+    @Test
+    public void shouldGetAndSetAllElements(){
+        cache.set("A", 10, 5);
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("B", 2);
+        values.put("C", 3);
+        values.put("D", 4);
+        cache.setAll(values, 1);
+        assertNull(cache.get("B"));
+        Map<String, Integer> found = cache.getAll(Arrays.asList("A", "B", "C", "D"));
+        assertEquals(3, found.size());
+        assertEquals(10, found.get("A"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldLoadMissingElementOnceWhenManyThreadsMissOnIt() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Integer>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            futures.add(executor.submit(() -> cache.get("A", 3, key -> {
+                loads.incrementAndGet();
+                sleep(50);
+                return 42;
+            })));
+        }
+        for (Future<Integer> future : futures) {
+            assertEquals(42, future.get());
+        }
+        executor.shutdown();
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.size());
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EvictionPolicyTest {
+
+    @Test
+    public void shouldDropLeastRecentlyUsedElementByDefault() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2, new LruPolicy<>());
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.get("A");
+        cache.set("C", 3);
+        assertNull(cache.get("B"));
+        assertEquals(1, cache.get("A"));
+    }
+
+    @Test
+    public void shouldKeepHotKeysThatLruLosesToALoopOfColdKeys() {
+        // 5 hot keys, each followed by a cold key that is never used again: 10 keys per round, for 8 slots
+        assertEquals(0, hotHitsInLastRounds(new LRUCache<>(8)));
+        for (IntFunction<EvictionPolicy<String, Integer>> policy : policies()) {
+            assertEquals(5 * 10, hotHitsInLastRounds(new LRUCache<>(8, policy.apply(8))));
+        }
+    }
+
+    @Test
+    public void shouldPromoteElementUsedAgainToProtectedSegment() {
+        LRUCache<String, Integer> cache = new LRUCache<>(4, new SegmentedLruPolicy<>(4));
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.get("A");
+        cache.set("C", 3);
+        cache.set("D", 4);
+        // A is protected, so B, the Least Recently Used element of the probation segment, is dropped
+        cache.set("E", 5);
+        assertNull(cache.get("B"));
+        assertEquals(1, cache.get("A"));
+    }
+
+    @Test
+    public void shouldMoveKeyThatComesBackFromGhostQueueToMainQueueWith2Q() {
+        LRUCache<String, Integer> cache = new LRUCache<>(4, new TwoQueuePolicy<>(4));
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("D", 4);
+        // A is dropped from A1in, and remembered in A1out
+        cache.set("E", 5);
+        assertNull(cache.get("A"));
+        cache.set("A", 1);
+        // A is in Am now, so the new elements keep dropping the elements of A1in
+        cache.set("F", 6);
+        cache.set("G", 7);
+        cache.set("H", 8);
+        assertEquals(1, cache.get("A"));
+        assertEquals(4, cache.size());
+    }
+
+    @Test
+    public void shouldGrowRecencyTargetWhenKeyComesBackFromItsGhostListWithArc() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2, new ArcPolicy<>(2));
+        cache.set("A", 1);
+        cache.get("A");
+        cache.set("B", 2);
+        // B goes to B1, and A, used twice, stays
+        cache.set("C", 3);
+        assertNull(cache.get("B"));
+        assertEquals(1, cache.get("A"));
+        // B comes back from B1, so T1 is now allowed one element: C stays and A goes to B2
+        cache.set("B", 2);
+        assertEquals(3, cache.get("C"));
+        assertNull(cache.get("A"));
+    }
+
+    @Test
+    public void shouldStillAdaptArcTargetAfterShrinkingTheMaximumWeight() {
+        LRUCache<String, Integer> cache = new LRUCache<>(2, new ArcPolicy<>(2));
+        cache.set("A", 1);
+        cache.get("A");
+        cache.set("B", 2);
+        // B goes to B1, and nothing is inserted after it
+        cache.setMaximumWeight(1, Weigher.singleton());
+        assertNull(cache.get("B"));
+        cache.setMaximumWeight(Long.MAX_VALUE, Weigher.singleton());
+        // B comes back from B1 while there is room, so T1 is now allowed one element
+        cache.set("B", 2);
+        // A, the Least Recently Used element of T2, goes to B2
+        cache.set("C", 3);
+        // T1 is at its target, so B goes from T2, and C stays
+        cache.set("D", 4);
+        assertEquals(3, cache.get("C"));
+        assertNull(cache.get("B"));
+    }
+
+    @Test
+    public void shouldSetAllElementsOneAtATimeWithAnEvictionPolicy() {
+        LRUCache<String, Integer> cache = new LRUCache<>(3, new SegmentedLruPolicy<>(3));
+        cache.set("A", 1);
+        cache.get("A");
+        cache.setAll(Map.of("B", 2, "C", 3, "D", 4));
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.get("A"));
+    }
+
+    private static List<IntFunction<EvictionPolicy<String, Integer>>> policies() {
+        return Arrays.asList(SegmentedLruPolicy::new, TwoQueuePolicy::new, ArcPolicy::new);
+    }
+
+    // Uses each hot key twice, then runs 20 rounds, and counts the hits on the hot keys in the last 10
+    private static int hotHitsInLastRounds(LRUCache<String, Integer> cache) {
+        int hits = 0;
+        int cold = 0;
+        for (int hot = 0; hot < 5; hot++) {
+            access(cache, "hot" + hot);
+            access(cache, "hot" + hot);
+        }
+        for (int round = 0; round < 20; round++) {
+            for (int hot = 0; hot < 5; hot++) {
+                boolean hit = access(cache, "hot" + hot);
+                if (hit && round >= 10) {
+                    hits++;
+                }
+                access(cache, "cold" + cold++);
+            }
+        }
+        return hits;
+    }
+
+    private static boolean access(LRUCache<String, Integer> cache, String key) {
+        if (cache.get(key) != null) {
+            return true;
+        }
+        cache.set(key, 0);
+        return false;
+    }
+}
@@ -0,0 +1,80 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExpirySweeperTest {
+    LRUTimeForTests lruTimeForTests;
+    LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> cache;
+    ReentrantLock lock;
+    ScheduledExecutorService executor;
+
+    @BeforeEach
+    public void init(){
+        lruTimeForTests = new LRUTimeForTests();
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(100, lruTimeForTests);
+        lock = new ReentrantLock();
+        executor = Executors.newSingleThreadScheduledExecutor();
+        for (int i = 0; i < 10; i++) {
+            cache.set("K" + i, i, 1, 100 + i);
+        }
+    }
+
+    @AfterEach
+    public void tearDown(){
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void shouldRemoveAllExpiredItemsInSlices(){
+        try (ExpirySweeper sweeper = new ExpirySweeper(cache, lock, executor, 1, TimeUnit.HOURS, 3)) {
+            lruTimeForTests.setCurrentTimeInEpochMillis(105);
+            assertEquals(5, sweeper.sweep());
+            assertEquals(5, cache.size());
+            assertEquals(5, cache.get("K5"));
+        }
+    }
+
+    @Test
+    public void shouldNotWaitForTheLockIfTheCacheIsInUse() throws Exception {
+        try (ExpirySweeper sweeper = new ExpirySweeper(cache, lock, executor, 1, TimeUnit.HOURS, 3)) {
+            lruTimeForTests.setCurrentTimeInEpochMillis(1000);
+            lock.lock();
+            try {
+                assertEquals(0, executor.submit(sweeper::sweep).get());
+            } finally {
+                lock.unlock();
+            }
+            assertEquals(10, cache.size());
+        }
+    }
+
+    @Test
+    public void shouldSweepPeriodically() throws Exception {
+        try (ExpirySweeper ignored = new ExpirySweeper(cache, lock, 1, TimeUnit.MILLISECONDS)) {
+            lruTimeForTests.setCurrentTimeInEpochMillis(1000);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (sizeUnderLock() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(1);
+            }
+            assertEquals(0, sizeUnderLock());
+        }
+    }
+
+    private int sizeUnderLock() {
+        lock.lock();
+        try {
+            return cache.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
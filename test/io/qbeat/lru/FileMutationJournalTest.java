@@ -0,0 +1,198 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMutationJournalTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    public void shouldRecoverSetsRemovalsAndEvictionsInOrder() throws IOException {
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.EVERY_WRITE)) {
+            LRUCache<String, Integer> cache = new LRUCache<>(3);
+            cache.setMutationJournal(journal);
+            cache.set("A", 1);
+            cache.set("B", 2);
+            cache.set("C", 3);
+            cache.set("A", 10);
+            // B is the Least Recently Used element, and is evicted
+            cache.set("D", 4);
+        }
+
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.EVERY_WRITE)) {
+            LRUCache<String, Integer> restored = new LRUCache<>(3);
+            restored.restore(journal.recover());
+            assertEquals(3, restored.size());
+            assertNull(restored.get("B"));
+            assertEquals(10, restored.get("A"));
+            // C was the Least Recently Set element, so it is dropped first
+            restored.set("E", 5);
+            assertNull(restored.get("C"));
+            assertEquals(4, restored.get("D"));
+        }
+    }
+
+    @Test
+    public void shouldReplayTheRecordsAfterTheLatestCheckpoint() throws IOException {
+        LRUTimeForTests lruTimeForTests = new LRUTimeForTests();
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.BATCHED)) {
+            LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(3, lruTimeForTests);
+            cache.setMutationJournal(journal);
+            cache.set("A", 1, 1, 1000);
+            cache.set("B", 2, 5, 5000);
+            journal.checkpoint(cache.snapshot());
+            cache.set("C", 3, 2, 5000);
+            cache.remove("A");
+            cache.set("B", 20, 7, 6000);
+        }
+        // The snapshot replaces the segments before it
+        assertEquals(1, files("snapshot-").size());
+        assertEquals(1, files("segment-").size());
+
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.BATCHED)) {
+            lruTimeForTests.setCurrentTimeInEpochMillis(5500);
+            LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> restored = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(3, lruTimeForTests);
+            restored.restore(journal.recover());
+            // C expired while the cache was down
+            assertEquals(1, restored.size());
+            assertEquals(20, restored.get("B"));
+        }
+    }
+
+    @Test
+    public void shouldRecoverUpToATornRecord() throws IOException {
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.NONE)) {
+            LRUCache<String, Integer> cache = new LRUCache<>(3);
+            cache.setMutationJournal(journal);
+            cache.set("A", 1);
+            cache.set("B", 2);
+        }
+        // A crash in the middle of the last record
+        Path segment = files("segment-").get(0);
+        byte[] bytes = Files.readAllBytes(segment);
+        Files.write(segment, Arrays.copyOf(bytes, bytes.length - 3));
+
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.NONE)) {
+            CacheSnapshot<String, Integer> recovered = journal.recover();
+            assertEquals(1, recovered.size());
+            assertEquals("A", recovered.keyAt(0));
+            assertEquals(MutationJournal.NO_PRIORITY, recovered.priorityAt(0));
+            assertEquals(MutationJournal.NO_EXPIRY_TIMESTAMP, recovered.expiryTimestampAt(0));
+
+            // The next records go to a new segment, after the torn one
+            LRUCache<String, Integer> cache = new LRUCache<>(3);
+            cache.restore(recovered);
+            cache.setMutationJournal(journal);
+            cache.set("C", 3);
+        }
+        try (FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.NONE)) {
+            CacheSnapshot<String, Integer> recovered = journal.recover();
+            assertEquals(2, recovered.size());
+            assertEquals("C", recovered.keyAt(1));
+        }
+    }
+
+    @Test
+    public void shouldCompactSegmentsToTheLatestRecordOfEachKey() throws IOException {
+        // Segments of a single record, compacted by hand rather than in the background
+        try (FileMutationJournal<String, Integer> journal = new FileMutationJournal<>(directory, Codec.strings(),
+                Codec.integers(), FsyncPolicy.EVERY_WRITE, 1, 100, Integer.MAX_VALUE)) {
+            LRUCacheWithPriorities<String, Integer> cache = new LRUCacheWithPriorities<>(2);
+            cache.setMutationJournal(journal);
+            cache.set("A", 1, 3);
+            cache.set("B", 2, 1);
+            cache.set("A", 10, 2);
+            cache.set("C", 3, 5);
+            assertEquals(6, files("segment-").size());
+
+            journal.compact();
+            assertEquals(2, files("segment-").size());
+            CacheSnapshot<String, Integer> recovered = journal.recover();
+            assertEquals(2, recovered.size());
+            assertEquals("A", recovered.keyAt(0));
+            assertEquals(10, recovered.valueAt(0));
+            assertEquals(2, recovered.priorityAt(0));
+            assertEquals("C", recovered.keyAt(1));
+        }
+    }
+
+    @Test
+    public void shouldKeepRemovalsWhenCompactedSegmentsAreLeftBehindByACrash() throws IOException {
+        try (FileMutationJournal<String, Integer> journal = new FileMutationJournal<>(directory, Codec.strings(),
+                Codec.integers(), FsyncPolicy.EVERY_WRITE, 1, 100, Integer.MAX_VALUE)) {
+            LRUCache<String, Integer> cache = new LRUCache<>(1);
+            cache.setMutationJournal(journal);
+            cache.set("A", 1);
+            // A is evicted
+            cache.set("B", 2);
+            List<Path> segments = files("segment-");
+            Path firstSegment = directory.resolve("first.copy");
+            Files.copy(segments.get(0), firstSegment);
+
+            journal.compact();
+            // A crash between the move of the compacted segment and the deletes
+            Files.copy(firstSegment, segments.get(0));
+            CacheSnapshot<String, Integer> recovered = journal.recover();
+            assertEquals(1, recovered.size());
+            assertEquals("B", recovered.keyAt(0));
+        }
+    }
+
+    @Test
+    public void shouldRecordTheElementsEvictionPoliciesActuallyDrop() throws IOException {
+        Random random = new Random(42);
+        LRUCache<Integer, Integer> cache = new LRUCache<>(8, new ArcPolicy<>(8));
+        cache.setMaximumWeight(12, (key, value) -> value);
+        try (FileMutationJournal<Integer, Integer> journal = new FileMutationJournal<>(directory, Codec.integers(),
+                Codec.integers(), FsyncPolicy.NONE)) {
+            cache.setMutationJournal(journal);
+            for (int i = 0; i < 20000; i++) {
+                // Heavy elements take several evictions
+                cache.set(random.nextInt(16), 1 + random.nextInt(6));
+            }
+        }
+        try (FileMutationJournal<Integer, Integer> journal = new FileMutationJournal<>(directory, Codec.integers(),
+                Codec.integers(), FsyncPolicy.NONE)) {
+            assertEquals(keys(cache.snapshot()), keys(journal.recover()));
+        }
+    }
+
+    @Test
+    public void shouldRejectRecordsOnceClosed() throws IOException {
+        FileMutationJournal<String, Integer> journal = journal(FsyncPolicy.BATCHED);
+        journal.close();
+        assertThrows(IllegalStateException.class, () -> journal.recordRemoval("A"));
+    }
+
+    private FileMutationJournal<String, Integer> journal(FsyncPolicy fsyncPolicy) throws IOException {
+        return new FileMutationJournal<>(directory, Codec.strings(), Codec.integers(), fsyncPolicy);
+    }
+
+    private static Set<Integer> keys(CacheSnapshot<Integer, Integer> snapshot) {
+        Set<Integer> keys = new HashSet<>();
+        for (int i = 0; i < snapshot.size(); i++) {
+            keys.add(snapshot.keyAt(i));
+        }
+        return keys;
+    }
+
+    private List<Path> files(String prefix) throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().startsWith(prefix)).sorted().collect(Collectors.toList());
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrequencySketchTest {
+    FrequencySketch sketch;
+
+    @BeforeEach
+    public void init(){
+        sketch = new FrequencySketch(64);
+    }
+
+    @Test
+    public void shouldCountEachKey(){
+        for (int i = 0; i < 5; i++) {
+            sketch.increment("A");
+        }
+        sketch.increment("B");
+        assertEquals(5, sketch.frequency("A"));
+        assertEquals(1, sketch.frequency("B"));
+        assertEquals(0, sketch.frequency("C"));
+    }
+
+    @Test
+    public void shouldStopCountingAtTheMaxFrequency(){
+        for (int i = 0; i < 100; i++) {
+            sketch.increment(42);
+        }
+        assertEquals(FrequencySketch.MAX_FREQUENCY, sketch.frequency(42));
+    }
+
+    @Test
+    public void shouldHalveTheFrequenciesOnceTheSampleSizeIsReached(){
+        for (int i = 0; i < 8; i++) {
+            sketch.increment("A");
+        }
+        // 64 longs, so the frequencies are halved after 640 increments
+        for (int key = 0; key < 632; key++) {
+            sketch.increment(key);
+        }
+        assertTrue(sketch.frequency("A") <= 4);
+        assertTrue(sketch.frequency("A") >= 3);
+    }
+
+    @Test
+    public void shouldRejectLessThanOneExpectedKey(){
+        assertThrows(IllegalArgumentException.class, () -> new FrequencySketch(0));
+    }
+}
@@ -0,0 +1,103 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IntIntLRUCacheTest {
+    IntIntLRUCache cache;
+
+    @BeforeEach
+    public void init(){
+        cache = new IntIntLRUCache(3);
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set(1, 10);
+        assertEquals(10, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set(1, 10);
+        cache.set(1, 2);
+        assertEquals(2, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldReturnMissingValueIfElementNotInCache(){
+        assertEquals(IntIntLRUCache.DEFAULT_MISSING_VALUE, cache.get(2));
+        assertFalse(cache.containsKey(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldReturnConfiguredMissingValueIfElementNotInCache(){
+        cache = new IntIntLRUCache(3, -1);
+        assertEquals(-1, cache.get(2));
+    }
+
+    @Test
+    public void shouldDeleteLastUsedElementWhenCapacityReached(){
+        cache.set(1, 10);
+        cache.set(2, 2);
+        cache.set(3, 3);
+        cache.set(4, 8);
+        assertFalse(cache.containsKey(1));
+        assertEquals(2, cache.get(2));
+        assertEquals(3, cache.get(3));
+        assertEquals(8, cache.get(4));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set(1, 10);
+        cache.set(2, 2);
+        cache.set(3, 3);
+        cache.get(1);
+        cache.set(4, 8);
+        assertEquals(10, cache.get(1));
+        assertFalse(cache.containsKey(2));
+        assertEquals(3, cache.get(3));
+        assertEquals(8, cache.get(4));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldKeepFindingCollidingKeysAfterEvictions(){
+        cache = new IntIntLRUCache(64);
+        for (int key = 0; key < 10_000; key++) {
+            cache.set(key * 1024, key);
+        }
+        for (int key = 10_000 - 64; key < 10_000; key++) {
+            assertEquals(key, cache.get(key * 1024));
+        }
+        assertFalse(cache.containsKey((10_000 - 65) * 1024));
+        assertEquals(64, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
+        cache = new IntIntLRUCache(1);
+        cache.set(1, 10);
+        cache.set(2, 2);
+        assertFalse(cache.containsKey(1));
+        assertEquals(2, cache.get(2));
+    }
+
+    @Test
+    public void shouldLoadMissingValueAndSetIt(){
+        cache.set(5, 50);
+        assertEquals(50, cache.get(5, key -> -1));
+        assertEquals(60, cache.get(6, key -> (int) key * 10));
+        assertEquals(60, cache.get(6));
+        assertThrows(IllegalStateException.class, () -> cache.get(7, key -> { throw new IllegalStateException(); }));
+        assertFalse(cache.containsKey(7));
+        assertEquals(2, cache.size());
+    }
+}
@@ -3,14 +3,24 @@ package io.qbeat.lru;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class LRUCacheTest {
-    LRUCache cache;
+    LRUCache<String, Integer> cache;
 
     @BeforeEach
     public void init(){
-        cache = new LRUCache(3);
+        cache = new LRUCache<>(3);
     }
 
     @Test
@@ -82,10 +92,256 @@ class LRUCacheTest {
 
     @Test
     public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
-        cache = new LRUCache(1);
+        cache = new LRUCache<>(1);
         cache.set("A", 10);
         cache.set("B", 2);
         assertNull(cache.get("A"));
         assertEquals(2, cache.get("B"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldGetAllElementsThatAreInCacheAndMoveThemOnTop(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        Map<String, Integer> values = cache.getAll(Arrays.asList("A", "X", "B"));
+        assertEquals(2, values.size());
+        assertEquals(10, values.get("A"));
+        assertEquals(2, values.get("B"));
+        cache.set("D", 8);
+        assertNull(cache.get("C"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldSetAllElementsLikeOneSetPerElement(){
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            LRUCache<String, Integer> batched = new LRUCache<>(5);
+            LRUCache<String, Integer> oneByOne = new LRUCache<>(5);
+            for (int batch = 0; batch < 10; batch++) {
+                Map<String, Integer> values = new LinkedHashMap<>();
+                int batchSize = random.nextInt(8);
+                for (int i = 0; i < batchSize; i++) {
+                    values.put("K" + random.nextInt(12), random.nextInt());
+                }
+                batched.setAll(values);
+                values.forEach(oneByOne::set);
+                assertEquals(oneByOne.toString(), batched.toString());
+            }
+        }
+    }
+
+    @Test
+    public void shouldLoadMissingElementAndSetIt(){
+        cache.set("A", 10);
+        AtomicInteger loads = new AtomicInteger();
+        assertEquals(10, cache.get("A", key -> loads.incrementAndGet()));
+        assertEquals(0, loads.get());
+        assertEquals(1, cache.get("B", key -> loads.incrementAndGet()));
+        assertEquals(1, cache.get("B"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldNotSetAnythingIfLoaderFailsOrReturnsNull(){
+        IllegalStateException failure = new IllegalStateException("backend is down");
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> cache.get("A", key -> { throw failure; })));
+        assertNull(cache.get("A", key -> null));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldRecordHitsMissesEvictionsAndLoads(){
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("D", 4);
+        assertEquals(2, cache.get("B"));
+        assertNull(cache.get("A"));
+        cache.getAll(Arrays.asList("C", "D", "E"));
+        assertEquals(5, cache.get("E", key -> 5));
+        assertThrows(IllegalStateException.class, () -> cache.get("F", key -> { throw new IllegalStateException(); }));
+
+        CacheStats stats = cache.stats();
+        assertEquals(3, stats.hitCount());
+        assertEquals(4, stats.missCount());
+        assertEquals(2, stats.evictionCount(RemovalCause.LEAST_RECENTLY_USED));
+        assertEquals(2, stats.evictionCount());
+        assertEquals(1, stats.loadSuccessCount());
+        assertEquals(1, stats.loadFailureCount());
+        assertTrue(stats.elementsPerPriority().isEmpty());
+    }
+
+    @Test
+    public void shouldDeliverRemovalsInBatchesOnTheExecutor(){
+        List<Runnable> tasks = new ArrayList<>();
+        List<String> removals = new ArrayList<>();
+        cache.setRemovalListener((key, value, cause) -> removals.add(key + "=" + value + " " + cause), tasks::add);
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.set("A", 10);
+        cache.set("D", 4);
+        cache.set("E", 5);
+        // Nothing runs on the thread that changes the cache, and a single task delivers all the removals
+        assertTrue(removals.isEmpty());
+        assertEquals(1, tasks.size());
+        tasks.remove(0).run();
+        assertEquals(Arrays.asList("A=1 REPLACED", "B=2 LEAST_RECENTLY_USED", "C=3 LEAST_RECENTLY_USED"), removals);
+
+        cache.set("F", 6);
+        assertEquals(1, tasks.size());
+    }
+
+    @Test
+    public void shouldRecordNothingByDefault(){
+        cache.set("A", 1);
+        cache.get("A");
+        cache.get("B");
+        assertEquals(0, cache.stats().requestCount());
+        assertEquals(1.0, cache.stats().hitRate());
+    }
+
+    @Test
+    public void shouldNotLetAScanOfColdKeysFlushHotKeysWithTinyLfu(){
+        cache.setAdmissionPolicy(new TinyLfuAdmissionPolicy(3));
+        for (int i = 0; i < 3; i++) {
+            cache.set("A", 1);
+            cache.set("B", 2);
+            cache.set("C", 3);
+        }
+        for (int i = 0; i < 10; i++) {
+            cache.set("Cold" + i, i);
+        }
+        assertEquals(1, cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertNull(cache.get("Cold9"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldAdmitKeyMoreFrequentThanTheLeastRecentlyUsedWithTinyLfu(){
+        cache.setAdmissionPolicy(new TinyLfuAdmissionPolicy(3));
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("D");
+        cache.get("D");
+        cache.set("D", 4);
+        assertNull(cache.get("A"));
+        assertEquals(4, cache.get("D"));
+
+        Map<String, Integer> cold = new LinkedHashMap<>();
+        cold.put("E", 5);
+        cold.put("F", 6);
+        cache.setAll(cold);
+        assertNull(cache.get("E"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldDropLeastRecentlyUsedElementsUntilHeavierElementFits(){
+        cache = new LRUCache<>(10);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 3);
+        cache.set("B", 3);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.set("D", 6);
+        assertNull(cache.get("B"));
+        assertNull(cache.get("C"));
+        assertEquals(3, cache.get("A"));
+        assertEquals(9, cache.weightedSize());
+
+        // Neither too heavy an element is cached, nor the previous value of its key kept
+        cache.set("A", 11);
+        assertNull(cache.get("A"));
+        assertEquals(6, cache.weightedSize());
+    }
+
+    @Test
+    public void shouldDropOtherElementsWhenUpdateMakesElementHeavier(){
+        cache = new LRUCache<>(10);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 4);
+        cache.set("B", 4);
+        // A is the Least Recently Used element, but it is the one being set
+        cache.set("A", 8);
+        assertNull(cache.get("B"));
+        assertEquals(8, cache.get("A"));
+        assertEquals(1, cache.size());
+        assertEquals(8, cache.weightedSize());
+    }
+
+    @Test
+    public void shouldKeepMaximumWeightWhenSettingAll(){
+        LRUCache<String, Integer> batched = new LRUCache<>(10);
+        LRUCache<String, Integer> oneByOne = new LRUCache<>(10);
+        batched.setMaximumWeight(3, Weigher.singleton());
+        oneByOne.setMaximumWeight(3, Weigher.singleton());
+        Map<String, Integer> values = new LinkedHashMap<>();
+        for (int i = 0; i < 6; i++) {
+            values.put("K" + i, i);
+        }
+        batched.setAll(values);
+        values.forEach(oneByOne::set);
+        assertEquals(3, batched.size());
+        assertEquals(3, batched.weightedSize());
+        assertEquals(oneByOne.toString(), batched.toString());
+    }
+
+    @Test
+    public void shouldWeighElementsAlreadyInCacheWhenGivenMaximumWeight(){
+        cache.set("A", 4);
+        cache.set("B", 5);
+        cache.set("C", 6);
+        assertEquals(3, cache.weightedSize());
+        cache.setMaximumWeight(12, (key, value) -> value);
+        assertNull(cache.get("A"));
+        assertEquals(11, cache.weightedSize());
+        assertThrows(IllegalArgumentException.class, () -> cache.set("D", -1));
+        assertThrows(IllegalArgumentException.class, () -> cache.setMaximumWeight(-1, (key, value) -> value));
+    }
+
+    @Test
+    public void shouldReportAnUpdateThatWouldNeverFitAsAnEviction(){
+        List<String> removals = new ArrayList<>();
+        cache = new LRUCache<>(10);
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.setRemovalListener((key, value, cause) -> removals.add(key + "=" + value + " " + cause), Runnable::run);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 4);
+        cache.set("B", 4);
+        // A is set again like a new one, and its previous value is replaced once the new one is inserted
+        cache.set("A", 8);
+        // Whereas a value heavier than the maximum weight is never inserted, so the previous one is evicted
+        cache.set("A", 11);
+        assertNull(cache.get("A"));
+        assertEquals(Arrays.asList("A=4 REPLACED", "B=4 LEAST_RECENTLY_USED", "A=8 TOO_HEAVY"), removals);
+        assertEquals(1, cache.stats().evictionCount(RemovalCause.TOO_HEAVY));
+        assertEquals(2, cache.stats().evictionCount());
+    }
+
+    @Test
+    public void shouldDropTheQueuedRemovalsWhenTheExecutorRejectsTheDelivery(){
+        List<String> removals = new ArrayList<>();
+        AtomicBoolean rejecting = new AtomicBoolean(true);
+        cache.setRemovalListener((key, value, cause) -> removals.add(key + "=" + value + " " + cause), task -> {
+            if (rejecting.get()) {
+                throw new RejectedExecutionException();
+            }
+            task.run();
+        });
+        cache.set("A", 1);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        // The eviction of A is dropped along with the rejected delivery
+        cache.set("D", 4);
+        rejecting.set(false);
+        cache.set("E", 5);
+        assertEquals(Arrays.asList("B=2 LEAST_RECENTLY_USED"), removals);
+    }
+}
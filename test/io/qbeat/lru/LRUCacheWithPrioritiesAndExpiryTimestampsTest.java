@@ -3,18 +3,24 @@ package io.qbeat.lru;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNull;
 
 class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
 
     LRUTimeForTests lruTimeForTests = new LRUTimeForTests();
-    LRUCacheWithPrioritiesAndExpiryTimestamps cache;
+    LRUCacheWithPrioritiesAndExpiryTimestamps<String, Integer> cache;
 
     @BeforeEach
     public void init(){
         lruTimeForTests = new LRUTimeForTests();
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(3, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(3, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
     }
 
@@ -64,6 +70,122 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     }
 
 
+    @Test
+    public void shouldRemoveItemThatExpiresFarInTheFutureOnlyOnceItHasExpired(){
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(2, lruTimeForTests);
+        cache.set("A", 1, 9, 10_000_000);
+        cache.set("B", 2, 1, 90_000_000_000L);
+        lruTimeForTests.setCurrentTimeInEpochMillis(10_000_000);
+        cache.set("C", 3, 1, 90_000_000_000L);
+        assertEquals(1, cache.get("A"));
+        assertNull(cache.get("B"));
+        lruTimeForTests.setCurrentTimeInEpochMillis(10_000_001);
+        cache.set("D", 4, 1, 90_000_000_000L);
+        assertNull(cache.get("A"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(4, cache.get("D"));
+    }
+
+    @Test
+    public void shouldNotRemoveItemWhoseExpiryTimestampWasExtended(){
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(2, lruTimeForTests);
+        cache.set("A", 1, 9, 100);
+        cache.set("B", 2, 1, 5000);
+        cache.set("A", 1, 9, 3000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(200);
+        cache.set("C", 3, 1, 5000);
+        assertEquals(1, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+    }
+
+    @Test
+    public void shouldRemoveItemAtMostOneTickAfterItHasExpiredWithCoarseResolution(){
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(2, lruTimeForTests, 1000);
+        cache.set("A", 1, 9, 1500);
+        cache.set("B", 2, 1, 90_000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(1999);
+        cache.set("C", 3, 1, 90_000);
+        assertEquals(1, cache.get("A"));
+        assertNull(cache.get("B"));
+        lruTimeForTests.setCurrentTimeInEpochMillis(2000);
+        cache.set("D", 4, 1, 90_000);
+        assertNull(cache.get("A"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(4, cache.get("D"));
+    }
+
+    @Test
+    public void shouldCleanUpAllExpiredItems(){
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 200);
+        cache.set("C", 3, 1, 300);
+        lruTimeForTests.setCurrentTimeInEpochMillis(250);
+        assertEquals(2, cache.cleanUp());
+        assertEquals(1, cache.size());
+        assertNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(0, cache.cleanUp());
+    }
+
+    @Test
+    public void shouldCleanUpAtMostTheGivenNumberOfExpiredItems(){
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 200);
+        cache.set("C", 3, 1, 300);
+        lruTimeForTests.setCurrentTimeInEpochMillis(1000);
+        assertEquals(2, cache.cleanUp(2));
+        assertEquals(1, cache.size());
+        assertEquals(1, cache.cleanUp(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldTreatExpiredItemAsMissingAndRemoveIt(){
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 200);
+        lruTimeForTests.setCurrentTimeInEpochMillis(100);
+        assertEquals(1, cache.get("A"));
+        lruTimeForTests.setCurrentTimeInEpochMillis(101);
+        assertNull(cache.get("A"));
+        assertEquals(1, cache.size());
+        assertEquals(0, cache.cleanUp());
+        assertEquals(2, cache.get("B"));
+    }
+
+    @Test
+    public void shouldRemoveExpiredItemFirstAndThenLowestPriorityWithBoundedPriorities(){
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(2, lruTimeForTests, 1, 255);
+        cache.set("A", 1, 200, 100);
+        cache.set("B", 2, 100, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(500);
+        cache.set("C", 3, 150, 1000);
+        assertNull(cache.get("A"));
+        cache.set("D", 4, 250, 1000);
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(4, cache.get("D"));
+    }
+
+    @Test
+    public void shouldKeepOrderWhenItemsMoveBackAndForthBetweenPriorities(){
+        cache.set("A", 1, 1, 1000);
+        cache.set("B", 2, 1, 1000);
+        cache.set("A", 3, 5, 2000);
+        cache.set("C", 4, 1, 1000);
+        cache.set("A", 5, 1, 3000);
+        cache.get("B");
+        cache.set("D", 6, 1, 1000);
+        assertNull(cache.get("C"));
+        cache.set("E", 7, 1, 1000);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(6, cache.get("D"));
+        assertEquals(7, cache.get("E"));
+        assertEquals(3, cache.size());
+    }
+
     @Test
     public void shouldReturnNullIfElementNotInCache(){
         final Integer value = cache.get("B");
@@ -118,7 +240,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
 
     @Test
     public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(1, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(1, lruTimeForTests);
         cache.set("A", 10,3, 1000);
         cache.set("B", 2,3, 1000);
         assertNull(cache.get("A"));
@@ -128,7 +250,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario1(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -147,7 +269,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario2(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -170,7 +292,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario3(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -194,7 +316,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario4(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -221,7 +343,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario5(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -249,7 +371,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario6(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -279,7 +401,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario7(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -309,7 +431,7 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
     // Not a Unit Test per se. That is a scenario, that checks that everything was executed successfully
     @Test
     public void runScenario8(){
-        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps(5, lruTimeForTests);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(5, lruTimeForTests);
         lruTimeForTests.setCurrentTimeInEpochMillis(0L);
         cache.set("A", -1 ,5, 905);
         cache.set("B", 0,1, 23049);
@@ -334,4 +456,185 @@ class LRUCacheWithPrioritiesAndExpiryTimestampsTest {
         assertEquals(9, cache.get("D"));
         assertEquals(5, cache.size());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldGetAllElementsThatAreInCacheAndHaveNotExpired(){
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("A", 1);
+        values.put("B", 2);
+        cache.setAll(values, 1, 100);
+        cache.set("C", 3, 1, 200);
+        lruTimeForTests.setCurrentTimeInEpochMillis(150);
+        Map<String, Integer> found = cache.getAll(Arrays.asList("A", "B", "C", "D"));
+        assertEquals(1, found.size());
+        assertEquals(3, found.get("C"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldSetAllElementsAndDropExpiredOnesFirst(){
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 0, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(500);
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("C", 3);
+        values.put("D", 4);
+        cache.setAll(values, 2, 1000);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(4, cache.get("D"));
+        values.put("E", 5);
+        cache.setAll(values, 2, 1000);
+        assertNull(cache.get("B"));
+        assertEquals(5, cache.get("E"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldLoadElementAgainOnceItHasExpired(){
+        assertEquals(1, cache.get("A", 1, 100, key -> 1));
+        assertEquals(1, cache.get("A", 1, 200, key -> 2));
+        lruTimeForTests.setCurrentTimeInEpochMillis(101);
+        assertEquals(3, cache.get("A", 1, 200, key -> 3));
+        lruTimeForTests.setCurrentTimeInEpochMillis(200);
+        assertEquals(3, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveElementWhetherItHasExpiredOrNot(){
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(500);
+        assertEquals(1, cache.remove("A"));
+        assertEquals(2, cache.remove("B"));
+        assertNull(cache.remove("B"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.cleanUp());
+    }
+
+    @Test
+    public void shouldRecordExpiredElementsAsEvictions(){
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 1000);
+        cache.set("C", 3, 2, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(101);
+        assertNull(cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        cache.set("D", 4, 2, 1000);
+        // B has the lowest priority, while C and D have a higher one
+        cache.set("E", 5, 2, 1000);
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.evictionCount(RemovalCause.EXPIRED));
+        assertEquals(1, stats.evictionCount(RemovalCause.LOWEST_PRIORITY));
+        assertEquals(Map.of(2, 3L), stats.elementsPerPriority());
+
+        // C, D and E have the same priority, so the Least Recently Used one is dropped
+        cache.set("F", 6, 3, 200);
+        cache.remove("D");
+        assertEquals(Map.of(2, 1L, 3, 1L), cache.stats().elementsPerPriority());
+        lruTimeForTests.setCurrentTimeInEpochMillis(201);
+        assertEquals(1, cache.cleanUp());
+        stats = cache.stats();
+        assertEquals(2, stats.evictionCount(RemovalCause.EXPIRED));
+        assertEquals(1, stats.evictionCount(RemovalCause.LEAST_RECENTLY_USED));
+        assertEquals(Map.of(2, 1L), stats.elementsPerPriority());
+    }
+
+    @Test
+    public void shouldDropExpiredElementForAnyNewKeyWithTinyLfu(){
+        cache.setAdmissionPolicy(new TinyLfuAdmissionPolicy(3));
+        cache.set("A", 1, 1, 100);
+        cache.set("B", 2, 1, 1000);
+        cache.set("C", 3, 1, 1000);
+        cache.get("B");
+        cache.get("C");
+        cache.set("D", 4, 1, 1000);
+        assertNull(cache.get("D"));
+
+        lruTimeForTests.setCurrentTimeInEpochMillis(101);
+        cache.set("E", 5, 1, 1000);
+        assertEquals(5, cache.get("E"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+    }
+
+    @Test
+    public void shouldDropExpiredElementsFirstUntilHeavierElementFits(){
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(10, lruTimeForTests);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 3, 1, 5000);
+        cache.set("B", 3, 5, 500);
+        cache.set("C", 3, 5, 5000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(1000L);
+        // B has expired, so it goes first, and A, of the lowest priority, goes next
+        cache.set("D", 6, 5, 5000);
+        assertNull(cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(9, cache.weightedSize());
+
+        cache.set("C", 5, 5, 5000);
+        assertNull(cache.get("D"));
+        assertEquals(5, cache.weightedSize());
+    }
+
+    @Test
+    public void shouldReportEachRemovalWithItsCause(){
+        List<String> removals = new ArrayList<>();
+        cache.setRemovalListener((key, value, cause) -> removals.add(key + "=" + value + " " + cause), Runnable::run);
+        cache.set("A", 1, 1, 500);
+        cache.set("B", 2, 5, 5000);
+        cache.set("C", 3, 1, 5000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(1000L);
+        assertNull(cache.get("A"));
+        cache.remove("B");
+        cache.set("C", 30, 1, 5000);
+        cache.set("D", 4, 5, 5000);
+        cache.set("E", 5, 5, 5000);
+        cache.set("F", 6, 5, 5000);
+        assertEquals(Arrays.asList("A=1 EXPIRED", "B=2 EXPLICIT", "C=3 REPLACED", "C=30 LOWEST_PRIORITY"), removals);
+    }
+
+    @Test
+    public void shouldReportAnUpdateThatWouldNeverFitAsAnEviction(){
+        List<String> removals = new ArrayList<>();
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(10, lruTimeForTests);
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.setRemovalListener((key, value, cause) -> removals.add(key + "=" + value + " " + cause), Runnable::run);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 4, 1, 5000);
+        cache.set("B", 4, 5, 5000);
+        cache.set("A", 8, 5, 5000);
+        cache.set("A", 11, 5, 5000);
+        assertNull(cache.get("A"));
+        assertEquals(Arrays.asList("A=4 REPLACED", "B=4 LEAST_RECENTLY_USED", "A=8 TOO_HEAVY"), removals);
+        assertEquals(1, cache.stats().evictionCount(RemovalCause.TOO_HEAVY));
+        assertEquals(0, cache.weightedSize());
+    }
+
+    @Test
+    public void shouldNotExpireElementsEarlyWhenTheClockMovesBackwards(){
+        lruTimeForTests.setCurrentTimeInEpochMillis(5000L);
+        cache = new LRUCacheWithPrioritiesAndExpiryTimestamps<>(2, lruTimeForTests);
+        lruTimeForTests.setCurrentTimeInEpochMillis(0L);
+        cache.set("A", 1, 9, 1000);
+        cache.set("B", 2, 1, 5000);
+        // A has not expired yet, so B is the one dropped, as the lowest priority
+        cache.set("C", 3, 1, 5000);
+        assertEquals(1, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(0, cache.cleanUp());
+
+        // Once it does expire, it is polled as usual
+        lruTimeForTests.setCurrentTimeInEpochMillis(2000L);
+        assertEquals(1, cache.cleanUp());
+        assertEquals(1, cache.size());
+    }
+}
@@ -3,15 +3,19 @@ package io.qbeat.lru;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class LRUCacheWithPrioritiesTest {
 
-    LRUCacheWithPriorities cache;
+    LRUCacheWithPriorities<String, Integer> cache;
 
     @BeforeEach
     public void init(){
-        cache = new LRUCacheWithPriorities(3);
+        cache = new LRUCacheWithPriorities<>(3);
     }
 
     @Test
@@ -98,10 +102,166 @@ class LRUCacheWithPrioritiesTest {
 
     @Test
     public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
-        cache = new LRUCacheWithPriorities(1);
+        cache = new LRUCacheWithPriorities<>(1);
         cache.set("A", 10,3);
         cache.set("B", 2,3);
         assertNull(cache.get("A"));
         assertEquals(2, cache.get("B"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void shouldRemoveItemWithLowestPriorityWithBoundedPriorities(){
+        cache = new LRUCacheWithPriorities<>(3, 1023);
+        cache.set("A", 10, 700);
+        cache.set("B", 2, 64);
+        cache.set("C", 3, 1023);
+        cache.set("D", 8, 5);
+        assertNull(cache.get("B"));
+        cache.set("D", 8, 900);
+        cache.set("E", 9, 800);
+        assertNull(cache.get("A"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(9, cache.get("E"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveLastUsedItemOfLowestPriorityWithBoundedPriorities(){
+        cache = new LRUCacheWithPriorities<>(3, 63);
+        cache.set("A", 10, 0);
+        cache.set("B", 2, 0);
+        cache.set("C", 3, 1);
+        cache.get("A");
+        cache.set("D", 8, 2);
+        assertNull(cache.get("B"));
+        assertEquals(10, cache.get("A"));
+        cache.set("E", 9, 2);
+        assertNull(cache.get("A"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldRejectPriorityOutOfBoundsWithoutRemovingAnyItem(){
+        cache = new LRUCacheWithPriorities<>(2, 63);
+        cache.set("A", 10, 1);
+        cache.set("B", 2, 2);
+        assertThrows(IllegalArgumentException.class, () -> cache.set("C", 3, 64));
+        assertThrows(IllegalArgumentException.class, () -> cache.set("A", 3, -1));
+        assertEquals(10, cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldSetAllElementsWithTheSamePriorityLikeOneSetPerElement(){
+        cache.set("A", 10, 5);
+        cache.set("B", 2, 5);
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("C", 3);
+        values.put("A", 11);
+        values.put("D", 4);
+        cache.setAll(values, 1);
+        // C is dropped for D, since by then A has moved to priority 1 too, and C is the Least Recently Used of them
+        assertNull(cache.get("C"));
+        assertEquals(11, cache.get("A"));
+        assertEquals(2, cache.get("B"));
+        assertEquals(4, cache.get("D"));
+        Map<String, Integer> found = cache.getAll(Arrays.asList("A", "C", "D"));
+        assertEquals(2, found.size());
+        assertEquals(11, found.get("A"));
+        assertEquals(4, found.get("D"));
+    }
+
+    @Test
+    public void shouldLoadMissingElementAndSetItWithTheGivenPriority(){
+        cache.set("A", 10, 1);
+        cache.set("B", 2, 1);
+        assertEquals(7, cache.get("C", 9, key -> 7));
+        assertEquals(2, cache.get("B", 0, key -> 8));
+        cache.set("D", 4, 5);
+        assertNull(cache.get("A"));
+        cache.set("E", 5, 5);
+        assertNull(cache.get("B"));
+        assertEquals(7, cache.get("C"));
+    }
+
+    @Test
+    public void shouldRecordEvictionsByCauseAndElementsPerPriority(){
+        cache.set("A", 1, 1);
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.set("B", 2, 5);
+        cache.set("C", 3, 5);
+        // A has the lowest priority, while B and C have a higher one
+        cache.set("D", 4, 5);
+        // All have the same priority, so the Least Recently Used one is dropped
+        cache.set("E", 5, 5);
+        cache.set("C", 6, 7);
+
+        CacheStats stats = cache.stats();
+        assertEquals(1, stats.evictionCount(RemovalCause.LOWEST_PRIORITY));
+        assertEquals(1, stats.evictionCount(RemovalCause.LEAST_RECENTLY_USED));
+        assertEquals(Map.of(5, 2L, 7, 1L), stats.elementsPerPriority());
+
+        cache.set("F", 7, 7);
+        cache.set("G", 8, 7);
+        cache.set("H", 9, 7);
+        stats = cache.stats();
+        assertEquals(3, stats.evictionCount(RemovalCause.LOWEST_PRIORITY));
+        assertEquals(2, stats.evictionCount(RemovalCause.LEAST_RECENTLY_USED));
+        assertEquals(Map.of(7, 3L), stats.elementsPerPriority());
+    }
+
+    @Test
+    public void shouldCompareNewKeyWithTheVictimOfTheLowestPriorityWithTinyLfu(){
+        cache.setAdmissionPolicy(new TinyLfuAdmissionPolicy(3));
+        cache.set("A", 1, 1);
+        cache.get("A");
+        cache.set("B", 2, 5);
+        cache.set("C", 3, 5);
+        // D is as frequent as B and C, but not as A, the victim of the lowest priority
+        cache.set("D", 4, 9);
+        assertNull(cache.get("D"));
+        assertEquals(1, cache.get("A"));
+
+        cache.get("E");
+        cache.get("E");
+        cache.get("E");
+        cache.set("E", 5, 0);
+        assertNull(cache.get("A"));
+        assertEquals(5, cache.get("E"));
+    }
+
+    @Test
+    public void shouldDropElementsWithLowestPriorityUntilHeavierElementFits(){
+        cache = new LRUCacheWithPriorities<>(10);
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 3, 1);
+        cache.set("B", 3, 5);
+        cache.set("C", 3, 1);
+        cache.set("D", 6, 5);
+        assertNull(cache.get("A"));
+        assertNull(cache.get("C"));
+        assertEquals(3, cache.get("B"));
+        assertEquals(9, cache.weightedSize());
+
+        // An update that makes D heavier drops B, even though D now has a lower priority
+        cache.set("B", 4, 5);
+        cache.set("D", 7, 1);
+        assertNull(cache.get("B"));
+        assertEquals(7, cache.get("D"));
+        assertEquals(7, cache.weightedSize());
+    }
+
+    @Test
+    public void shouldEvictTheElementOfAnUpdateThatWouldNeverFit(){
+        cache = new LRUCacheWithPriorities<>(10);
+        cache.setStatsCounter(new StripedStatsCounter());
+        cache.setMaximumWeight(10, (key, value) -> value);
+        cache.set("A", 4, 1);
+        cache.set("A", 11, 1);
+        assertNull(cache.get("A"));
+        assertEquals(1, cache.stats().evictionCount(RemovalCause.TOO_HEAVY));
+        assertEquals(0, cache.weightedSize());
+    }
+}
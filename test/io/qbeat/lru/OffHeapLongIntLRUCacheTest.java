@@ -0,0 +1,123 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OffHeapLongIntLRUCacheTest {
+    OffHeapLongIntLRUCache cache;
+
+    @BeforeEach
+    public void init(){
+        cache = new OffHeapLongIntLRUCache(3);
+    }
+
+    @AfterEach
+    public void close(){
+        cache.close();
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set(1, 10);
+        assertEquals(10, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set(1, 10);
+        cache.set(1, 2);
+        assertEquals(2, cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldReturnMissingValueIfElementNotInCache(){
+        assertEquals(LongIntLRUCache.DEFAULT_MISSING_VALUE, cache.get(2));
+        assertFalse(cache.containsKey(2));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldReturnConfiguredMissingValueIfElementNotInCache(){
+        cache = new OffHeapLongIntLRUCache(3, -1);
+        assertEquals(-1, cache.get(2));
+    }
+
+    @Test
+    public void shouldDeleteLastUsedElementWhenCapacityReached(){
+        cache.set(1L, 10);
+        cache.set(2L, 2);
+        cache.set(3L, 3);
+        cache.set(4L, 8);
+        assertFalse(cache.containsKey(1));
+        assertEquals(2, cache.get(2));
+        assertEquals(3, cache.get(3));
+        assertEquals(8, cache.get(4));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set(1, 10);
+        cache.set(2, 2);
+        cache.set(3, 3);
+        cache.get(1);
+        cache.set(4, 8);
+        assertEquals(10, cache.get(1));
+        assertFalse(cache.containsKey(2));
+        assertEquals(3, cache.get(3));
+        assertEquals(8, cache.get(4));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldKeepFindingCollidingKeysAfterEvictions(){
+        cache = new OffHeapLongIntLRUCache(64);
+        for (int key = 0; key < 10_000; key++) {
+            cache.set(key * 4_294_967_296L, key);
+        }
+        for (int key = 10_000 - 64; key < 10_000; key++) {
+            assertEquals(key, cache.get(key * 4_294_967_296L));
+        }
+        assertFalse(cache.containsKey((10_000 - 65) * 4_294_967_296L));
+        assertEquals(64, cache.size());
+    }
+
+    @Test
+    public void shouldRemoveOnlyElementIfCapacityIsOneAndNewOneIsInserted(){
+        cache = new OffHeapLongIntLRUCache(1);
+        cache.set(1, 10);
+        cache.set(2, 2);
+        assertFalse(cache.containsKey(1));
+        assertEquals(2, cache.get(2));
+    }
+
+    @Test
+    public void shouldFailAfterBeingClosed(){
+        cache.set(1L, 10);
+        cache.close();
+        assertThrows(IllegalStateException.class, () -> cache.get(1L));
+        assertThrows(IllegalStateException.class, () -> cache.set(2L, 2));
+    }
+
+    @Test
+    public void shouldLoadMissingValueAndSetIt(){
+        cache.set(5L, 50);
+        assertEquals(50, cache.get(5L, key -> -1));
+        assertEquals(60, cache.get(6, key -> (int) key * 10));
+        assertEquals(60, cache.get(6));
+        assertThrows(IllegalStateException.class, () -> cache.get(7, key -> { throw new IllegalStateException(); }));
+        assertFalse(cache.containsKey(7));
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void shouldRejectACapacityThatDoesNotFitInADirectBuffer(){
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapLongIntLRUCache((1 << 30) + 1));
+        assertThrows(IllegalArgumentException.class, () -> new OffHeapLongIntLRUCache(Integer.MAX_VALUE));
+    }
+}
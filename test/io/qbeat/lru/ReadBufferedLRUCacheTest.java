@@ -0,0 +1,169 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadBufferedLRUCacheTest {
+    ReadBufferedLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        // Draining on every get behaves exactly like an LRUCache
+        cache = new ReadBufferedLRUCache<>(3, 1, 4, 1);
+    }
+
+    @Test
+    public void shouldAddElementIfCapacityIsNotReached(){
+        cache.set("A", 10);
+        assertEquals(10, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldUpdateValueIfElementAlreadyInCache(){
+        cache.set("A", 10);
+        cache.set("A", 2);
+        assertEquals(2, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldReturnNullIfElementNotInCache(){
+        assertNull(cache.get("B"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldGetMoveItemsOnTopOfCache(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.set("D", 8);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(8, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldApplyBufferedAccessesWhenCleanUpIsCalled(){
+        cache = new ReadBufferedLRUCache<>(3, 1, 4, 4);
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.cleanUp();
+        cache.set("D", 8);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+    }
+
+    @Test
+    public void shouldApplyBufferedAccessesBeforeEvicting(){
+        cache = new ReadBufferedLRUCache<>(3, 1, 4, 4);
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        cache.get("A");
+        cache.set("D", 8);
+        assertEquals(10, cache.get("A"));
+        assertNull(cache.get("B"));
+    }
+
+    @Test
+    public void shouldIgnoreBufferedAccessesOfEvictedElements(){
+        cache = new ReadBufferedLRUCache<>(1, 1, 4, 4);
+        cache.set("A", 10);
+        cache.get("A");
+        cache.set("B", 2);
+        cache.get("B");
+        cache.set("A", 3);
+        cache.cleanUp();
+        assertNull(cache.get("B"));
+        assertEquals(3, cache.get("A"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void shouldRejectDrainThresholdLargerThanBuffer(){
+        assertThrows(IllegalArgumentException.class, () -> new ReadBufferedLRUCache<String, Integer>(3, 1, 4, 8));
+    }
+
+    @Test
+    public void shouldNotExceedCapacityWhenUsedByManyThreads() throws Exception {
+        cache = new ReadBufferedLRUCache<>(100, 4, 16, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final int thread = t;
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < 20_000; i++) {
+                    String key = "K" + ((i * 31 + thread) % 500);
+                    cache.set(key, i);
+                    Integer value = cache.get(key);
+                    assertTrue(value == null || value >= 0);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(100, cache.size());
+    }
+
+    @Test
+    public void shouldGetAllElementsThatAreInCacheAndMoveThemOnTop(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        cache.set("C", 3);
+        Map<String, Integer> values = cache.getAll(Arrays.asList("A", "X", "B"));
+        assertEquals(2, values.size());
+        assertEquals(10, values.get("A"));
+        cache.set("D", 8);
+        assertNull(cache.get("C"));
+        assertEquals(2, cache.get("B"));
+    }
+
+    @Test
+    public void shouldSetAllElementsLikeOneSetPerElement(){
+        cache.set("A", 10);
+        cache.set("B", 2);
+        Map<String, Integer> values = new LinkedHashMap<>();
+        values.put("C", 3);
+        values.put("A", 11);
+        values.put("D", 4);
+        cache.setAll(values);
+        assertNull(cache.get("B"));
+        assertEquals(11, cache.get("A"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(4, cache.get("D"));
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void shouldLoadMissingElementAndSetIt(){
+        cache.set("A", 10);
+        assertEquals(10, cache.get("A", key -> 1));
+        assertEquals(2, cache.get("B", key -> 2));
+        assertEquals(2, cache.get("B"));
+        assertThrows(IllegalStateException.class, () -> cache.get("C", key -> { throw new IllegalStateException(); }));
+        assertNull(cache.get("C"));
+        assertEquals(2, cache.size());
+    }
+}
@@ -0,0 +1,145 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RefreshAheadLRUCacheTest {
+    LRUTimeForTests lruTimeForTests;
+    // Runs the reloads only when asked to, so that the tests can see them in flight
+    Queue<Runnable> pendingReloads;
+    RefreshAheadLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        lruTimeForTests = new LRUTimeForTests();
+        pendingReloads = new ArrayDeque<>();
+        cache = new RefreshAheadLRUCache<>(2, lruTimeForTests, 0.1, pendingReloads::add);
+    }
+
+    @Test
+    public void shouldLoadOnMissWithoutReloading() {
+        assertEquals(1, cache.get("A", 1, 1000, key -> 1));
+        assertEquals(1, cache.get("A", 1, 1000, key -> 2));
+        assertTrue(pendingReloads.isEmpty());
+    }
+
+    @Test
+    public void shouldReturnCurrentValueAndReloadOnceInTheWindow() {
+        AtomicInteger reloads = new AtomicInteger();
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(899);
+        assertEquals(1, cache.get("A", 1, 1000, key -> reloads.incrementAndGet() + 1));
+        assertTrue(pendingReloads.isEmpty());
+
+        lruTimeForTests.setCurrentTimeInEpochMillis(900);
+        assertEquals(1, cache.get("A", 1, 1000, key -> reloads.incrementAndGet() + 1));
+        assertEquals(1, cache.get("A", 1, 1000, key -> reloads.incrementAndGet() + 1));
+        assertEquals(1, pendingReloads.size());
+
+        runPendingReloads();
+        assertEquals(1, reloads.get());
+        assertEquals(2, cache.getIfPresent("A"));
+
+        // The reloaded element lives for a whole time to live again
+        lruTimeForTests.setCurrentTimeInEpochMillis(1500);
+        assertEquals(2, cache.getIfPresent("A"));
+        assertTrue(pendingReloads.isEmpty());
+    }
+
+    @Test
+    public void shouldKeepThePriorityOfTheReloadedElement() {
+        cache.set("A", 1, 5, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(950);
+        cache.get("A", 1, 1000, key -> 2);
+        runPendingReloads();
+
+        cache.set("B", 3, 1, 1000);
+        cache.set("C", 4, 1, 1000);
+        assertEquals(2, cache.getIfPresent("A"));
+        assertNull(cache.getIfPresent("B"));
+    }
+
+    @Test
+    public void shouldKeepCurrentValueAndTryAgainWhenReloadFails() {
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(950);
+        cache.get("A", 1, 1000, key -> { throw new IllegalStateException(); });
+        runPendingReloads();
+        assertEquals(1, cache.getIfPresent("A"));
+
+        cache.get("A", 1, 1000, key -> 2);
+        runPendingReloads();
+        assertEquals(2, cache.getIfPresent("A"));
+    }
+
+    @Test
+    public void shouldNotPassAFailedReloadOnToTheExecutor() throws Exception {
+        List<Throwable> uncaught = new CopyOnWriteArrayList<>();
+        ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setUncaughtExceptionHandler((t, e) -> uncaught.add(e));
+            return thread;
+        });
+        cache = new RefreshAheadLRUCache<>(2, lruTimeForTests, 0.1, executor);
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(950);
+        assertEquals(1, cache.get("A", 1, 1000, key -> { throw new IllegalStateException(); }));
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(uncaught.isEmpty(), "The executor got " + uncaught);
+        assertEquals(1, cache.getIfPresent("A"));
+    }
+
+    @Test
+    public void shouldDropReloadWhenElementWasSetInTheMeantime() {
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(950);
+        cache.get("A", 1, 1000, key -> 2);
+        cache.set("A", 3, 1, 1000);
+        runPendingReloads();
+        assertEquals(3, cache.getIfPresent("A"));
+    }
+
+    @Test
+    public void shouldDropReloadWhenElementWasRemovedInTheMeantime() {
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(950);
+        cache.get("A", 1, 1000, key -> 2);
+        cache.remove("A");
+        runPendingReloads();
+        assertNull(cache.getIfPresent("A"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void shouldLoadAgainOnceExpired() {
+        cache.set("A", 1, 1, 1000);
+        lruTimeForTests.setCurrentTimeInEpochMillis(1001);
+        assertEquals(2, cache.get("A", 1, 1000, key -> 2));
+        assertTrue(pendingReloads.isEmpty());
+    }
+
+    @Test
+    public void shouldRejectRefreshWindowOutsideOfZeroAndOne() {
+        assertThrows(IllegalArgumentException.class, () -> new RefreshAheadLRUCache<>(2, lruTimeForTests, 1.5));
+        assertThrows(IllegalArgumentException.class, () -> new RefreshAheadLRUCache<>(2, lruTimeForTests, -0.1));
+    }
+
+    private void runPendingReloads() {
+        Runnable reload;
+        while ((reload = pendingReloads.poll()) != null) {
+            reload.run();
+        }
+    }
+}
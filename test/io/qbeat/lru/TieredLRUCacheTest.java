@@ -0,0 +1,90 @@
+package io.qbeat.lru;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TieredLRUCacheTest {
+    @TempDir
+    Path directory;
+
+    LRUTimeForTests lruTimeForTests;
+    TieredLRUCache<String, Integer> cache;
+
+    @BeforeEach
+    public void init(){
+        lruTimeForTests = new LRUTimeForTests();
+        lruTimeForTests.setCurrentTimeInEpochMillis(0L);
+        cache = new TieredLRUCache<>(2, lruTimeForTests, Codec.integers(), 1024);
+    }
+
+    @Test
+    public void shouldDemoteEvictedElementsAndPromoteThemBackOnAHit() throws IOException {
+        cache.set("A", 1, 1, 5000);
+        cache.set("B", 2, 5, 5000);
+        cache.set("C", 3, 5, 5000);
+        // A has the lowest priority, so it is demoted
+        assertEquals(3, cache.size());
+        assertEquals(1, cache.spilledSize());
+
+        assertEquals(1, cache.get("A"));
+        // B is the Least Recently Used element of the highest priority, and makes room for A
+        assertEquals(1, cache.spilledSize());
+        // A came back with its priority, so it is demoted again for B
+        assertEquals(2, cache.get("B"));
+        assertEquals(3, cache.get("C"));
+        assertEquals(1, cache.spilledSize());
+
+        // And with its expiry timestamp
+        lruTimeForTests.setCurrentTimeInEpochMillis(6000L);
+        assertNull(cache.get("A"));
+        assertEquals(0, cache.spilledSize());
+        cache.close();
+    }
+
+    @Test
+    public void shouldDropTheLeastRecentlyUsedElementsOfTheSecondTier() throws IOException {
+        // Three blocks, that hold an int each
+        cache = new TieredLRUCache<>(1, lruTimeForTests, Codec.integers(), 24, 8);
+        for (int i = 0; i < 5; i++) {
+            cache.set("Key " + i, i, 1, 5000);
+        }
+        assertEquals(3, cache.spilledSize());
+        assertNull(cache.get("Key 0"));
+        assertEquals(1, cache.get("Key 1"));
+        assertEquals(4, cache.get("Key 4"));
+        assertEquals(1, cache.remove("Key 1"));
+        assertNull(cache.get("Key 1"));
+
+        // The latest value replaces the demoted one
+        cache.set("Key 2", 20, 1, 5000);
+        assertEquals(20, cache.get("Key 2"));
+        cache.close();
+        assertThrows(IllegalStateException.class, () -> cache.get("Key 2"));
+    }
+
+    @Test
+    public void shouldSpillValuesAcrossBlocksOfAMappedFile() throws IOException {
+        Path file = directory.resolve("tier.bin");
+        TieredLRUCache<Integer, String> mappedCache = new TieredLRUCache<>(1, lruTimeForTests, Codec.strings(), file, 4096, 16);
+        StringBuilder longValue = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            longValue.append(i);
+        }
+        mappedCache.set(1, longValue.toString(), 1, 5000);
+        mappedCache.set(2, null, 1, 5000);
+        mappedCache.set(3, "Short", 1, 5000);
+        assertEquals(2, mappedCache.spilledSize());
+        assertEquals(longValue.toString(), mappedCache.get(1));
+        assertEquals("Short", mappedCache.get(3));
+
+        mappedCache.close();
+        assertFalse(Files.exists(file));
+    }
+}